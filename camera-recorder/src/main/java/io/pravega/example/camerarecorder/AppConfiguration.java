@@ -1,5 +1,6 @@
 package io.pravega.example.camerarecorder;
 
+import io.pravega.example.video.HashAlgorithm;
 import io.pravega.example.video.PravegaAppConfiguration;
 
 public class AppConfiguration extends PravegaAppConfiguration {
@@ -8,6 +9,8 @@ public class AppConfiguration extends PravegaAppConfiguration {
     private final double framesPerSec;
     private final int cameraDeviceNumber;
     private final int camera;
+    private final boolean useBinaryEncoding;
+    private final HashAlgorithm hashAlgorithm;
 
     public AppConfiguration(String[] args) {
         super(args);
@@ -16,6 +19,8 @@ public class AppConfiguration extends PravegaAppConfiguration {
         framesPerSec = Double.parseDouble(getEnvVar("FRAMES_PER_SEC", "2.0"));
         cameraDeviceNumber = Integer.parseInt(getEnvVar("CAMERA_DEVICE_NUMBER", "0"));
         camera = Integer.parseInt(getEnvVar("CAMERA", "3"));
+        useBinaryEncoding = Boolean.parseBoolean(getEnvVar("USE_BINARY_ENCODING", "false"));
+        hashAlgorithm = HashAlgorithm.valueOf(getEnvVar("HASH_ALGORITHM", HashAlgorithm.XXHASH64.name()).toUpperCase());
     }
 
     public int getImageWidth() {
@@ -38,6 +43,14 @@ public class AppConfiguration extends PravegaAppConfiguration {
         return camera;
     }
 
+    public boolean isUseBinaryEncoding() {
+        return useBinaryEncoding;
+    }
+
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
     @Override
     public String toString() {
         return "AppConfiguration{" +
@@ -47,6 +60,8 @@ public class AppConfiguration extends PravegaAppConfiguration {
                 ", framesPerSec=" + framesPerSec +
                 ", cameraDeviceNumber=" + cameraDeviceNumber +
                 ", camera=" + camera +
+                ", useBinaryEncoding=" + useBinaryEncoding +
+                ", hashAlgorithm=" + hashAlgorithm +
                 '}';
     }
 }
@@ -16,6 +16,8 @@ import io.pravega.client.stream.EventStreamWriter;
 import io.pravega.client.stream.EventWriterConfig;
 import io.pravega.client.stream.impl.ByteBufferSerializer;
 import io.pravega.example.video.ChunkedVideoFrame;
+import io.pravega.example.video.ChunkedVideoFrameBinaryFormat;
+import io.pravega.example.video.ImageFormat;
 import io.pravega.example.video.PravegaUtil;
 import io.pravega.example.video.VideoFrame;
 import org.bytedeco.javacpp.BytePointer;
@@ -112,12 +114,18 @@ public class CameraRecorder implements Runnable {
                     videoFrame.timestamp = new Timestamp(timestamp);
                     videoFrame.frameNumber = frameNumber;
                     videoFrame.data = pngByteArray;
-                    videoFrame.hash = videoFrame.calculateHash();
+                    videoFrame.imageFormat = ImageFormat.PNG;
+                    videoFrame.updateHash(getConfig().getHashAlgorithm());
                     ChunkedVideoFrame chunkedVideoFrame = new ChunkedVideoFrame(videoFrame);
-                    ByteBuffer jsonBytes = ByteBuffer.wrap(mapper.writeValueAsBytes(chunkedVideoFrame));
+                    ByteBuffer eventBytes;
+                    if (getConfig().isUseBinaryEncoding()) {
+                        eventBytes = ByteBuffer.wrap(ChunkedVideoFrameBinaryFormat.serialize(chunkedVideoFrame));
+                    } else {
+                        eventBytes = ByteBuffer.wrap(mapper.writeValueAsBytes(chunkedVideoFrame));
+                    }
 
                     // Write to Pravega.
-                    CompletableFuture<Void> future = pravegaWriter.writeEvent(Integer.toString(videoFrame.camera), jsonBytes);
+                    CompletableFuture<Void> future = pravegaWriter.writeEvent(Integer.toString(videoFrame.camera), eventBytes);
 
                     // Show our frame in the preview window..
                     if (cFrame.isVisible()) {
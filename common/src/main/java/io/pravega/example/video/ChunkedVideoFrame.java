@@ -10,21 +10,127 @@
  */
 package io.pravega.example.video;
 
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
 /**
  * Allows a VideoFrame to be split into smaller chunks.
  * VideoFrame.data contains the chunk of data.
+ *
+ * To avoid copying, the chunk data can instead be a slice of a larger buffer (see {@link #setDataSlice}).
+ * In this case, data is null and the slice must be accessed with {@link #dataArray()}, {@link #dataOffset()},
+ * and {@link #dataLength()}, or copied to data with {@link #materializeData()}.
+ * The slice is not a JSON property.
+ *
+ * If chunkHash is set, each chunk can be validated as it arrives, before the frame is reassembled.
+ *
+ * If numParityChunks is greater than 0, the data chunks are followed by parity chunks with chunkIndex
+ * from finalChunkIndex + 1 to finalChunkIndex + numParityChunks.
+ * The frame can be reassembled from any finalChunkIndex + 1 chunks.
  */
 public class ChunkedVideoFrame extends VideoFrame {
     // 0-based chunk index. The first chunk of each frame has chunkIndex 0.
     public short chunkIndex;
-    // Number of chunks minus 1.
+    // Number of data chunks minus 1. This does not include parity chunks.
     public short finalChunkIndex;
+    // Number of parity chunks that follow the data chunks.
+    public short numParityChunks;
+    // Total size of the frame data. Only set if numParityChunks is greater than 0.
+    public int frameSize;
+    // Optional hash of the data of this chunk, calculated with hashAlgorithm. Null if not calculated.
+    public byte[] chunkHash;
+
+    // The buffer that contains the chunk data if this chunk is a slice. Otherwise null.
+    private transient byte[] sliceArray;
+    private transient int sliceOffset;
+    private transient int sliceLength;
 
     public ChunkedVideoFrame() {
     }
 
     public ChunkedVideoFrame(VideoFrame frame) {
         super(frame);
+        if (frame instanceof ChunkedVideoFrame) {
+            ChunkedVideoFrame chunk = (ChunkedVideoFrame) frame;
+            this.chunkIndex = chunk.chunkIndex;
+            this.finalChunkIndex = chunk.finalChunkIndex;
+            this.numParityChunks = chunk.numParityChunks;
+            this.frameSize = chunk.frameSize;
+            this.chunkHash = chunk.chunkHash;
+            this.sliceArray = chunk.sliceArray;
+            this.sliceOffset = chunk.sliceOffset;
+            this.sliceLength = chunk.sliceLength;
+        }
+    }
+
+    /**
+     * Sets the chunk data to a range of a larger buffer without copying it.
+     * The buffer must not be modified while this chunk is in use.
+     * If the range is the entire buffer, data is set to the buffer. Otherwise, data is set to null.
+     */
+    public void setDataSlice(byte[] array, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > array.length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length + ", array.length=" + array.length);
+        }
+        if (offset == 0 && length == array.length) {
+            data = array;
+            sliceArray = null;
+        } else {
+            data = null;
+            sliceArray = array;
+            sliceOffset = offset;
+            sliceLength = length;
+        }
+    }
+
+    public boolean hasDataSlice() {
+        return sliceArray != null;
+    }
+
+    /**
+     * @return The array that contains the chunk data. This is data unless the chunk is a slice.
+     */
+    public byte[] dataArray() {
+        return sliceArray != null ? sliceArray : data;
+    }
+
+    public int dataOffset() {
+        return sliceArray != null ? sliceOffset : 0;
+    }
+
+    public int dataLength() {
+        return sliceArray != null ? sliceLength : (data == null ? 0 : data.length);
+    }
+
+    /**
+     * If this chunk is a slice, copies the slice to data.
+     *
+     * @return data
+     */
+    public byte[] materializeData() {
+        if (sliceArray != null) {
+            data = Arrays.copyOfRange(sliceArray, sliceOffset, sliceOffset + sliceLength);
+            sliceArray = null;
+        }
+        return data;
+    }
+
+    /**
+     * Calculates the hash of the data of this chunk using hashAlgorithm.
+     */
+    public byte[] calculateChunkHash() {
+        return effectiveHashAlgorithm().hash(dataArray(), dataOffset(), dataLength());
+    }
+
+    /**
+     * Validates chunkHash. This must only be called if chunkHash is not null.
+     */
+    public void validateChunkHash() throws DigestException {
+        byte[] calculatedChunkHash = calculateChunkHash();
+        if (!MessageDigest.isEqual(calculatedChunkHash, chunkHash)) {
+            throw new DigestException("Chunk hash mismatch; chunk=" + this);
+        }
     }
 
     @Override
@@ -33,6 +139,10 @@ public class ChunkedVideoFrame extends VideoFrame {
                 super.toString() +
                 ", chunkIndex=" + chunkIndex +
                 ", finalChunkIndex=" + finalChunkIndex +
+                ", numParityChunks=" + numParityChunks +
+                ", frameSize=" + frameSize +
+                ", chunkHash=" + Arrays.toString(chunkHash) +
+                (sliceArray != null ? ", dataSlice(" + sliceOffset + "," + sliceLength + ")" : "") +
                 '}';
     }
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.video;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of ChunkedVideoFrame.
+ * Unlike JSON, the frame data is stored as raw bytes without base-64 encoding.
+ *
+ * All integers are big-endian. The layout of version 1 is:
+ * <pre>
+ *   int     magic (0x89564643)
+ *   byte    version
+ *   int     camera
+ *   int     ssrc
+ *   long    timestamp milliseconds
+ *   int     timestamp nanoseconds (-1 if timestamp is null)
+ *   int     frameNumber
+ *   short   chunkIndex
+ *   short   finalChunkIndex
+ *   short   hash length (-1 if null), followed by hash bytes
+ *   byte    hash algorithm id (-1 if null)
+ *   short   chunk hash length (-1 if null), followed by chunk hash bytes
+ *   short   numParityChunks
+ *   int     frameSize
+ *   byte    image format id (-1 if null)
+ *   int     number of tags (-1 if null), followed by each key and value as int length and UTF-8 bytes
+ *   int     data length (-1 if null), followed by data bytes
+ * </pre>
+ * The first byte of the magic number can never begin a JSON document, so readers can
+ * use {@link #isBinary(byte[])} to accept both encodings.
+ */
+public class ChunkedVideoFrameBinaryFormat {
+    public static final int MAGIC = 0x89564643;
+    public static final byte VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 1 + 4 + 4 + 8 + 4 + 4 + 2 + 2;
+
+    /**
+     * @return True if the message begins with the magic number of this format.
+     */
+    public static boolean isBinary(byte[] message) {
+        return message.length >= 4 && ByteBuffer.wrap(message).getInt(0) == MAGIC;
+    }
+
+    public static byte[] serialize(ChunkedVideoFrame frame) {
+        // Encode tags first so that the exact message size can be allocated.
+        byte[][] encodedTags = null;
+        int size = HEADER_SIZE + 2 + 1 + 2 + 2 + 4 + 1 + 4 + 4;
+        if (frame.hash != null) {
+            size += frame.hash.length;
+        }
+        if (frame.chunkHash != null) {
+            size += frame.chunkHash.length;
+        }
+        if (frame.tags != null) {
+            encodedTags = new byte[2 * frame.tags.size()][];
+            int i = 0;
+            for (Map.Entry<String, String> entry : frame.tags.entrySet()) {
+                encodedTags[i++] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                encodedTags[i++] = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            }
+            for (byte[] encodedTag : encodedTags) {
+                size += 4 + encodedTag.length;
+            }
+        }
+        byte[] dataArray = frame.dataArray();
+        if (dataArray != null) {
+            size += frame.dataLength();
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(MAGIC);
+        buf.put(VERSION);
+        buf.putInt(frame.camera);
+        buf.putInt(frame.ssrc);
+        if (frame.timestamp == null) {
+            buf.putLong(0);
+            buf.putInt(-1);
+        } else {
+            buf.putLong(frame.timestamp.getTime());
+            buf.putInt(frame.timestamp.getNanos());
+        }
+        buf.putInt(frame.frameNumber);
+        buf.putShort(frame.chunkIndex);
+        buf.putShort(frame.finalChunkIndex);
+        if (frame.hash == null) {
+            buf.putShort((short) -1);
+        } else {
+            buf.putShort((short) frame.hash.length);
+            buf.put(frame.hash);
+        }
+        buf.put(frame.hashAlgorithm == null ? -1 : frame.hashAlgorithm.getId());
+        if (frame.chunkHash == null) {
+            buf.putShort((short) -1);
+        } else {
+            buf.putShort((short) frame.chunkHash.length);
+            buf.put(frame.chunkHash);
+        }
+        buf.putShort(frame.numParityChunks);
+        buf.putInt(frame.frameSize);
+        buf.put(frame.imageFormat == null ? -1 : frame.imageFormat.getId());
+        if (encodedTags == null) {
+            buf.putInt(-1);
+        } else {
+            buf.putInt(frame.tags.size());
+            for (byte[] encodedTag : encodedTags) {
+                buf.putInt(encodedTag.length);
+                buf.put(encodedTag);
+            }
+        }
+        if (dataArray == null) {
+            buf.putInt(-1);
+        } else {
+            // Write directly from the slice if the chunk is a slice of a larger buffer.
+            buf.putInt(frame.dataLength());
+            buf.put(dataArray, frame.dataOffset(), frame.dataLength());
+        }
+        return buf.array();
+    }
+
+    public static ChunkedVideoFrame deserialize(byte[] message) {
+        return deserialize(ByteBuffer.wrap(message));
+    }
+
+    public static ChunkedVideoFrame deserialize(ByteBuffer buf) {
+        try {
+            if (buf.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Message is not a binary ChunkedVideoFrame");
+            }
+            byte version = buf.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported ChunkedVideoFrame binary version " + version);
+            }
+            ChunkedVideoFrame frame = new ChunkedVideoFrame();
+            frame.camera = buf.getInt();
+            frame.ssrc = buf.getInt();
+            long time = buf.getLong();
+            int nanos = buf.getInt();
+            if (nanos >= 0) {
+                frame.timestamp = new Timestamp(time);
+                frame.timestamp.setNanos(nanos);
+            }
+            frame.frameNumber = buf.getInt();
+            frame.chunkIndex = buf.getShort();
+            frame.finalChunkIndex = buf.getShort();
+            short hashLength = buf.getShort();
+            if (hashLength >= 0) {
+                frame.hash = new byte[hashLength];
+                buf.get(frame.hash);
+            }
+            byte hashAlgorithmId = buf.get();
+            if (hashAlgorithmId >= 0) {
+                frame.hashAlgorithm = HashAlgorithm.fromId(hashAlgorithmId);
+            }
+            short chunkHashLength = buf.getShort();
+            if (chunkHashLength >= 0) {
+                frame.chunkHash = new byte[chunkHashLength];
+                buf.get(frame.chunkHash);
+            }
+            frame.numParityChunks = buf.getShort();
+            frame.frameSize = buf.getInt();
+            byte imageFormatId = buf.get();
+            if (imageFormatId >= 0) {
+                frame.imageFormat = ImageFormat.fromId(imageFormatId);
+            }
+            int numTags = buf.getInt();
+            if (numTags >= 0) {
+                frame.tags = new HashMap<>();
+                for (int i = 0; i < numTags; i++) {
+                    String key = getString(buf);
+                    frame.tags.put(key, getString(buf));
+                }
+            }
+            int dataLength = buf.getInt();
+            if (dataLength >= 0) {
+                frame.data = new byte[dataLength];
+                buf.get(frame.data);
+            }
+            return frame;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary ChunkedVideoFrame", e);
+        }
+    }
+
+    private static String getString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
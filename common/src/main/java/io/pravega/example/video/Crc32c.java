@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.video;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli).
+ * This uses java.util.zip.CRC32C, which is hardware-accelerated, if it is available (Java 9 and later).
+ * Otherwise, it uses the slicing-by-8 algorithm.
+ */
+final class Crc32c {
+    private static final int POLYNOMIAL = 0x82F63B78;
+    private static final int[][] TABLES = new int[8][256];
+    // Constructor of java.util.zip.CRC32C or null if not available.
+    private static final MethodHandle JDK_CRC32C = findJdkCrc32c();
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc >>> 1) ^ ((crc & 1) != 0 ? POLYNOMIAL : 0);
+            }
+            TABLES[0][i] = crc;
+        }
+        for (int i = 0; i < 256; i++) {
+            for (int t = 1; t < 8; t++) {
+                TABLES[t][i] = (TABLES[t - 1][i] >>> 8) ^ TABLES[0][TABLES[t - 1][i] & 0xFF];
+            }
+        }
+    }
+
+    private Crc32c() {
+    }
+
+    private static MethodHandle findJdkCrc32c() {
+        try {
+            return MethodHandles.publicLookup().findConstructor(
+                    Class.forName("java.util.zip.CRC32C"), MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Checksum.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    static int compute(byte[] data, int offset, int length) {
+        if (JDK_CRC32C != null) {
+            Checksum checksum;
+            try {
+                checksum = (Checksum) JDK_CRC32C.invokeExact();
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+            checksum.update(data, offset, length);
+            return (int) checksum.getValue();
+        }
+        return computeSlicingBy8(data, offset, length);
+    }
+
+    static int computeSlicingBy8(byte[] data, int offset, int length) {
+        final int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+        final int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+        int crc = 0xFFFFFFFF;
+        int i = offset;
+        int end = offset + length;
+        for (; i + 8 <= end; i += 8) {
+            int lo = crc ^ ((data[i] & 0xFF) | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF) << 16 | (data[i + 3] & 0xFF) << 24);
+            crc = t7[lo & 0xFF] ^ t6[(lo >>> 8) & 0xFF] ^ t5[(lo >>> 16) & 0xFF] ^ t4[lo >>> 24]
+                    ^ t3[data[i + 4] & 0xFF] ^ t2[data[i + 5] & 0xFF] ^ t1[data[i + 6] & 0xFF] ^ t0[data[i + 7] & 0xFF];
+        }
+        for (; i < end; i++) {
+            crc = (crc >>> 8) ^ t0[(crc ^ data[i]) & 0xFF];
+        }
+        return ~crc;
+    }
+}
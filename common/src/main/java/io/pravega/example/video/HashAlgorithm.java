@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.video;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Algorithms that can be used for VideoFrame.hash.
+ * The hash is only used to confirm that chunking and reassembly do not corrupt the data,
+ * so fast non-cryptographic checksums are preferred for new frames.
+ * Each algorithm has a stable id that is used by binary encodings.
+ */
+public enum HashAlgorithm {
+    // First 6 bytes of the SHA-1 digest. This is used for frames written without a hash algorithm.
+    SHA1(0) {
+        @Override
+        public byte[] hash(byte[] data, int offset, int length) {
+            MessageDigest md = SHA1_DIGEST.get();
+            md.update(data, offset, length);
+            return Arrays.copyOf(md.digest(), 6);
+        }
+    },
+    // CRC-32C (Castagnoli) as 4 big-endian bytes.
+    CRC32C(1) {
+        @Override
+        public byte[] hash(byte[] data, int offset, int length) {
+            int crc = Crc32c.compute(data, offset, length);
+            return new byte[] {(byte) (crc >>> 24), (byte) (crc >>> 16), (byte) (crc >>> 8), (byte) crc};
+        }
+    },
+    // xxHash64 with seed 0 as 8 big-endian bytes.
+    XXHASH64(2) {
+        @Override
+        public byte[] hash(byte[] data, int offset, int length) {
+            long h = XxHash64.compute(data, offset, length, 0);
+            byte[] result = new byte[8];
+            for (int i = 7; i >= 0; i--) {
+                result[i] = (byte) h;
+                h >>>= 8;
+            }
+            return result;
+        }
+    };
+
+    private static final ThreadLocal<MessageDigest> SHA1_DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    });
+
+    private final byte id;
+
+    HashAlgorithm(int id) {
+        this.id = (byte) id;
+    }
+
+    public byte getId() {
+        return id;
+    }
+
+    public byte[] hash(byte[] data) {
+        return hash(data, 0, data.length);
+    }
+
+    public abstract byte[] hash(byte[] data, int offset, int length);
+
+    public static HashAlgorithm fromId(byte id) {
+        for (HashAlgorithm algorithm : values()) {
+            if (algorithm.id == id) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown hash algorithm id " + id);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.video;
+
+/**
+ * Encodings of VideoFrame.data.
+ * Each format has a stable id that is used by binary encodings.
+ */
+public enum ImageFormat {
+    // Lossless and widely supported. This is the format of frames written before VideoFrame.imageFormat existed.
+    PNG(0, "png"),
+    // Lossy. The quality is chosen by the writer. Best for frames that are only viewed.
+    JPEG(1, "jpeg"),
+    // Lossless and many times faster than PNG to encode and decode, but larger and not supported by most viewers.
+    // See https://qoiformat.org/qoi-specification.pdf and Qoi.
+    QOI(2, "qoi");
+
+    private final byte id;
+    private final String formatName;
+
+    ImageFormat(int id, String formatName) {
+        this.id = (byte) id;
+        this.formatName = formatName;
+    }
+
+    public byte getId() {
+        return id;
+    }
+
+    /**
+     * @return The informal format name used by ImageIO and by file name extensions.
+     */
+    public String getFormatName() {
+        return formatName;
+    }
+
+    public static ImageFormat fromId(byte id) {
+        for (ImageFormat format : values()) {
+            if (format.id == id) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown image format id " + id);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.video;
+
+/**
+ * Layouts of the pixel buffer of a RawVideoFrame.
+ * Pixels are stored row by row without padding, starting at the top-left corner.
+ * Each format has a stable id that is used by binary encodings.
+ */
+public enum PixelFormat {
+    // 3 bytes per pixel in the order blue, green, red. This is the layout of BufferedImage.TYPE_3BYTE_BGR.
+    BGR24(0, 3),
+    // 1 byte per pixel. This is the layout of BufferedImage.TYPE_BYTE_GRAY.
+    GRAY8(1, 1);
+
+    private final byte id;
+    private final int bytesPerPixel;
+
+    PixelFormat(int id, int bytesPerPixel) {
+        this.id = (byte) id;
+        this.bytesPerPixel = bytesPerPixel;
+    }
+
+    public byte getId() {
+        return id;
+    }
+
+    public int getBytesPerPixel() {
+        return bytesPerPixel;
+    }
+
+    public static PixelFormat fromId(byte id) {
+        for (PixelFormat format : values()) {
+            if (format.id == id) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown pixel format id " + id);
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.video;
+
+/**
+ * A decoded video frame that can be passed between processing stages so that each image is decoded only once
+ * and only the final image is encoded.
+ * The pixels are stored in pixels as described by pixelFormat. VideoFrame.data, imageFormat, and hash are not used.
+ */
+public class RawVideoFrame extends VideoFrame {
+    public int width;
+    public int height;
+    public PixelFormat pixelFormat;
+    // width * height pixels in pixelFormat.
+    public byte[] pixels;
+
+    public RawVideoFrame() {
+    }
+
+    /**
+     * Creates a frame with the header fields of frame and the specified pixels.
+     */
+    public RawVideoFrame(VideoFrame frame, int width, int height, PixelFormat pixelFormat, byte[] pixels) {
+        super(frame);
+        this.data = null;
+        this.imageFormat = null;
+        this.hash = null;
+        this.hashAlgorithm = null;
+        this.width = width;
+        this.height = height;
+        this.pixelFormat = pixelFormat;
+        this.pixels = pixels;
+        if (pixels.length != width * height * pixelFormat.getBytesPerPixel()) {
+            throw new IllegalArgumentException("pixels.length (" + pixels.length + ") does not match "
+                    + width + "x" + height + " " + pixelFormat);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RawVideoFrame{" +
+                super.toString() +
+                ", width=" + width +
+                ", height=" + height +
+                ", pixelFormat=" + pixelFormat +
+                ", pixels(" + (pixels == null ? 0 : pixels.length) + ")" +
+                '}';
+    }
+}
@@ -12,7 +12,6 @@ package io.pravega.example.video;
 
 import java.security.DigestException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Map;
@@ -31,10 +30,14 @@ public class VideoFrame {
     public Timestamp timestamp;
     // Sequential frame number. This can be used to identify any missing frames.
     public int frameNumber;
-    // PNG-encoded image.
+    // Encoded image in imageFormat.
     public byte[] data;
-    // Truncated SHA-1 hash of data. This is used to confirm that chunking and reassembly do not corrupt the data.
+    // Encoding of data. Null for frames written before this field existed, which are PNG.
+    public ImageFormat imageFormat;
+    // Hash of data. This is used to confirm that chunking and reassembly do not corrupt the data.
     public byte[] hash;
+    // Algorithm used to calculate hash. Null for frames written before this field existed, which use SHA1.
+    public HashAlgorithm hashAlgorithm;
     // Arbitrary user-defined key/value pairs.
     public Map<String,String> tags;
 
@@ -47,7 +50,9 @@ public class VideoFrame {
         this.timestamp = frame.timestamp;
         this.frameNumber = frame.frameNumber;
         this.data = frame.data;
+        this.imageFormat = frame.imageFormat;
         this.hash = frame.hash;
+        this.hashAlgorithm = frame.hashAlgorithm;
         this.tags = frame.tags;
     }
 
@@ -76,19 +81,40 @@ public class VideoFrame {
                 ", timestamp=" + timestamp +
                 ", frameNumber=" + frameNumber +
                 ", tags=" + tagsStr +
+                ", imageFormat=" + imageFormat +
+                ", hashAlgorithm=" + hashAlgorithm +
                 ", hash=" + Arrays.toString(hash) +
                 ", data(" + dataLength + ")=" + dataStr +
                 "}";
     }
 
+    /**
+     * Calculates the hash of data using hashAlgorithm.
+     */
     public byte[] calculateHash() {
-        MessageDigest md;
-        try {
-            md = MessageDigest.getInstance("SHA-1");
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
-        }
-        return Arrays.copyOf(md.digest(data), 6);
+        return effectiveHashAlgorithm().hash(data);
+    }
+
+    /**
+     * @return hashAlgorithm, or SHA1 if hashAlgorithm is null.
+     */
+    protected HashAlgorithm effectiveHashAlgorithm() {
+        return hashAlgorithm == null ? HashAlgorithm.SHA1 : hashAlgorithm;
+    }
+
+    /**
+     * @return imageFormat, or PNG if imageFormat is null.
+     */
+    public ImageFormat effectiveImageFormat() {
+        return imageFormat == null ? ImageFormat.PNG : imageFormat;
+    }
+
+    /**
+     * Sets hashAlgorithm and hash.
+     */
+    public void updateHash(HashAlgorithm hashAlgorithm) {
+        this.hashAlgorithm = hashAlgorithm;
+        this.hash = calculateHash();
     }
 
     public void validateHash() throws DigestException {
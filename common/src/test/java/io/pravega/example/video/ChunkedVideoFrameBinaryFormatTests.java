@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.video;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ChunkedVideoFrameBinaryFormatTests {
+
+    private static ChunkedVideoFrame createFrame() {
+        ChunkedVideoFrame frame = new ChunkedVideoFrame();
+        frame.camera = 7;
+        frame.ssrc = -123456;
+        frame.timestamp = new Timestamp(1561000000123L);
+        frame.timestamp.setNanos(123456789);
+        frame.frameNumber = 42;
+        frame.chunkIndex = 1;
+        frame.finalChunkIndex = 2;
+        frame.data = new byte[1000];
+        new Random(0).nextBytes(frame.data);
+        frame.imageFormat = ImageFormat.JPEG;
+        frame.hash = frame.calculateHash();
+        frame.chunkHash = frame.calculateChunkHash();
+        frame.numParityChunks = 1;
+        frame.frameSize = 2500;
+        frame.tags = new HashMap<>();
+        frame.tags.put("numCameras", "4");
+        frame.tags.put("location", "caf\u00e9");
+        return frame;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        ChunkedVideoFrame frame = createFrame();
+        byte[] message = ChunkedVideoFrameBinaryFormat.serialize(frame);
+        assertTrue(ChunkedVideoFrameBinaryFormat.isBinary(message));
+        ChunkedVideoFrame result = ChunkedVideoFrameBinaryFormat.deserialize(message);
+        assertEquals(frame.camera, result.camera);
+        assertEquals(frame.ssrc, result.ssrc);
+        assertEquals(frame.timestamp, result.timestamp);
+        assertEquals(frame.frameNumber, result.frameNumber);
+        assertEquals(frame.chunkIndex, result.chunkIndex);
+        assertEquals(frame.finalChunkIndex, result.finalChunkIndex);
+        assertArrayEquals(frame.hash, result.hash);
+        assertArrayEquals(frame.chunkHash, result.chunkHash);
+        assertEquals(frame.numParityChunks, result.numParityChunks);
+        assertEquals(frame.frameSize, result.frameSize);
+        assertEquals(frame.imageFormat, result.imageFormat);
+        assertArrayEquals(frame.data, result.data);
+        assertEquals(frame.tags, result.tags);
+    }
+
+    @Test
+    public void testRoundTripNulls() {
+        ChunkedVideoFrame frame = new ChunkedVideoFrame();
+        ChunkedVideoFrame result = ChunkedVideoFrameBinaryFormat.deserialize(ChunkedVideoFrameBinaryFormat.serialize(frame));
+        assertNull(result.timestamp);
+        assertNull(result.hash);
+        assertNull(result.chunkHash);
+        assertNull(result.tags);
+        assertNull(result.data);
+        assertNull(result.imageFormat);
+        assertEquals(ImageFormat.PNG, result.effectiveImageFormat());
+    }
+
+    @Test
+    public void testOverheadIsSmall() {
+        ChunkedVideoFrame frame = createFrame();
+        frame.tags = null;
+        frame.chunkHash = null;
+        byte[] message = ChunkedVideoFrameBinaryFormat.serialize(frame);
+        assertTrue(message.length < frame.data.length + 64);
+    }
+
+    @Test
+    public void testDataSlice() {
+        ChunkedVideoFrame frame = createFrame();
+        byte[] buffer = new byte[3000];
+        System.arraycopy(frame.data, 0, buffer, 1000, frame.data.length);
+        byte[] expectedData = frame.data;
+        frame.setDataSlice(buffer, 1000, 1000);
+        assertTrue(frame.hasDataSlice());
+        assertNull(frame.data);
+        ChunkedVideoFrame result = ChunkedVideoFrameBinaryFormat.deserialize(ChunkedVideoFrameBinaryFormat.serialize(frame));
+        assertArrayEquals(expectedData, result.data);
+        assertArrayEquals(expectedData, frame.materializeData());
+        assertFalse(frame.hasDataSlice());
+    }
+
+    @Test
+    public void testCopyConstructor() {
+        ChunkedVideoFrame frame = createFrame();
+        frame.setDataSlice(new byte[3000], 1000, 1000);
+        ChunkedVideoFrame copy = new ChunkedVideoFrame(frame);
+        assertEquals(frame.chunkIndex, copy.chunkIndex);
+        assertEquals(frame.finalChunkIndex, copy.finalChunkIndex);
+        assertSame(frame.chunkHash, copy.chunkHash);
+        assertSame(frame.dataArray(), copy.dataArray());
+        assertEquals(1000, copy.dataOffset());
+    }
+
+    @Test
+    public void testDataSliceOfEntireArray() {
+        byte[] buffer = new byte[10];
+        ChunkedVideoFrame frame = new ChunkedVideoFrame();
+        frame.setDataSlice(buffer, 0, buffer.length);
+        assertFalse(frame.hasDataSlice());
+        assertSame(buffer, frame.data);
+    }
+
+    @Test
+    public void testJsonIsNotBinary() {
+        assertFalse(ChunkedVideoFrameBinaryFormat.isBinary("{\"camera\":0}".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(ChunkedVideoFrameBinaryFormat.isBinary(new byte[0]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedMessage() {
+        byte[] message = ChunkedVideoFrameBinaryFormat.serialize(createFrame());
+        byte[] truncated = new byte[message.length - 1];
+        System.arraycopy(message, 0, truncated, 0, truncated.length);
+        ChunkedVideoFrameBinaryFormat.deserialize(truncated);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedVersion() {
+        byte[] message = ChunkedVideoFrameBinaryFormat.serialize(createFrame());
+        message[4] = ChunkedVideoFrameBinaryFormat.VERSION + 1;
+        ChunkedVideoFrameBinaryFormat.deserialize(message);
+    }
+}
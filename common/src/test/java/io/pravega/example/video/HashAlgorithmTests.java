@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.video;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HashAlgorithmTests {
+    private static Logger log = LoggerFactory.getLogger(HashAlgorithmTests.class);
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void testXxHash64() {
+        assertEquals(0xEF46DB3751D8E999L, XxHash64.compute(new byte[0], 0, 0, 0));
+        assertEquals(0x44BC2CF5AD770999L, XxHash64.compute(bytes("abc"), 0, 3, 0));
+        byte[] data = bytes("Nobody inspects the spammish repetition");
+        assertEquals(0xFBCEA83C8A378BF1L, XxHash64.compute(data, 0, data.length, 0));
+    }
+
+    @Test
+    public void testCrc32c() {
+        assertEquals(0, Crc32c.compute(new byte[0], 0, 0));
+        assertEquals(0xE3069283, Crc32c.compute(bytes("123456789"), 0, 9));
+        byte[] zeros = new byte[32];
+        assertEquals(0x8A9136AA, Crc32c.compute(zeros, 0, zeros.length));
+        byte[] data = new byte[1000];
+        new Random(0).nextBytes(data);
+        assertEquals(Crc32c.compute(data, 3, 990), Crc32c.computeSlicingBy8(data, 3, 990));
+    }
+
+    @Test
+    public void testHashOfRange() {
+        byte[] data = new byte[1000];
+        new Random(0).nextBytes(data);
+        byte[] range = Arrays.copyOfRange(data, 3, 900);
+        for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+            assertArrayEquals(algorithm.name(), algorithm.hash(range), algorithm.hash(data, 3, range.length));
+        }
+    }
+
+    @Test
+    public void testSha1IsCompatible() throws Exception {
+        byte[] data = new byte[1000];
+        new Random(0).nextBytes(data);
+        byte[] expected = Arrays.copyOf(MessageDigest.getInstance("SHA-1").digest(data), 6);
+        assertArrayEquals(expected, HashAlgorithm.SHA1.hash(data));
+
+        // A frame written before hashAlgorithm existed.
+        VideoFrame frame = new VideoFrame();
+        frame.data = data;
+        frame.hash = expected;
+        frame.validateHash();
+    }
+
+    @Test
+    public void testIds() {
+        for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+            assertEquals(algorithm, HashAlgorithm.fromId(algorithm.getId()));
+        }
+    }
+
+    @Test
+    public void testValidateHash() throws Exception {
+        VideoFrame frame = new VideoFrame();
+        frame.data = new byte[100];
+        frame.updateHash(HashAlgorithm.XXHASH64);
+        frame.validateHash();
+        frame.data[50] = 1;
+        try {
+            frame.validateHash();
+            fail();
+        } catch (DigestException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBinaryFormatRoundTrip() {
+        ChunkedVideoFrame frame = new ChunkedVideoFrame();
+        frame.data = new byte[100];
+        frame.updateHash(HashAlgorithm.CRC32C);
+        ChunkedVideoFrame result = ChunkedVideoFrameBinaryFormat.deserialize(ChunkedVideoFrameBinaryFormat.serialize(frame));
+        assertEquals(HashAlgorithm.CRC32C, result.hashAlgorithm);
+        assertArrayEquals(frame.hash, result.hash);
+    }
+
+    /**
+     * Compares the cost of each hash algorithm with the original implementation of VideoFrame.calculateHash,
+     * which created a new MessageDigest for each frame.
+     */
+    @Test
+    @Ignore
+    public void benchmarkHashAlgorithms() throws Exception {
+        for (int dataSize : new int[]{10 * 1024, 100 * 1024, 512 * 1024}) {
+            byte[] data = new byte[dataSize];
+            new Random(0).nextBytes(data);
+            int iterations = (int) (2000L * 1024 * 1024 / dataSize / 10);
+            for (int pass = 0; pass < 2; pass++) {
+                log.info("dataSize={}, pass={}", dataSize, pass);
+                long startNanos = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    Arrays.copyOf(MessageDigest.getInstance("SHA-1").digest(data), 6);
+                }
+                logResult("original SHA-1", startNanos, iterations, dataSize);
+                for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+                    startNanos = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) {
+                        algorithm.hash(data);
+                    }
+                    logResult(algorithm.name(), startNanos, iterations, dataSize);
+                }
+            }
+        }
+    }
+
+    private static void logResult(String name, long startNanos, int iterations, int dataSize) {
+        double nanosPerMB = (System.nanoTime() - startNanos) / (iterations * (double) dataSize / (1024 * 1024));
+        log.info("{}: {} us per MB of frame data", name, String.format("%.1f", nanosPerMB / 1000.0));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.video;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QoiTests {
+
+    private static RawVideoFrame createFrame(int width, int height, PixelFormat pixelFormat) {
+        byte[] pixels = new byte[width * height * pixelFormat.getBytesPerPixel()];
+        Random random = new Random(0);
+        for (int i = 0; i < pixels.length; i++) {
+            // Mix flat areas, small gradients, and noise so that every operation is used.
+            int row = i / (width * pixelFormat.getBytesPerPixel());
+            if (row < height / 3) {
+                pixels[i] = 50;
+            } else if (row < 2 * height / 3) {
+                pixels[i] = (byte) (i / 7 + random.nextInt(3));
+            } else {
+                pixels[i] = (byte) random.nextInt(256);
+            }
+        }
+        return new RawVideoFrame(new VideoFrame(), width, height, pixelFormat, pixels);
+    }
+
+    @Test
+    public void testRoundTrip() {
+        RawVideoFrame frame = createFrame(123, 97, PixelFormat.BGR24);
+        byte[] data = Qoi.encode(frame);
+        assertTrue(Qoi.isQoi(data));
+        assertEquals(123, Qoi.getWidth(data));
+        assertEquals(97, Qoi.getHeight(data));
+        VideoFrame header = new VideoFrame();
+        header.camera = 3;
+        RawVideoFrame result = Qoi.decode(data, header);
+        assertEquals(3, result.camera);
+        assertEquals(PixelFormat.BGR24, result.pixelFormat);
+        assertArrayEquals(frame.pixels, result.pixels);
+    }
+
+    @Test
+    public void testRoundTripGray() {
+        RawVideoFrame frame = createFrame(64, 48, PixelFormat.GRAY8);
+        RawVideoFrame result = Qoi.decode(Qoi.encode(frame), new VideoFrame());
+        for (int i = 0; i < frame.pixels.length; i++) {
+            for (int c = 0; c < 3; c++) {
+                assertEquals(frame.pixels[i], result.pixels[3 * i + c]);
+            }
+        }
+    }
+
+    @Test
+    public void testKnownEncoding() {
+        // Two red pixels and one pixel that differs by one in each channel. Red channel differences wrap around.
+        byte[] pixels = {0, 0, (byte) 255, 0, 0, (byte) 255, 1, 1, 0};
+        byte[] data = Qoi.encode(new RawVideoFrame(new VideoFrame(), 3, 1, PixelFormat.BGR24, pixels));
+        byte[] expected = {
+                'q', 'o', 'i', 'f', 0, 0, 0, 3, 0, 0, 0, 1, 3, 0,
+                (byte) 0x5A,    // OP_DIFF of -1, 0, 0
+                (byte) 0xC0,    // OP_RUN of 1
+                (byte) 0x7F,    // OP_DIFF of +1, +1, +1
+                0, 0, 0, 0, 0, 0, 0, 1};
+        assertArrayEquals(expected, data);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncated() {
+        byte[] data = Qoi.encode(createFrame(20, 20, PixelFormat.BGR24));
+        byte[] truncated = new byte[data.length / 2];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        Qoi.decode(truncated, new VideoFrame());
+    }
+}
@@ -14,8 +14,15 @@ import io.pravega.client.admin.StreamInfo;
 import io.pravega.client.admin.StreamManager;
 import io.pravega.client.stream.Stream;
 import io.pravega.client.stream.StreamConfiguration;
+import io.pravega.example.video.ChunkedVideoFrame;
+import io.pravega.example.video.RawVideoFrame;
+import io.pravega.example.video.VideoFrame;
+import io.pravega.example.videoprocessor.ChunkedVideoFrameTypeInfo;
+import io.pravega.example.videoprocessor.RawVideoFrameTypeInfo;
+import io.pravega.example.videoprocessor.VideoFrameTypeInfo;
 import org.apache.flink.api.common.restartstrategy.RestartStrategies;
 import org.apache.flink.api.java.ExecutionEnvironment;
+import org.apache.flink.api.java.typeutils.TypeExtractor;
 import org.apache.flink.runtime.state.filesystem.FsStateBackend;
 import org.apache.flink.runtime.state.memory.MemoryStateBackend;
 import org.apache.flink.streaming.api.CheckpointingMode;
@@ -31,6 +38,8 @@ import org.slf4j.LoggerFactory;
 public abstract class AbstractJob implements Runnable {
     private static Logger log = LoggerFactory.getLogger(AbstractJob.class);
 
+    private static boolean typeInfoFactoriesRegistered = false;
+
     private final AppConfiguration config;
 
     public AbstractJob(AppConfiguration config) {
@@ -66,7 +75,21 @@ public abstract class AbstractJob implements Runnable {
         }
     }
 
+    /**
+     * Use our own serializers for VideoFrame, ChunkedVideoFrame, and RawVideoFrame instead of the POJO and Kryo serializers.
+     * The TypeExtractor registry is global and does not allow a type to be registered twice.
+     */
+    private static synchronized void registerTypeInfoFactories() {
+        if (!typeInfoFactoriesRegistered) {
+            TypeExtractor.registerFactory(VideoFrame.class, VideoFrameTypeInfo.Factory.class);
+            TypeExtractor.registerFactory(ChunkedVideoFrame.class, ChunkedVideoFrameTypeInfo.Factory.class);
+            TypeExtractor.registerFactory(RawVideoFrame.class, RawVideoFrameTypeInfo.Factory.class);
+            typeInfoFactoriesRegistered = true;
+        }
+    }
+
     public StreamExecutionEnvironment initializeFlinkStreaming() {
+        registerTypeInfoFactories();
         StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
         env.setParallelism(getConfig().getParallelism());
         if (!getConfig().isEnableOperatorChaining()) {
@@ -39,6 +39,10 @@ public class AppConfiguration {
     private final boolean enableRebalance;
     private final boolean startAtTail;
     private final long maxOutOfOrdernessMs;
+    private final long idleTimeoutMs;
+    private final boolean adaptiveWatermarkDelay;
+    private final double watermarkDelayPercentile;
+    private final long minWatermarkDelayMs;
 
     public AppConfiguration(String[] args) {
         params = ParameterTool.fromArgs(args);
@@ -55,6 +59,10 @@ public class AppConfiguration {
         enableRebalance = getParams().getBoolean("rebalance", false);
         startAtTail = getParams().getBoolean("startAtTail", true);
         maxOutOfOrdernessMs = getParams().getLong("maxOutOfOrdernessMs", 1000);
+        idleTimeoutMs = getParams().getLong("idleTimeoutMs", 10000);
+        adaptiveWatermarkDelay = getParams().getBoolean("adaptiveWatermarkDelay", false);
+        watermarkDelayPercentile = getParams().getDouble("watermarkDelayPercentile", 99.0);
+        minWatermarkDelayMs = getParams().getLong("minWatermarkDelayMs", 10);
     }
 
     @Override
@@ -71,6 +79,10 @@ public class AppConfiguration {
                 ", enableRebalance=" + enableRebalance +
                 ", startAtTail=" + startAtTail +
                 ", maxOutOfOrdernessMs=" + maxOutOfOrdernessMs +
+                ", idleTimeoutMs=" + idleTimeoutMs +
+                ", adaptiveWatermarkDelay=" + adaptiveWatermarkDelay +
+                ", watermarkDelayPercentile=" + watermarkDelayPercentile +
+                ", minWatermarkDelayMs=" + minWatermarkDelayMs +
                 '}';
     }
 
@@ -122,6 +134,22 @@ public class AppConfiguration {
         return maxOutOfOrdernessMs;
     }
 
+    public long getIdleTimeoutMs() {
+        return idleTimeoutMs;
+    }
+
+    public boolean isAdaptiveWatermarkDelay() {
+        return adaptiveWatermarkDelay;
+    }
+
+    public double getWatermarkDelayPercentile() {
+        return watermarkDelayPercentile;
+    }
+
+    public long getMinWatermarkDelayMs() {
+        return minWatermarkDelayMs;
+    }
+
     public static class StreamConfig {
         private final Stream stream;
         private final int targetRate;
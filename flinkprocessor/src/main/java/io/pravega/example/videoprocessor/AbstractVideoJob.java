@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.flinkprocessor.AbstractJob;
+import io.pravega.example.video.ChunkedVideoFrame;
+import io.pravega.example.video.VideoFrame;
+import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.datastream.SingleOutputStreamOperator;
+
+/**
+ * An abstract job class for Flink jobs that read video frames.
+ */
+public abstract class AbstractVideoJob extends AbstractJob {
+
+    public AbstractVideoJob(VideoAppConfiguration config) {
+        super(config);
+    }
+
+    @Override
+    public VideoAppConfiguration getConfig() {
+        return (VideoAppConfiguration) super.getConfig();
+    }
+
+    /**
+     * Sets the adaptive watermark delay of an assigner if it is enabled.
+     * The delay is then at most maxOutOfOrdernessMs.
+     */
+    protected <T> IdleAwareWatermarkAssigner<T> withWatermarkDelay(IdleAwareWatermarkAssigner<T> assigner) {
+        if (getConfig().isAdaptiveWatermarkDelay()) {
+            assigner.withAdaptiveDelay(getConfig().getWatermarkDelayPercentile(),
+                    getConfig().getMinWatermarkDelayMs(), getConfig().getMaxOutOfOrdernessMs());
+        }
+        return assigner;
+    }
+
+    /**
+     * Assigns timestamps and watermarks to chunks read from Pravega and reassembles them into video frames
+     * using the configured reassembly mode.
+     *
+     * @param inChunkedVideoFrames The stream produced by the Pravega source.
+     */
+    public DataStream<VideoFrame> reassembleVideoFrames(DataStream<ChunkedVideoFrame> inChunkedVideoFrames) {
+        VideoAppConfiguration.ReassemblyMode reassemblyMode = getConfig().getReassemblyMode();
+        boolean failOnError = false;
+
+        // Assign timestamps and watermarks based on timestamp in each chunk.
+        // Reader subtasks that receive no chunks advance their watermark so that they do not hold back other cameras.
+        SingleOutputStreamOperator<ChunkedVideoFrame> inChunkedVideoFramesWithTimestamps = inChunkedVideoFrames
+                .assignTimestampsAndWatermarks(withWatermarkDelay(
+                        new IdleAwareWatermarkAssigner<ChunkedVideoFrame>(
+                                getConfig().getMaxOutOfOrdernessMs(), getConfig().getIdleTimeoutMs()) {
+                            @Override
+                            public long extractTimestamp(ChunkedVideoFrame element) {
+                                return element.timestamp.getTime();
+                            }
+
+                            @Override
+                            public int extractCamera(ChunkedVideoFrame element) {
+                                return element.camera;
+                            }
+                        }))
+                .uid("assignTimestampsAndWatermarks")
+                .name("assignTimestampsAndWatermarks");
+//        inChunkedVideoFramesWithTimestamps.printToErr().uid("inChunkedVideoFramesWithTimestamps-print").name("inChunkedVideoFramesWithTimestamps-print");
+
+        // Reassemble whole video frames from chunks.
+        switch (reassemblyMode) {
+            case SOURCE:
+                // Use the same parallelism as the source so that these operators are chained to it and no shuffle occurs.
+                inChunkedVideoFramesWithTimestamps.setParallelism(inChunkedVideoFrames.getParallelism());
+                return inChunkedVideoFramesWithTimestamps
+                        .process(new ChunkedVideoFrameLocalReassembler()
+                                .withFailOnError(failOnError)
+                                .withMaxBufferedBytes(getConfig().getMaxInFlightBytesPerCamera(), getConfig().getMaxInFlightBytes()))
+                        .setParallelism(inChunkedVideoFrames.getParallelism())
+                        .uid("ChunkedVideoFrameLocalReassembler")
+                        .name("ChunkedVideoFrameLocalReassembler");
+            case KEYED:
+                return inChunkedVideoFramesWithTimestamps
+                        .keyBy(frame -> frame.camera)
+                        .process(new ChunkedVideoFrameKeyedReassembler()
+                                .withFailOnError(failOnError)
+                                .withMaxBufferedBytesPerCamera(getConfig().getMaxInFlightBytesPerCamera()))
+                        .uid("ChunkedVideoFrameKeyedReassembler")
+                        .name("ChunkedVideoFrameKeyedReassembler");
+            case WINDOW:
+            default:
+                return inChunkedVideoFramesWithTimestamps
+                        .keyBy(frame -> frame.camera)
+                        .window(new ChunkedVideoFrameWindowAssigner())
+                        .process(new ChunkedVideoFrameReassembler().withFailOnError(failOnError))
+                        .uid("ChunkedVideoFrameReassembler")
+                        .name("ChunkedVideoFrameReassembler");
+        }
+    }
+}
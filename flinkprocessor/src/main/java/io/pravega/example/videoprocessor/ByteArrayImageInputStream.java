@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * An ImageInputStream that reads directly from a byte array.
+ * Unlike MemoryCacheImageInputStream, this does not copy the bytes into a cache.
+ */
+class ByteArrayImageInputStream extends ImageInputStreamImpl {
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+
+    public ByteArrayImageInputStream(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    public ByteArrayImageInputStream(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int read() {
+        bitOffset = 0;
+        if (streamPos >= length) {
+            return -1;
+        }
+        return bytes[offset + (int) streamPos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        if (streamPos >= length) {
+            return -1;
+        }
+        int n = (int) Math.min(len, length - streamPos);
+        System.arraycopy(bytes, offset + (int) streamPos, b, off, n);
+        streamPos += n;
+        return n;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public boolean isCached() {
+        return true;
+    }
+
+    @Override
+    public boolean isCachedMemory() {
+        return true;
+    }
+}
@@ -11,6 +11,7 @@
 package io.pravega.example.videoprocessor;
 
 import io.pravega.example.video.ChunkedVideoFrame;
+import io.pravega.example.video.ChunkedVideoFrameBinaryFormat;
 import org.apache.flink.api.common.serialization.AbstractDeserializationSchema;
 import org.apache.flink.shaded.jackson2.com.fasterxml.jackson.databind.DeserializationFeature;
 import org.apache.flink.shaded.jackson2.com.fasterxml.jackson.databind.ObjectMapper;
@@ -18,7 +19,8 @@ import org.apache.flink.shaded.jackson2.com.fasterxml.jackson.databind.ObjectMap
 import java.io.IOException;
 
 /**
- * Deserializes ChunkedVideoFrame from JSON.
+ * Deserializes ChunkedVideoFrame from JSON or from ChunkedVideoFrameBinaryFormat.
+ * The encoding is detected for each message so streams may contain both.
  */
 public class ChunkedVideoFrameDeserializationSchema extends AbstractDeserializationSchema<ChunkedVideoFrame> {
     private final ObjectMapper mapper = new ObjectMapper()
@@ -26,6 +28,9 @@ public class ChunkedVideoFrameDeserializationSchema extends AbstractDeserializat
 
     @Override
     public ChunkedVideoFrame deserialize(byte[] message) throws IOException {
+        if (ChunkedVideoFrameBinaryFormat.isBinary(message)) {
+            return ChunkedVideoFrameBinaryFormat.deserialize(message);
+        }
         return mapper.readValue(message, ChunkedVideoFrame.class);
     }
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.ChunkedVideoFrame;
+import io.pravega.example.video.VideoFrame;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.streaming.api.functions.KeyedProcessFunction;
+import org.apache.flink.util.Collector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.DigestException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A KeyedProcessFunction that concatenates ChunkedVideoFrame instances to produce VideoFrame instances.
+ * This is an alternative to ChunkedVideoFrameReassembler that does not create a window for each frame.
+ * The input must be keyed by camera.
+ *
+ * Each in-flight frame is stored as a PartialVideoFrame in map state.
+ * Chunks may arrive in any order and duplicate chunks are dropped.
+ * Chunks with a chunk hash are validated as they arrive and corrupt chunks are rejected.
+ * A frame is emitted as soon as all of its chunks have been received.
+ * Other emitted frames remain in state without their data until the watermark passes them so that duplicates
+ * from at-least-once writers or replays are not emitted again.
+ * A frame with a single chunk and no parity chunks is emitted directly, without accessing state,
+ * registering a timer or copying its data. Because such frames are not kept in state,
+ * their duplicates are emitted again.
+ * Instead of a timer for each frame, timers are rounded up to a multiple of the timer resolution
+ * so that a single timer purges all frames that the watermark has passed.
+ *
+ * To bound memory usage, the chunk bytes of incomplete frames are limited for each camera.
+ * When the limit is exceeded, the chunks of the oldest incomplete frames are evicted. Chunks of evicted frames
+ * that arrive later are dropped. Evictions are counted by the evictedFrames and evictedBytes metrics.
+ * Because state is scoped to the camera, there is no limit for all cameras in a subtask.
+ *
+ * Because a partial frame is written back to state when each chunk arrives, this is intended
+ * for heap-based state backends.
+ */
+public class ChunkedVideoFrameKeyedReassembler extends KeyedProcessFunction<Integer, ChunkedVideoFrame, VideoFrame> {
+    private static Logger log = LoggerFactory.getLogger(ChunkedVideoFrameKeyedReassembler.class);
+
+    private boolean failOnError = false;
+    private long timerResolutionMs = 100;
+    private long maxBytesPerCamera = Long.MAX_VALUE;
+
+    private transient MapState<VideoFrameWindow, PartialVideoFrame> partialFrames;
+    // Chunk bytes of incomplete frames.
+    private transient ValueState<Long> bufferedBytes;
+    // Package-private for tests.
+    transient Counter evictedFrames;
+    transient Counter evictedBytes;
+
+    /**
+     * @param failOnError If true, terminate the Flink task on any ignorable errors.
+     *                    If false, such errors are logged and the corresponding VideoFrame is not emitted.
+     */
+    public ChunkedVideoFrameKeyedReassembler withFailOnError(boolean failOnError) {
+        this.failOnError = failOnError;
+        return this;
+    }
+
+    public ChunkedVideoFrameKeyedReassembler withFailOnError() {
+        return withFailOnError(true);
+    }
+
+    /**
+     * @param timerResolutionMs Incomplete frames are purged up to this many milliseconds after the watermark passes them.
+     */
+    public ChunkedVideoFrameKeyedReassembler withTimerResolutionMs(long timerResolutionMs) {
+        this.timerResolutionMs = timerResolutionMs;
+        return this;
+    }
+
+    /**
+     * @param maxBytesPerCamera The maximum chunk bytes of incomplete frames for each camera.
+     */
+    public ChunkedVideoFrameKeyedReassembler withMaxBufferedBytesPerCamera(long maxBytesPerCamera) {
+        this.maxBytesPerCamera = maxBytesPerCamera;
+        return this;
+    }
+
+    @Override
+    public void open(Configuration parameters) {
+        partialFrames = getRuntimeContext().getMapState(new MapStateDescriptor<>(
+                "partialFrames", new VideoFrameWindow.Serializer(), new PartialVideoFrame.Serializer()));
+        bufferedBytes = getRuntimeContext().getState(new ValueStateDescriptor<>("bufferedBytes", Long.class));
+        evictedFrames = getRuntimeContext().getMetricGroup().counter("evictedFrames");
+        evictedBytes = getRuntimeContext().getMetricGroup().counter("evictedBytes");
+    }
+
+    @Override
+    public void processElement(ChunkedVideoFrame chunk, Context ctx, Collector<VideoFrame> out) throws Exception {
+        long watermark = ctx.timerService().currentWatermark();
+        VideoFrameWindow window = new VideoFrameWindow(chunk);
+        if (window.maxTimestamp() <= watermark) {
+            // This matches the behavior of the window operator for late elements.
+            log.debug("processElement: dropping late chunk; chunk={}, watermark={}", chunk, watermark);
+            return;
+        }
+
+        if (chunk.finalChunkIndex == 0 && chunk.numParityChunks == 0) {
+            try {
+                PartialVideoFrame singleChunkFrame = new PartialVideoFrame(chunk);
+                singleChunkFrame.add(chunk);
+                out.collect(singleChunkFrame.toVideoFrame());
+            } catch (ChunkSequenceException | DigestException e) {
+                handleError(e);
+            }
+            return;
+        }
+
+        PartialVideoFrame partialFrame = partialFrames.get(window);
+        if (partialFrame == null) {
+            partialFrame = new PartialVideoFrame(chunk);
+            long timerResolution = Math.max(1, timerResolutionMs);
+            long timerTime = (window.maxTimestamp() + timerResolution - 1) / timerResolution * timerResolution;
+            ctx.timerService().registerEventTimeTimer(timerTime);
+        }
+        try {
+            if (!partialFrame.add(chunk)) {
+                log.debug("processElement: ignoring duplicate chunk or chunk of released frame; chunk={}", chunk);
+                return;
+            }
+        } catch (DigestException e) {
+            // Reject the corrupt chunk but keep the frame so that the chunk can still be received again.
+            handleError(e);
+            return;
+        } catch (ChunkSequenceException e) {
+            remove(window, partialFrame);
+            handleError(e);
+            return;
+        }
+        addBufferedBytes(chunk.dataLength());
+        try {
+            if (partialFrame.isComplete()) {
+                out.collect(partialFrame.toVideoFrame());
+                // Retain the bitmap until the timer fires so that later duplicates are dropped.
+                addBufferedBytes(-partialFrame.getBufferedBytes());
+                partialFrame.releaseChunks();
+            }
+            partialFrames.put(window, partialFrame);
+        } catch (ChunkSequenceException | DigestException e) {
+            remove(window, partialFrame);
+            handleError(e);
+        }
+        evict();
+    }
+
+    /**
+     * Evicts the oldest incomplete frames of the current camera until its buffered bytes are within the limit.
+     */
+    private void evict() throws Exception {
+        while (getBufferedBytes() > maxBytesPerCamera) {
+            VideoFrameWindow oldestWindow = null;
+            PartialVideoFrame oldestFrame = null;
+            for (Map.Entry<VideoFrameWindow, PartialVideoFrame> entry : partialFrames.entries()) {
+                if (!entry.getValue().isReleased()
+                        && (oldestWindow == null || entry.getKey().maxTimestamp() < oldestWindow.maxTimestamp())) {
+                    oldestWindow = entry.getKey();
+                    oldestFrame = entry.getValue();
+                }
+            }
+            if (oldestFrame == null) {
+                return;
+            }
+            long bytes = oldestFrame.getBufferedBytes();
+            log.warn("evict: evicting incomplete frame; numChunksReceived={}, bytes={}, window={}",
+                    oldestFrame.numChunksReceived, bytes, oldestWindow);
+            evictedFrames.inc();
+            evictedBytes.inc(bytes);
+            addBufferedBytes(-bytes);
+            // Retain the bitmap until the timer fires so that later chunks of this frame are dropped.
+            oldestFrame.releaseChunks();
+            partialFrames.put(oldestWindow, oldestFrame);
+        }
+    }
+
+    private void remove(VideoFrameWindow window, PartialVideoFrame partialFrame) throws Exception {
+        addBufferedBytes(-partialFrame.getBufferedBytes());
+        partialFrames.remove(window);
+    }
+
+    /**
+     * @return The chunk bytes of incomplete frames of the current camera.
+     */
+    long getBufferedBytes() throws Exception {
+        Long bytes = bufferedBytes.value();
+        return bytes == null ? 0 : bytes;
+    }
+
+    private void addBufferedBytes(long bytes) throws Exception {
+        if (bytes != 0) {
+            bufferedBytes.update(getBufferedBytes() + bytes);
+        }
+    }
+
+    /**
+     * Purge all frames that the watermark has passed. Incomplete frames are reported as errors.
+     */
+    @Override
+    public void onTimer(long timestamp, OnTimerContext ctx, Collector<VideoFrame> out) throws Exception {
+        List<VideoFrameWindow> expiredWindows = new ArrayList<>();
+        for (Map.Entry<VideoFrameWindow, PartialVideoFrame> entry : partialFrames.entries()) {
+            if (entry.getKey().maxTimestamp() <= timestamp) {
+                expiredWindows.add(entry.getKey());
+                if (entry.getValue().isReleased()) {
+                    continue;
+                }
+                addBufferedBytes(-entry.getValue().getBufferedBytes());
+                try {
+                    out.collect(entry.getValue().toVideoFrame());
+                } catch (ChunkSequenceException | DigestException e) {
+                    handleError(e);
+                }
+            }
+        }
+        for (VideoFrameWindow window : expiredWindows) {
+            partialFrames.remove(window);
+        }
+    }
+
+    private void handleError(Exception e) {
+        if (failOnError) {
+            throw new RuntimeException(e);
+        }
+        log.warn("Unable to reassemble frame:", e);
+    }
+}
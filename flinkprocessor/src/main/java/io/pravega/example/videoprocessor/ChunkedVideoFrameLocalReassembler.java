@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.ChunkedVideoFrame;
+import io.pravega.example.video.VideoFrame;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.runtime.state.FunctionInitializationContext;
+import org.apache.flink.runtime.state.FunctionSnapshotContext;
+import org.apache.flink.streaming.api.checkpoint.CheckpointedFunction;
+import org.apache.flink.streaming.api.functions.ProcessFunction;
+import org.apache.flink.util.Collector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.DigestException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A ProcessFunction that concatenates ChunkedVideoFrame instances to produce VideoFrame instances
+ * without a keyed shuffle. It is intended to be chained directly after the Pravega source.
+ *
+ * This requires that all chunks of a frame are read by the same source subtask.
+ * This is the case when the writer uses the camera as the routing key because Pravega assigns each
+ * segment to a single reader.
+ *
+ * Chunks of a frame may arrive in any order and duplicate chunks are dropped.
+ * Chunks with a chunk hash are validated as they arrive and corrupt chunks are rejected.
+ * Emitted frames are retained without their data until the watermark passes them so that duplicates
+ * from at-least-once writers or replays are not emitted again.
+ *
+ * Partial frames are stored in union list state. When restoring, every subtask receives all partial frames
+ * because the reader group may assign a segment to a different subtask.
+ * Restored partial frames that are not completed are silently discarded when the watermark passes them.
+ *
+ * To bound memory usage, the chunk bytes of incomplete frames are limited per camera and for the operator.
+ * When a limit is exceeded, the chunks of the oldest incomplete frames are evicted. Chunks of evicted frames
+ * that arrive later are dropped. Evictions are counted by the evictedFrames and evictedBytes metrics.
+ */
+public class ChunkedVideoFrameLocalReassembler extends ProcessFunction<ChunkedVideoFrame, VideoFrame> implements CheckpointedFunction {
+    private static Logger log = LoggerFactory.getLogger(ChunkedVideoFrameLocalReassembler.class);
+
+    private boolean failOnError = false;
+    private long maxBytesPerCamera = Long.MAX_VALUE;
+    private long maxBytes = Long.MAX_VALUE;
+
+    // Frames that have not been purged, in arrival order.
+    private transient Map<VideoFrameWindow, PartialVideoFrame> partialFrames;
+    // Incomplete frames that were restored from a checkpoint.
+    private transient Set<VideoFrameWindow> restoredFrames;
+    private transient long lastPurgeWatermark;
+    private transient ListState<PartialVideoFrame> checkpointedPartialFrames;
+    // Chunk bytes of incomplete frames.
+    private transient Map<Integer, Long> bufferedBytesPerCamera;
+    private transient long bufferedBytes;
+    // Package-private for tests.
+    transient Counter evictedFrames;
+    transient Counter evictedBytes;
+
+    /**
+     * @param failOnError If true, terminate the Flink task on any ignorable errors.
+     *                    If false, such errors are logged and the corresponding VideoFrame is not emitted.
+     */
+    public ChunkedVideoFrameLocalReassembler withFailOnError(boolean failOnError) {
+        this.failOnError = failOnError;
+        return this;
+    }
+
+    public ChunkedVideoFrameLocalReassembler withFailOnError() {
+        return withFailOnError(true);
+    }
+
+    /**
+     * @param maxBytesPerCamera The maximum chunk bytes of incomplete frames for each camera.
+     * @param maxBytes          The maximum chunk bytes of incomplete frames for all cameras in this subtask.
+     */
+    public ChunkedVideoFrameLocalReassembler withMaxBufferedBytes(long maxBytesPerCamera, long maxBytes) {
+        this.maxBytesPerCamera = maxBytesPerCamera;
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    @Override
+    public void open(Configuration parameters) {
+        evictedFrames = getRuntimeContext().getMetricGroup().counter("evictedFrames");
+        evictedBytes = getRuntimeContext().getMetricGroup().counter("evictedBytes");
+    }
+
+    @Override
+    public void initializeState(FunctionInitializationContext context) throws Exception {
+        partialFrames = new LinkedHashMap<>();
+        restoredFrames = new HashSet<>();
+        bufferedBytesPerCamera = new HashMap<>();
+        bufferedBytes = 0;
+        lastPurgeWatermark = Long.MIN_VALUE;
+        checkpointedPartialFrames = context.getOperatorStateStore().getUnionListState(
+                new ListStateDescriptor<>("partialFrames", new PartialVideoFrame.Serializer()));
+        if (context.isRestored()) {
+            for (PartialVideoFrame partialFrame : checkpointedPartialFrames.get()) {
+                VideoFrameWindow window = new VideoFrameWindow(
+                        partialFrame.header.camera, partialFrame.header.ssrc, partialFrame.header.timestamp);
+                partialFrames.put(window, partialFrame);
+                if (!partialFrame.isReleased()) {
+                    restoredFrames.add(window);
+                    addBufferedBytes(window.getCamera(), partialFrame.getBufferedBytes());
+                }
+            }
+            log.info("initializeState: restored {} partial frames", partialFrames.size());
+        }
+    }
+
+    @Override
+    public void snapshotState(FunctionSnapshotContext context) throws Exception {
+        checkpointedPartialFrames.update(new ArrayList<>(partialFrames.values()));
+    }
+
+    @Override
+    public void processElement(ChunkedVideoFrame chunk, Context ctx, Collector<VideoFrame> out) {
+        long watermark = ctx.timerService().currentWatermark();
+        if (watermark > lastPurgeWatermark) {
+            purge(watermark);
+            lastPurgeWatermark = watermark;
+        }
+
+        VideoFrameWindow window = new VideoFrameWindow(chunk);
+        if (window.maxTimestamp() <= watermark) {
+            // This matches the behavior of the window operator for late elements.
+            log.debug("processElement: dropping late chunk; chunk={}, watermark={}", chunk, watermark);
+            return;
+        }
+
+        PartialVideoFrame partialFrame = partialFrames.get(window);
+        if (partialFrame == null) {
+            partialFrame = new PartialVideoFrame(chunk);
+            partialFrames.put(window, partialFrame);
+        }
+        try {
+            if (!partialFrame.add(chunk)) {
+                log.debug("processElement: ignoring duplicate chunk or chunk of released frame; chunk={}", chunk);
+                return;
+            }
+        } catch (DigestException e) {
+            // Reject the corrupt chunk but keep the frame so that the chunk can still be received again.
+            handleError(e);
+            return;
+        } catch (ChunkSequenceException e) {
+            remove(window, partialFrame);
+            handleError(e);
+            return;
+        }
+        addBufferedBytes(window.getCamera(), chunk.dataLength());
+        try {
+            if (partialFrame.isComplete()) {
+                restoredFrames.remove(window);
+                out.collect(partialFrame.toVideoFrame());
+                // Retain the bitmap until the watermark passes so that later duplicates are dropped.
+                release(window, partialFrame);
+            }
+        } catch (ChunkSequenceException | DigestException e) {
+            remove(window, partialFrame);
+            handleError(e);
+        }
+        evict(window.getCamera());
+    }
+
+    /**
+     * Evicts the oldest incomplete frames until the buffered bytes for the camera and for all cameras are within the limits.
+     */
+    private void evict(int camera) {
+        Iterator<Map.Entry<VideoFrameWindow, PartialVideoFrame>> it = partialFrames.entrySet().iterator();
+        while (it.hasNext() && (bufferedBytes > maxBytes || bufferedBytesPerCamera.getOrDefault(camera, 0L) > maxBytesPerCamera)) {
+            Map.Entry<VideoFrameWindow, PartialVideoFrame> entry = it.next();
+            VideoFrameWindow window = entry.getKey();
+            PartialVideoFrame partialFrame = entry.getValue();
+            if (!partialFrame.isReleased() && (bufferedBytes > maxBytes || window.getCamera() == camera)) {
+                long bytes = partialFrame.getBufferedBytes();
+                log.warn("evict: evicting incomplete frame; numChunksReceived={}, bytes={}, window={}",
+                        partialFrame.numChunksReceived, bytes, window);
+                evictedFrames.inc();
+                evictedBytes.inc(bytes);
+                restoredFrames.remove(window);
+                // Retain the bitmap until the watermark passes so that later chunks of this frame are dropped.
+                release(window, partialFrame);
+            }
+        }
+    }
+
+    private void release(VideoFrameWindow window, PartialVideoFrame partialFrame) {
+        addBufferedBytes(window.getCamera(), -partialFrame.getBufferedBytes());
+        partialFrame.releaseChunks();
+    }
+
+    private void remove(VideoFrameWindow window, PartialVideoFrame partialFrame) {
+        addBufferedBytes(window.getCamera(), -partialFrame.getBufferedBytes());
+        partialFrames.remove(window);
+        restoredFrames.remove(window);
+    }
+
+    /**
+     * @return The chunk bytes of incomplete frames of all cameras.
+     */
+    long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    private void addBufferedBytes(int camera, long bytes) {
+        bufferedBytes += bytes;
+        bufferedBytesPerCamera.merge(camera, bytes, Long::sum);
+    }
+
+    /**
+     * Remove frames that the watermark has passed. Incomplete frames are reported as errors.
+     */
+    private void purge(long watermark) {
+        Iterator<Map.Entry<VideoFrameWindow, PartialVideoFrame>> it = partialFrames.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<VideoFrameWindow, PartialVideoFrame> entry = it.next();
+            VideoFrameWindow window = entry.getKey();
+            if (window.maxTimestamp() <= watermark) {
+                it.remove();
+                addBufferedBytes(window.getCamera(), -entry.getValue().getBufferedBytes());
+                if (restoredFrames.remove(window)) {
+                    log.debug("purge: discarding restored partial frame; window={}", window);
+                } else if (!entry.getValue().isReleased()) {
+                    handleError(new ChunkSequenceException(MessageFormat.format(
+                            "Number of chunks received ({0}) does not match expected value ({1}); window={2}",
+                            entry.getValue().numChunksReceived, entry.getValue().finalChunkIndex + 1, window)));
+                }
+            }
+        }
+    }
+
+    private void handleError(Exception e) {
+        if (failOnError) {
+            throw new RuntimeException(e);
+        }
+        log.warn("Unable to reassemble frame:", e);
+    }
+}
@@ -13,21 +13,19 @@ package io.pravega.example.videoprocessor;
 import com.google.common.base.Preconditions;
 import io.pravega.example.video.ChunkedVideoFrame;
 import io.pravega.example.video.VideoFrame;
-import org.apache.flink.api.java.tuple.Tuple;
 import org.apache.flink.streaming.api.functions.windowing.ProcessWindowFunction;
 import org.apache.flink.util.Collector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.ByteBuffer;
 import java.security.DigestException;
-import java.text.MessageFormat;
-import java.util.Iterator;
 
 /**
  * A ProcessWindowFunction that concatenates ChunkedVideoFrame instances to produce VideoFrame instances.
+ * Chunks with a chunk hash are validated when the window fires because a trigger cannot remove
+ * individual elements from a window. ChunkedVideoFrameKeyedReassembler validates chunks as they arrive.
  */
-public class ChunkedVideoFrameReassembler extends ProcessWindowFunction<ChunkedVideoFrame, VideoFrame, Tuple, VideoFrameWindow> {
+public class ChunkedVideoFrameReassembler extends ProcessWindowFunction<ChunkedVideoFrame, VideoFrame, Integer, VideoFrameWindow> {
     private static Logger log = LoggerFactory.getLogger(ChunkedVideoFrameReassembler.class);
 
     private boolean failOnError = false;
@@ -46,57 +44,13 @@ public class ChunkedVideoFrameReassembler extends ProcessWindowFunction<ChunkedV
     }
 
     @Override
-    public void process(Tuple key, Context context, Iterable<ChunkedVideoFrame> elements, Collector<VideoFrame> out) throws ChunkSequenceException {
+    public void process(Integer key, Context context, Iterable<ChunkedVideoFrame> elements, Collector<VideoFrame> out) throws ChunkSequenceException {
         log.trace("process: window={}; elements={}", context.window(), elements);
-        Iterator<ChunkedVideoFrame> it = elements.iterator();
-        if (!it.hasNext()) {
-            return;
-        }
-        ChunkedVideoFrame firstChunk = it.next();
-
         try {
-            // Validate that chunks are in order and we have all of them.
-            short expectedChunkIndex = 0;
-            int totalSize = 0;
-            for (ChunkedVideoFrame chunk : elements) {
-                Preconditions.checkState(chunk.camera == context.window().getCamera());
-                Preconditions.checkState(chunk.ssrc == context.window().getSsrc());
-                Preconditions.checkState(chunk.timestamp.equals(context.window().getTimestamp()));
-                if (chunk.finalChunkIndex != firstChunk.finalChunkIndex) {
-                    throw new ChunkSequenceException(MessageFormat.format(
-                            "finalChunkIndex ({0}) does not match that of first chunk ({1}); window={2}, elements={3}",
-                            chunk.finalChunkIndex, firstChunk.finalChunkIndex, context.window(), elements));
-                }
-                if (chunk.chunkIndex < 0 || chunk.chunkIndex > firstChunk.finalChunkIndex) {
-                    throw new ChunkSequenceException(MessageFormat.format(
-                            "chunkIndex ({0}) is not between 0 and finalChunkIndex ({1}); window={2}, elements={3}",
-                            chunk.chunkIndex, firstChunk.finalChunkIndex, context.window(), elements));
-                }
-                if (chunk.chunkIndex != expectedChunkIndex) {
-                    throw new ChunkSequenceException(MessageFormat.format(
-                            "chunkIndex ({0}) does not match the expected value ({1}); window={2}, elements={3}",
-                            chunk.chunkIndex, expectedChunkIndex, context.window(), elements));
-                }
-                expectedChunkIndex++;
-                totalSize += chunk.data.length;
+            VideoFrame videoFrame = reassemble(context.window(), elements);
+            if (videoFrame != null) {
+                out.collect(videoFrame);
             }
-            if (expectedChunkIndex != firstChunk.finalChunkIndex + 1) {
-                throw new ChunkSequenceException(MessageFormat.format(
-                        "Number of chunks received ({0}) does not match expected value ({1}); window={2}, elements={3}",
-                        expectedChunkIndex, firstChunk.finalChunkIndex + 1, context.window(), elements));
-            }
-
-            VideoFrame videoFrame = new VideoFrame(firstChunk);
-
-            // Concatenate chunk data.
-            ByteBuffer buf = ByteBuffer.allocate(totalSize);
-            for (ChunkedVideoFrame chunk : elements) {
-                buf.put(chunk.data);
-            }
-            buf.flip();
-            videoFrame.data = buf.array();
-            videoFrame.validateHash();
-            out.collect(videoFrame);
         } catch (ChunkSequenceException | DigestException e) {
             if (failOnError) {
                 throw new RuntimeException(e);
@@ -104,4 +58,31 @@ public class ChunkedVideoFrameReassembler extends ProcessWindowFunction<ChunkedV
             log.warn("Unable to reassemble frame:", e);
         }
     }
+
+    /**
+     * Validates and concatenates the chunks of a single frame.
+     * Chunks may be in any order and duplicate chunks are ignored.
+     *
+     * @param window   Identifies the frame. All elements must belong to this window.
+     * @param elements The chunks of the frame.
+     * @return The reassembled frame, or null if there are no elements.
+     */
+    static VideoFrame reassemble(VideoFrameWindow window, Iterable<ChunkedVideoFrame> elements) throws ChunkSequenceException, DigestException {
+        PartialVideoFrame partialFrame = null;
+        for (ChunkedVideoFrame chunk : elements) {
+            Preconditions.checkState(chunk.camera == window.getCamera());
+            Preconditions.checkState(chunk.ssrc == window.getSsrc());
+            Preconditions.checkState(chunk.timestamp.equals(window.getTimestamp()));
+            if (partialFrame == null) {
+                partialFrame = new PartialVideoFrame(chunk);
+            }
+            if (!partialFrame.add(chunk)) {
+                log.debug("reassemble: ignoring duplicate chunk; chunk={}", chunk);
+            }
+        }
+        if (partialFrame == null) {
+            return null;
+        }
+        return partialFrame.toVideoFrame();
+    }
 }
@@ -11,18 +11,40 @@
 package io.pravega.example.videoprocessor;
 
 import io.pravega.example.video.ChunkedVideoFrame;
+import io.pravega.example.video.ChunkedVideoFrameBinaryFormat;
 import org.apache.flink.api.common.serialization.SerializationSchema;
 import org.apache.flink.shaded.jackson2.com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
- * Serializes ChunkedVideoFrame to JSON.
+ * Serializes ChunkedVideoFrame to JSON or to the more compact ChunkedVideoFrameBinaryFormat.
  */
 public class ChunkedVideoFrameSerializationSchema implements SerializationSchema<ChunkedVideoFrame> {
     private final ObjectMapper mapper = new ObjectMapper();
+    private final boolean useBinaryEncoding;
+
+    public ChunkedVideoFrameSerializationSchema() {
+        this(false);
+    }
+
+    /**
+     * @param useBinaryEncoding If true, use ChunkedVideoFrameBinaryFormat. Otherwise, use JSON.
+     */
+    public ChunkedVideoFrameSerializationSchema(boolean useBinaryEncoding) {
+        this.useBinaryEncoding = useBinaryEncoding;
+    }
 
     @Override
     public byte[] serialize(ChunkedVideoFrame element) {
+        if (useBinaryEncoding) {
+            return ChunkedVideoFrameBinaryFormat.serialize(element);
+        }
         try {
+            if (element.hasDataSlice()) {
+                // JSON requires the data to be an entire array.
+                ChunkedVideoFrame copy = new ChunkedVideoFrame(element);
+                copy.materializeData();
+                return mapper.writeValueAsBytes(copy);
+            }
             return mapper.writeValueAsBytes(element);
         } catch (Exception e) {
             throw new RuntimeException("Failed to serialize", e);
@@ -11,22 +11,57 @@
 package io.pravega.example.videoprocessor;
 
 import io.pravega.example.video.ChunkedVideoFrame;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.streaming.api.windowing.triggers.Trigger;
 import org.apache.flink.streaming.api.windowing.triggers.TriggerResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A Trigger that immediately fires when the last chunk for a frame is received.
+ * A Trigger that immediately fires when all chunks for a frame have been received, in any order.
+ * If the frame has parity chunks, it fires when any finalChunkIndex + 1 chunks have been received.
+ * A bitmap of received chunks is kept until the window is cleaned up so that duplicate and parity chunks
+ * that arrive after the frame has fired are purged without firing again.
  */
 public class ChunkedVideoFrameTrigger extends Trigger<ChunkedVideoFrame, VideoFrameWindow> {
     private static Logger log = LoggerFactory.getLogger(ChunkedVideoFrameTrigger.class);
 
+    private final ValueStateDescriptor<long[]> receivedChunksDescriptor = new ValueStateDescriptor<>("receivedChunks", long[].class);
+
     @Override
-    public TriggerResult onElement(ChunkedVideoFrame element, long timestamp, VideoFrameWindow window, TriggerContext ctx) {
-        if (element.chunkIndex == element.finalChunkIndex) {
-            // If we have the last chunk, fire immediately.
-            log.trace("onElement: FIRE_AND_PURGE; final chunk; element={}, timestamp={}, window={}, getCurrentWatermark={}",
+    public TriggerResult onElement(ChunkedVideoFrame element, long timestamp, VideoFrameWindow window, TriggerContext ctx) throws Exception {
+        final int numDataChunks = element.finalChunkIndex + 1;
+        final int numChunks = numDataChunks + element.numParityChunks;
+        if (element.chunkIndex < 0 || element.chunkIndex >= numChunks) {
+            // Fire immediately so that the reassembler reports the error.
+            log.trace("onElement: FIRE_AND_PURGE; invalid chunk index; element={}, window={}", element, window);
+            return TriggerResult.FIRE_AND_PURGE;
+        }
+        ValueState<long[]> receivedChunksState = ctx.getPartitionedState(receivedChunksDescriptor);
+        long[] receivedChunks = receivedChunksState.value();
+        if (receivedChunks == null) {
+            receivedChunks = PartialVideoFrame.newBitmap(numChunks);
+        } else if (receivedChunks.length != PartialVideoFrame.newBitmap(numChunks).length) {
+            // Inconsistent finalChunkIndex. Fire immediately so that the reassembler reports the error.
+            log.trace("onElement: FIRE_AND_PURGE; inconsistent finalChunkIndex; element={}, window={}", element, window);
+            return TriggerResult.FIRE_AND_PURGE;
+        }
+        if (PartialVideoFrame.cardinality(receivedChunks) >= numDataChunks) {
+            // The frame has already fired. Discard the duplicate or unneeded parity chunk.
+            log.trace("onElement: PURGE; chunk after frame fired; element={}, window={}", element, window);
+            return TriggerResult.PURGE;
+        }
+        if (PartialVideoFrame.testAndSet(receivedChunks, element.chunkIndex)) {
+            // The reassembler will ignore the duplicate.
+            log.trace("onElement: CONTINUE; duplicate chunk; element={}, window={}", element, window);
+            return TriggerResult.CONTINUE;
+        }
+        receivedChunksState.update(receivedChunks);
+        boolean complete = PartialVideoFrame.cardinality(receivedChunks) >= numDataChunks;
+        if (complete) {
+            // If we have all chunks, fire immediately.
+            log.trace("onElement: FIRE_AND_PURGE; all chunks received; element={}, timestamp={}, window={}, getCurrentWatermark={}",
                     element, timestamp, window, ctx.getCurrentWatermark());
             return TriggerResult.FIRE_AND_PURGE;
         }
@@ -62,5 +97,7 @@ public class ChunkedVideoFrameTrigger extends Trigger<ChunkedVideoFrame, VideoFr
 
     @Override
     public void clear(VideoFrameWindow window, TriggerContext ctx) {
+        ctx.getPartitionedState(receivedChunksDescriptor).clear();
+        ctx.deleteEventTimeTimer(window.maxTimestamp());
     }
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.ChunkedVideoFrame;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeinfo.TypeInfoFactory;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.TypeSerializerSingleton;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * TypeInformation for ChunkedVideoFrame.
+ * As with VideoFrameTypeInfo, streams of ChunkedVideoFrame must be keyed with a KeySelector.
+ */
+public class ChunkedVideoFrameTypeInfo extends TypeInformation<ChunkedVideoFrame> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public boolean isBasicType() {
+        return false;
+    }
+
+    @Override
+    public boolean isTupleType() {
+        return false;
+    }
+
+    @Override
+    public int getArity() {
+        return 1;
+    }
+
+    @Override
+    public int getTotalFields() {
+        return 1;
+    }
+
+    @Override
+    public Class<ChunkedVideoFrame> getTypeClass() {
+        return ChunkedVideoFrame.class;
+    }
+
+    @Override
+    public boolean isKeyType() {
+        return false;
+    }
+
+    @Override
+    public TypeSerializer<ChunkedVideoFrame> createSerializer(ExecutionConfig config) {
+        return new Serializer();
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkedVideoFrameTypeInfo";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ChunkedVideoFrameTypeInfo && ((ChunkedVideoFrameTypeInfo) obj).canEqual(this);
+    }
+
+    @Override
+    public int hashCode() {
+        return ChunkedVideoFrameTypeInfo.class.hashCode();
+    }
+
+    @Override
+    public boolean canEqual(Object obj) {
+        return obj instanceof ChunkedVideoFrameTypeInfo;
+    }
+
+    /**
+     * Registered with the TypeExtractor by AbstractJob.
+     */
+    public static class Factory extends TypeInfoFactory<ChunkedVideoFrame> {
+        @Override
+        public TypeInformation<ChunkedVideoFrame> createTypeInfo(Type t, Map<String, TypeInformation<?>> genericParameters) {
+            return new ChunkedVideoFrameTypeInfo();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Serializer
+    // ------------------------------------------------------------------------
+
+    /**
+     * The serializer used to write the ChunkedVideoFrame type.
+     * The VideoFrame fields are written as in VideoFrameTypeInfo.Serializer, followed by the chunk fields.
+     * If the chunk is a slice of a larger buffer, copies share the buffer and only the slice is written.
+     */
+    public static class Serializer extends TypeSerializerSingleton<ChunkedVideoFrame> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean isImmutableType() {
+            return false;
+        }
+
+        @Override
+        public ChunkedVideoFrame createInstance() {
+            return new ChunkedVideoFrame();
+        }
+
+        @Override
+        public ChunkedVideoFrame copy(ChunkedVideoFrame from) {
+            ChunkedVideoFrame to = new ChunkedVideoFrame();
+            VideoFrameTypeInfo.Serializer.copyFields(from, to);
+            if (from.hasDataSlice()) {
+                to.setDataSlice(from.dataArray(), from.dataOffset(), from.dataLength());
+            }
+            to.chunkIndex = from.chunkIndex;
+            to.finalChunkIndex = from.finalChunkIndex;
+            to.chunkHash = from.chunkHash == null ? null : from.chunkHash.clone();
+            to.numParityChunks = from.numParityChunks;
+            to.frameSize = from.frameSize;
+            return to;
+        }
+
+        @Override
+        public ChunkedVideoFrame copy(ChunkedVideoFrame from, ChunkedVideoFrame reuse) {
+            return copy(from);
+        }
+
+        @Override
+        public int getLength() {
+            return -1;
+        }
+
+        @Override
+        public void serialize(ChunkedVideoFrame record, DataOutputView target) throws IOException {
+            VideoFrameTypeInfo.Serializer.serializeFields(record, record.dataArray(), record.dataOffset(), record.dataLength(), target);
+            target.writeShort(record.chunkIndex);
+            target.writeShort(record.finalChunkIndex);
+            VideoFrameTypeInfo.Serializer.writeBytes(record.chunkHash, target);
+            target.writeShort(record.numParityChunks);
+            target.writeInt(record.frameSize);
+        }
+
+        @Override
+        public ChunkedVideoFrame deserialize(DataInputView source) throws IOException {
+            ChunkedVideoFrame frame = new ChunkedVideoFrame();
+            VideoFrameTypeInfo.Serializer.deserializeFields(frame, source);
+            frame.chunkIndex = source.readShort();
+            frame.finalChunkIndex = source.readShort();
+            frame.chunkHash = VideoFrameTypeInfo.Serializer.readBytes(source);
+            frame.numParityChunks = source.readShort();
+            frame.frameSize = source.readInt();
+            return frame;
+        }
+
+        @Override
+        public ChunkedVideoFrame deserialize(ChunkedVideoFrame reuse, DataInputView source) throws IOException {
+            return deserialize(source);
+        }
+
+        @Override
+        public void copy(DataInputView source, DataOutputView target) throws IOException {
+            VideoFrameTypeInfo.Serializer.copyFields(source, target);
+            target.writeShort(source.readShort());
+            target.writeShort(source.readShort());
+            VideoFrameTypeInfo.Serializer.copyBytes(source, target);
+            target.writeShort(source.readShort());
+            target.writeInt(source.readInt());
+        }
+
+        @Override
+        public boolean canEqual(Object obj) {
+            return obj instanceof ChunkedVideoFrameTypeInfo.Serializer;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.ImageFormat;
+import io.pravega.example.video.PixelFormat;
+import io.pravega.example.video.RawVideoFrame;
+import io.pravega.example.video.VideoFrame;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+
+/**
+ * Generates test images like ImageGenerator, but fast enough for a single task to drive hundreds of cameras.
+ *
+ * A pool of noise backgrounds is created once from a seed, so the output is the same for each run with the same seed.
+ * "CAMERA" and "FRAME" are drawn on the backgrounds when they are created. For each frame, the digits of the camera
+ * and frame number are copied onto a background from a glyph atlas that is rendered once with the font of ImageGenerator.
+ *
+ * PNG backgrounds are pre-encoded with uncompressed deflate blocks. Noise does not compress, so this is about the size
+ * of a compressed image. Generating a PNG frame then only copies the pre-encoded background, overwrites the pixels of
+ * the digits, and updates the CRC-32 of the changed chunks and the Adler-32 of the image data.
+ * For other formats, the digits are drawn on a copy of the background pixels, which are then encoded by the codec.
+ *
+ * An instance must only be used by one thread at a time.
+ */
+public class FastImageGenerator extends ImageGenerator {
+    private static final String ATLAS_CHARS = "0123456789-";
+
+    private long seed = 0;
+    private int poolSize = 8;
+
+    // The following are created by the first call to generate.
+    private GlyphAtlas atlas;
+    private int lineHeight;
+    private RawVideoFrame[] backgrounds;
+    private StoredPng[] pngBackgrounds;
+    // Indexes of the pixels of the digits of the current frame.
+    private int[] ink = new int[1024];
+    private int numInk;
+
+    public FastImageGenerator(int width, int height) {
+        super(width, height);
+    }
+
+    /**
+     * @param seed The seed of the random noise of the backgrounds.
+     */
+    public FastImageGenerator withSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param poolSize The number of different backgrounds. The background of each frame is chosen by camera and frame number.
+     */
+    public FastImageGenerator withPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+        return this;
+    }
+
+    @Override
+    public byte[] generate(int camera, int frameNumber) {
+        if (atlas == null) {
+            createBackgrounds();
+        }
+        numInk = 0;
+        addText(String.format("%04d", camera), 5, 5 + 2 * lineHeight);
+        addText(String.format("%05d", frameNumber), 5, 5 + 4 * lineHeight);
+        int index = Math.floorMod(camera + frameNumber, poolSize);
+        if (imageFormat == ImageFormat.PNG) {
+            return pngBackgrounds[index].stamp(ink, numInk);
+        }
+        RawVideoFrame background = backgrounds[index];
+        byte[] pixels = background.pixels.clone();
+        for (int i = 0; i < numInk; i++) {
+            Arrays.fill(pixels, 3 * ink[i], 3 * ink[i] + 3, (byte) 0xFF);
+        }
+        RawVideoFrame frame = new RawVideoFrame(background, width, height, PixelFormat.BGR24, pixels);
+        return getCodec().encode(frame, imageFormat.getFormatName());
+    }
+
+    private void createBackgrounds() {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setFont(getFont(graphics));
+        FontMetrics metrics = graphics.getFontMetrics();
+        lineHeight = metrics.getHeight();
+        atlas = new GlyphAtlas(metrics);
+
+        Random random = new Random(seed);
+        backgrounds = new RawVideoFrame[poolSize];
+        pngBackgrounds = imageFormat == ImageFormat.PNG ? new StoredPng[poolSize] : null;
+        byte[] imageBuffer = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < poolSize; i++) {
+            random.nextBytes(imageBuffer);
+            graphics.drawString("CAMERA", 5, 5 + lineHeight);
+            graphics.drawString("FRAME", 5, 5 + 3 * lineHeight);
+            backgrounds[i] = new RawVideoFrame(new VideoFrame(), width, height, PixelFormat.BGR24, imageBuffer.clone());
+            if (pngBackgrounds != null) {
+                pngBackgrounds[i] = new StoredPng(backgrounds[i]);
+            }
+        }
+        graphics.dispose();
+        if (pngBackgrounds != null) {
+            backgrounds = null;
+        }
+    }
+
+    /**
+     * Adds the pixels of text, clipped to the image, to ink.
+     */
+    private void addText(String text, int x, int baseline) {
+        for (int c = 0; c < text.length(); c++) {
+            Glyph glyph = atlas.get(text.charAt(c));
+            if (numInk + glyph.dx.length > ink.length) {
+                ink = Arrays.copyOf(ink, 2 * (numInk + glyph.dx.length));
+            }
+            for (int i = 0; i < glyph.dx.length; i++) {
+                int px = x + glyph.dx[i];
+                int py = baseline + glyph.dy[i];
+                if (px >= 0 && px < width && py >= 0 && py < height) {
+                    ink[numInk++] = py * width + px;
+                }
+            }
+            x += glyph.advance;
+        }
+    }
+
+    /**
+     * The pixels drawn by a character, relative to the start of its baseline.
+     */
+    private static class Glyph {
+        final int advance;
+        final int[] dx;
+        final int[] dy;
+
+        Glyph(int advance, int[] dx, int[] dy) {
+            this.advance = advance;
+            this.dx = dx;
+            this.dy = dy;
+        }
+    }
+
+    /**
+     * Glyphs rendered once by Graphics2D without antialiasing.
+     */
+    private static class GlyphAtlas {
+        private final Map<Character, Glyph> glyphs = new HashMap<>();
+
+        GlyphAtlas(FontMetrics metrics) {
+            int maxAdvance = metrics.getMaxAdvance() > 0 ? metrics.getMaxAdvance() : metrics.getHeight();
+            // Glyphs may extend beyond their advance, so each one is drawn with a margin.
+            int margin = maxAdvance;
+            int boxWidth = maxAdvance + 2 * margin;
+            int boxHeight = metrics.getHeight() + 2 * margin;
+            int baseline = margin + metrics.getAscent();
+            BufferedImage image = new BufferedImage(boxWidth, boxHeight, TYPE_BYTE_GRAY);
+            byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            for (char c : ATLAS_CHARS.toCharArray()) {
+                Arrays.fill(pixels, (byte) 0);
+                Graphics2D graphics = image.createGraphics();
+                graphics.setFont(metrics.getFont());
+                graphics.drawString(String.valueOf(c), margin, baseline);
+                graphics.dispose();
+                int count = 0;
+                for (byte p : pixels) {
+                    if (p != 0) {
+                        count++;
+                    }
+                }
+                int[] dx = new int[count];
+                int[] dy = new int[count];
+                int i = 0;
+                for (int p = 0; p < pixels.length; p++) {
+                    if (pixels[p] != 0) {
+                        dx[i] = p % boxWidth - margin;
+                        dy[i] = p / boxWidth - baseline;
+                        i++;
+                    }
+                }
+                glyphs.put(c, new Glyph(metrics.charWidth(c), dx, dy));
+            }
+        }
+
+        Glyph get(char c) {
+            Glyph glyph = glyphs.get(c);
+            if (glyph == null) {
+                throw new IllegalArgumentException("Character '" + c + "' is not in the glyph atlas");
+            }
+            return glyph;
+        }
+    }
+
+    /**
+     * A PNG file of a BGR24 image in which the image data is stored in uncompressed deflate blocks.
+     * Each block is in its own IDAT chunk so that changing a pixel requires only the CRC-32 of one chunk to be updated.
+     * The Adler-32 of the zlib stream is in a final IDAT chunk.
+     */
+    private static class StoredPng {
+        private static final byte[] SIGNATURE = {(byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n'};
+        private static final int MAX_BLOCK_SIZE = 65535;
+
+        private final int width;
+        private final int rowLength;
+        private final byte[] file;
+        // For each block, the offset in file of its IDAT chunk, and of its data.
+        private final int[] chunkOffsets;
+        private final int[] dataOffsets;
+        private final int[] blockLengths;
+        private final long[] blockAdlers;
+        private final int trailerOffset;
+        private final boolean[] changed;
+        private final CRC32 crc = new CRC32();
+        private final Adler32 adler = new Adler32();
+
+        StoredPng(RawVideoFrame frame) {
+            width = frame.width;
+            rowLength = 1 + 3 * frame.width;
+            int rawLength = rowLength * frame.height;
+            int numBlocks = (rawLength + MAX_BLOCK_SIZE - 1) / MAX_BLOCK_SIZE;
+            chunkOffsets = new int[numBlocks];
+            dataOffsets = new int[numBlocks];
+            blockLengths = new int[numBlocks];
+            blockAdlers = new long[numBlocks];
+            changed = new boolean[numBlocks];
+            // Signature, IHDR, zlib header, IDAT chunks with 5-byte block headers, Adler-32 IDAT, and IEND.
+            file = new byte[8 + 25 + 2 + numBlocks * (12 + 5) + rawLength + 16 + 12];
+
+            int offset = 0;
+            System.arraycopy(SIGNATURE, 0, file, 0, SIGNATURE.length);
+            offset += SIGNATURE.length;
+            int ihdrOffset = offset;
+            offset = putInt(offset, 13);
+            offset = putAscii(offset, "IHDR");
+            offset = putInt(offset, frame.width);
+            offset = putInt(offset, frame.height);
+            file[offset++] = 8;     // bit depth
+            file[offset++] = 2;     // RGB
+            offset += 3;            // compression, filter, and interlace methods
+            putCrc(ihdrOffset);
+            offset += 4;
+
+            for (int block = 0; block < numBlocks; block++) {
+                int blockLength = Math.min(MAX_BLOCK_SIZE, rawLength - block * MAX_BLOCK_SIZE);
+                chunkOffsets[block] = offset;
+                blockLengths[block] = blockLength;
+                offset = putInt(offset, (block == 0 ? 2 : 0) + 5 + blockLength);
+                offset = putAscii(offset, "IDAT");
+                if (block == 0) {
+                    // zlib header for a 32 KB window without compression.
+                    file[offset++] = 0x78;
+                    file[offset++] = 0x01;
+                }
+                file[offset++] = (byte) (block == numBlocks - 1 ? 1 : 0);
+                file[offset++] = (byte) blockLength;
+                file[offset++] = (byte) (blockLength >>> 8);
+                file[offset++] = (byte) ~blockLength;
+                file[offset++] = (byte) (~blockLength >>> 8);
+                dataOffsets[block] = offset;
+                offset += blockLength + 4;
+            }
+            trailerOffset = offset;
+            offset = putInt(offset, 4);
+            offset = putAscii(offset, "IDAT");
+            offset += 8;
+            int iendOffset = offset;
+            offset = putInt(offset, 0);
+            putAscii(offset, "IEND");
+            putCrc(iendOffset);
+
+            // Each row is filter type 0 followed by RGB pixels.
+            for (int y = 0; y < frame.height; y++) {
+                int raw = y * rowLength;
+                file[position(raw++)] = 0;
+                for (int x = 0; x < frame.width; x++) {
+                    int p = 3 * (y * frame.width + x);
+                    file[position(raw++)] = frame.pixels[p + 2];
+                    file[position(raw++)] = frame.pixels[p + 1];
+                    file[position(raw++)] = frame.pixels[p];
+                }
+            }
+            Arrays.fill(changed, true);
+            update(file);
+            Arrays.fill(changed, false);
+        }
+
+        /**
+         * @param ink    The indexes of the pixels to set to white.
+         * @return A new PNG file.
+         */
+        byte[] stamp(int[] ink, int numInk) {
+            byte[] out = file.clone();
+            for (int i = 0; i < numInk; i++) {
+                int pixel = ink[i];
+                int raw = (pixel / width) * rowLength + 1 + 3 * (pixel % width);
+                for (int c = 0; c < 3; c++, raw++) {
+                    out[position(raw)] = (byte) 0xFF;
+                    changed[raw / MAX_BLOCK_SIZE] = true;
+                }
+            }
+            update(out);
+            Arrays.fill(changed, false);
+            return out;
+        }
+
+        /**
+         * Updates the checksums of the changed blocks of out and the Adler-32 of all blocks.
+         */
+        private void update(byte[] out) {
+            long combined = 1;
+            for (int block = 0; block < blockLengths.length; block++) {
+                long blockAdler = blockAdlers[block];
+                if (changed[block]) {
+                    adler.reset();
+                    adler.update(out, dataOffsets[block], blockLengths[block]);
+                    blockAdler = adler.getValue();
+                    if (out == file) {
+                        blockAdlers[block] = blockAdler;
+                    }
+                    putCrc(out, chunkOffsets[block]);
+                }
+                combined = PngEncoder.combineAdler32(combined, blockAdler, blockLengths[block]);
+            }
+            int offset = trailerOffset + 8;
+            out[offset++] = (byte) (combined >>> 24);
+            out[offset++] = (byte) (combined >>> 16);
+            out[offset++] = (byte) (combined >>> 8);
+            out[offset] = (byte) combined;
+            putCrc(out, trailerOffset);
+        }
+
+        /**
+         * @return The offset in file of a byte of the uncompressed image data.
+         */
+        private int position(int raw) {
+            return dataOffsets[raw / MAX_BLOCK_SIZE] + raw % MAX_BLOCK_SIZE;
+        }
+
+        private int putInt(int offset, int value) {
+            file[offset] = (byte) (value >>> 24);
+            file[offset + 1] = (byte) (value >>> 16);
+            file[offset + 2] = (byte) (value >>> 8);
+            file[offset + 3] = (byte) value;
+            return offset + 4;
+        }
+
+        private int putAscii(int offset, String s) {
+            for (int i = 0; i < s.length(); i++) {
+                file[offset + i] = (byte) s.charAt(i);
+            }
+            return offset + s.length();
+        }
+
+        private void putCrc(int chunkOffset) {
+            putCrc(file, chunkOffset);
+        }
+
+        /**
+         * Writes the CRC-32 of the chunk that begins at chunkOffset.
+         */
+        private void putCrc(byte[] out, int chunkOffset) {
+            int length = ((out[chunkOffset] & 0xFF) << 24) | ((out[chunkOffset + 1] & 0xFF) << 16)
+                    | ((out[chunkOffset + 2] & 0xFF) << 8) | (out[chunkOffset + 3] & 0xFF);
+            crc.reset();
+            crc.update(out, chunkOffset + 4, 4 + length);
+            long value = crc.getValue();
+            int offset = chunkOffset + 8 + length;
+            out[offset] = (byte) (value >>> 24);
+            out[offset + 1] = (byte) (value >>> 16);
+            out[offset + 2] = (byte) (value >>> 8);
+            out[offset + 3] = (byte) value;
+        }
+    }
+}
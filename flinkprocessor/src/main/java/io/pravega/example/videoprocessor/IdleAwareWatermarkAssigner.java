@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import org.apache.flink.api.common.functions.AbstractRichFunction;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.streaming.api.functions.AssignerWithPeriodicWatermarks;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A timestamp and watermark assigner like BoundedOutOfOrdernessTimestampExtractor that does not hold back
+ * the watermark when its input is idle.
+ * When no element has been received by this subtask for the idle timeout (in processing time),
+ * the watermark advances with processing time from the last element, as if the stalled cameras
+ * were still sending frames. A subtask that has never received an element uses the current time.
+ * This assumes that event timestamps are close to the wall clock, as they are for live cameras.
+ * Because the downstream watermark is the minimum of all input subtasks, a subtask that is reading
+ * only stalled or offline cameras then no longer delays windows for the other cameras.
+ * Elements that arrive after idleness may be late.
+ *
+ * The last element time of each camera is tracked so that idle cameras are reported by metrics:
+ * idle is 1 when this subtask is idle, idleCameras is the number of idle cameras in this subtask,
+ * and camera.(camera).idle is 1 for each idle camera.
+ *
+ * The lateness of each element, which is how far its timestamp is behind the maximum timestamp so far,
+ * is recorded in the lateness histogram metric. With an adaptive delay, the watermark lags the maximum timestamp
+ * by a percentile of recent lateness, within bounds, instead of by a fixed delay.
+ * The current delay is reported by the watermarkDelayMs metric.
+ * When the delay increases, elements that are less late than the new delay may still be late,
+ * because the watermark does not go backwards.
+ * Flink opens this as a rich function because it is the user function of the assigner operator.
+ */
+public abstract class IdleAwareWatermarkAssigner<T> extends AbstractRichFunction implements AssignerWithPeriodicWatermarks<T> {
+    private static Logger log = LoggerFactory.getLogger(IdleAwareWatermarkAssigner.class);
+
+    private final long idleTimeoutMs;
+    private boolean adaptiveDelay = false;
+    private double delayPercentile = 99.0;
+    private long minDelayMs = 0;
+    private long maxDelayMs = Long.MAX_VALUE;
+
+    private long currentMaxTimestamp = Long.MIN_VALUE;
+    private long lastEmittedWatermark = Long.MIN_VALUE;
+    // Processing time of the last element, or when this was opened if there has been no element.
+    private long lastElementTime;
+    // Metrics are read by another thread.
+    private volatile boolean idle = false;
+    private volatile long delayMs;
+    // Map from camera to processing time of its last element.
+    private transient Map<Integer, Long> lastElementTimeByCamera;
+    private transient MetricGroup metricGroup;
+    private transient LatenessHistogram lateness;
+
+    /**
+     * @param maxOutOfOrdernessMs The watermark lags the maximum timestamp by this much, unless the delay is adaptive.
+     * @param idleTimeoutMs       A subtask or camera without an element for this long is idle. If 0, idleness is not detected.
+     */
+    public IdleAwareWatermarkAssigner(long maxOutOfOrdernessMs, long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.lastElementTime = System.currentTimeMillis();
+        this.lastElementTimeByCamera = new ConcurrentHashMap<>();
+        this.lateness = new LatenessHistogram();
+        this.delayMs = maxOutOfOrdernessMs;
+    }
+
+    /**
+     * Sets the delay of the watermark from the lateness of recent elements.
+     * Until an element has been received, the delay is maxDelayMs.
+     *
+     * @param delayPercentile The percentile of lateness, from 0 to 100.
+     * @param minDelayMs      The minimum delay.
+     * @param maxDelayMs      The maximum delay.
+     */
+    public IdleAwareWatermarkAssigner<T> withAdaptiveDelay(double delayPercentile, long minDelayMs, long maxDelayMs) {
+        this.adaptiveDelay = true;
+        this.delayPercentile = delayPercentile;
+        this.minDelayMs = minDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.delayMs = maxDelayMs;
+        return this;
+    }
+
+    public abstract long extractTimestamp(T element);
+
+    public abstract int extractCamera(T element);
+
+    @Override
+    public void open(Configuration parameters) {
+        lastElementTime = System.currentTimeMillis();
+        lastElementTimeByCamera = new ConcurrentHashMap<>();
+        lateness = new LatenessHistogram();
+        metricGroup = getRuntimeContext().getMetricGroup();
+        metricGroup.histogram("lateness", lateness);
+        metricGroup.gauge("watermarkDelayMs", (Gauge<Long>) () -> delayMs);
+        metricGroup.gauge("idle", (Gauge<Integer>) () -> idle ? 1 : 0);
+        metricGroup.gauge("idleCameras", (Gauge<Integer>) () -> countIdleCameras(System.currentTimeMillis()));
+    }
+
+    @Override
+    public final long extractTimestamp(T element, long previousElementTimestamp) {
+        return extractTimestamp(element, previousElementTimestamp, System.currentTimeMillis());
+    }
+
+    final long extractTimestamp(T element, long previousElementTimestamp, long now) {
+        long timestamp = extractTimestamp(element);
+        if (currentMaxTimestamp != Long.MIN_VALUE) {
+            lateness.update(Math.max(0, currentMaxTimestamp - timestamp));
+        }
+        currentMaxTimestamp = Math.max(currentMaxTimestamp, timestamp);
+        lastElementTime = now;
+        int camera = extractCamera(element);
+        if (lastElementTimeByCamera.put(camera, now) == null && metricGroup != null) {
+            metricGroup.addGroup("camera", Integer.toString(camera))
+                    .gauge("idle", (Gauge<Integer>) () -> isCameraIdle(camera, System.currentTimeMillis()) ? 1 : 0);
+        }
+        return timestamp;
+    }
+
+    @Override
+    public final Watermark getCurrentWatermark() {
+        return getCurrentWatermark(System.currentTimeMillis());
+    }
+
+    final Watermark getCurrentWatermark(long now) {
+        if (adaptiveDelay) {
+            long percentile = lateness.getQuantile(delayPercentile / 100.0);
+            delayMs = percentile < 0 ? maxDelayMs : Math.min(maxDelayMs, Math.max(minDelayMs, percentile));
+        }
+        long watermark = currentMaxTimestamp == Long.MIN_VALUE ? Long.MIN_VALUE : currentMaxTimestamp - delayMs;
+        boolean nowIdle = idleTimeoutMs > 0 && now - lastElementTime >= idleTimeoutMs;
+        if (nowIdle != idle) {
+            log.info("getCurrentWatermark: idle={}, currentMaxTimestamp={}", nowIdle, currentMaxTimestamp);
+            idle = nowIdle;
+        }
+        if (idle) {
+            long elapsed = now - lastElementTime;
+            watermark = currentMaxTimestamp == Long.MIN_VALUE
+                    ? now - delayMs
+                    : currentMaxTimestamp + elapsed - delayMs;
+        }
+        // Watermarks never go backwards.
+        lastEmittedWatermark = Math.max(lastEmittedWatermark, watermark);
+        return new Watermark(lastEmittedWatermark);
+    }
+
+    long getDelayMs() {
+        return delayMs;
+    }
+
+    boolean isIdle() {
+        return idle;
+    }
+
+    boolean isCameraIdle(int camera, long now) {
+        Long time = lastElementTimeByCamera.get(camera);
+        return idleTimeoutMs > 0 && time != null && now - time >= idleTimeoutMs;
+    }
+
+    int countIdleCameras(long now) {
+        int count = 0;
+        for (Integer camera : lastElementTimeByCamera.keySet()) {
+            if (isCameraIdle(camera, now)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
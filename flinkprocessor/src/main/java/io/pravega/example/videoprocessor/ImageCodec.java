@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.RawVideoFrame;
+import io.pravega.example.video.VideoFrame;
+
+import java.awt.*;
+
+/**
+ * Decodes and encodes image files such as PNG, JPEG, and QOI.
+ * The format of an image to decode is determined from its content.
+ * Implementations may reuse buffers across calls and must only be used by one thread at a time.
+ * Use {@link ImageCodecOptions#createCodec} to create the implementation selected for a job.
+ */
+public interface ImageCodec {
+    /**
+     * Decodes an image to BGR24 or GRAY8 pixels.
+     * The result may share the pixels of an image that is reused by the next call.
+     *
+     * @param image     Image file bytes
+     * @param header    The header fields of the result are copied from this frame.
+     * @param region    The region of the image to decode, or null to decode the entire image.
+     *                  The region is clipped to the image.
+     * @param minWidth  If greater than 0, the decoder may skip source pixels as long as the decoded width is at least minWidth.
+     * @param minHeight If greater than 0, the decoder may skip source pixels as long as the decoded height is at least minHeight.
+     */
+    RawVideoFrame decode(byte[] image, VideoFrame header, Rectangle region, int minWidth, int minHeight);
+
+    default RawVideoFrame decode(byte[] image, VideoFrame header) {
+        return decode(image, header, null, 0, 0);
+    }
+
+    /**
+     * @param formatName "png", "jpeg", or "qoi". See ImageFormat.getFormatName.
+     * @return Image file bytes
+     */
+    byte[] encode(RawVideoFrame frame, String formatName);
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import java.io.Serializable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Selects an ImageCodec implementation and its tuning parameters.
+ * This is serializable so that it can be passed to Flink functions, which create their codecs in open().
+ *
+ * The PNG defaults, level 1 with the UP filter, make PngEncoder faster than the ImageIO PNG writer even on a single
+ * thread, which is the default because --gridThreads defaults to 1. In ImageProcessingTests.benchmarkPngEncoder
+ * on Java 8 and 17, level 1 UP took 135-245 ms and the ImageIO writer 280-705 ms. Level 6 ADAPTIVE took 360-2080 ms
+ * for output that was at most 10% smaller.
+ */
+public class ImageCodecOptions implements Serializable {
+    private Backend backend = Backend.IMAGEIO;
+    private int pngCompressionLevel = 1;
+    private PngEncoder.Filter pngFilter = PngEncoder.Filter.UP;
+    private int jpegQuality = 90;
+
+    /**
+     * The library used to decode and encode images.
+     */
+    public enum Backend {
+        // javax.imageio, with PngEncoder for PNG output.
+        IMAGEIO,
+        // OpenCV imdecode and imencode on the CPU.
+        OPENCV,
+    }
+
+    public ImageCodecOptions withBackend(Backend backend) {
+        this.backend = backend;
+        return this;
+    }
+
+    /**
+     * @param pngCompressionLevel Deflate level from 0 (no compression) to 9 (best compression).
+     */
+    public ImageCodecOptions withPngCompressionLevel(int pngCompressionLevel) {
+        this.pngCompressionLevel = pngCompressionLevel;
+        return this;
+    }
+
+    /**
+     * @param pngFilter The PNG row filter. This is ignored by OpenCV, which always uses an adaptive filter.
+     */
+    public ImageCodecOptions withPngFilter(PngEncoder.Filter pngFilter) {
+        this.pngFilter = pngFilter;
+        return this;
+    }
+
+    /**
+     * @param jpegQuality JPEG quality from 0 to 100.
+     */
+    public ImageCodecOptions withJpegQuality(int jpegQuality) {
+        this.jpegQuality = jpegQuality;
+        return this;
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public int getPngCompressionLevel() {
+        return pngCompressionLevel;
+    }
+
+    public PngEncoder.Filter getPngFilter() {
+        return pngFilter;
+    }
+
+    public int getJpegQuality() {
+        return jpegQuality;
+    }
+
+    /**
+     * @param executor If not null, encoders that support it compress parts of an image in parallel on this executor.
+     */
+    public ImageCodec createCodec(ExecutorService executor) {
+        switch (backend) {
+            case IMAGEIO:
+                return new ImageIoCodec(this, executor);
+            case OPENCV:
+                return new OpenCvCodec(this);
+            default:
+                throw new IllegalArgumentException("Unsupported image codec backend " + backend);
+        }
+    }
+
+    public ImageCodec createCodec() {
+        return createCodec(null);
+    }
+
+    @Override
+    public String toString() {
+        return "ImageCodecOptions{" +
+                "backend=" + backend +
+                ", pngCompressionLevel=" + pngCompressionLevel +
+                ", pngFilter=" + pngFilter +
+                ", jpegQuality=" + jpegQuality +
+                '}';
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.ImageFormat;
+import io.pravega.example.video.Qoi;
+import io.pravega.example.video.RawVideoFrame;
+import io.pravega.example.video.VideoFrame;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Decodes images with ImageIO.
+ * Optionally, only a region of the image is decoded and source pixels are skipped with subsampling.
+ * This avoids converting and storing pixels that would be discarded by cropping or resizing.
+ *
+ * The image reader and the destination image are reused across calls,
+ * so an instance must only be used by one thread at a time.
+ */
+public class ImageDecoder {
+    private ImageReader reader;
+    // Destination of the last decoded image and its type.
+    private BufferedImage decodedImage;
+    private ImageTypeSpecifier decodedImageType;
+
+    /**
+     * The properties of an image that can be read without decoding its pixels.
+     */
+    public static class Header {
+        public final String formatName;
+        public final int width;
+        public final int height;
+        public final int numColorComponents;
+
+        public Header(String formatName, int width, int height, int numColorComponents) {
+            this.formatName = formatName;
+            this.width = width;
+            this.height = height;
+            this.numColorComponents = numColorComponents;
+        }
+
+        @Override
+        public String toString() {
+            return formatName + " " + width + "x" + height + "x" + numColorComponents;
+        }
+    }
+
+    /**
+     * Reads the header of an image without decoding its pixels.
+     *
+     * @param image Image file bytes
+     */
+    public static Header readHeader(byte[] image) throws IOException {
+        if (Qoi.isQoi(image)) {
+            return new Header(ImageFormat.QOI.getFormatName(), Qoi.getWidth(image), Qoi.getHeight(image), 3);
+        }
+        try (ImageInputStream inStream = new ByteArrayImageInputStream(image)) {
+            ImageReader reader = findReader(inStream);
+            try {
+                reader.setInput(inStream, true, true);
+                return new Header(reader.getFormatName(), reader.getWidth(0), reader.getHeight(0),
+                        reader.getImageTypes(0).next().getColorModel().getNumColorComponents());
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Decodes an image. The result may share the pixels of an image that is reused by the next call.
+     *
+     * @param inStream  Image file bytes
+     * @param header    The header fields of the result are copied from this frame.
+     * @param region    The region of the image to decode, or null to decode the entire image.
+     *                  The region is clipped to the image.
+     * @param minWidth  If greater than 0, columns are skipped as long as the decoded width is at least minWidth.
+     * @param minHeight If greater than 0, rows are skipped as long as the decoded height is at least minHeight.
+     */
+    public RawVideoFrame decode(ImageInputStream inStream, VideoFrame header, Rectangle region, int minWidth, int minHeight)
+            throws IOException {
+        if (reader == null || !reader.getOriginatingProvider().canDecodeInput(inStream)) {
+            ImageReader newReader = findReader(inStream);
+            if (reader != null) {
+                reader.dispose();
+            }
+            reader = newReader;
+        }
+        reader.setInput(inStream, true, true);
+        try {
+            Rectangle sourceRegion = new Rectangle(0, 0, reader.getWidth(0), reader.getHeight(0));
+            if (region != null) {
+                sourceRegion = sourceRegion.intersection(region);
+                if (sourceRegion.isEmpty()) {
+                    throw new IOException("Region " + region + " is outside of the image; header=" + header);
+                }
+            }
+            int subsamplingX = minWidth > 0 ? Math.max(1, sourceRegion.width / minWidth) : 1;
+            int subsamplingY = minHeight > 0 ? Math.max(1, sourceRegion.height / minHeight) : 1;
+            int width = (sourceRegion.width + subsamplingX - 1) / subsamplingX;
+            int height = (sourceRegion.height + subsamplingY - 1) / subsamplingY;
+            ImageTypeSpecifier imageType = reader.getImageTypes(0).next();
+            if (decodedImage == null || decodedImage.getWidth() != width || decodedImage.getHeight() != height
+                    || !imageType.equals(decodedImageType)) {
+                decodedImage = imageType.createBufferedImage(width, height);
+                decodedImageType = imageType;
+            }
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setDestination(decodedImage);
+            param.setSourceRegion(sourceRegion);
+            param.setSourceSubsampling(subsamplingX, subsamplingY, 0, 0);
+            return RawImages.fromBufferedImage(header, reader.read(0, param));
+        } finally {
+            reader.setInput(null);
+        }
+    }
+
+    private static ImageReader findReader(ImageInputStream inStream) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(inStream);
+        if (!readers.hasNext()) {
+            throw new IOException("Unsupported image format");
+        }
+        return readers.next();
+    }
+}
@@ -10,16 +10,12 @@
  */
 package io.pravega.example.videoprocessor;
 
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.MemoryCacheImageOutputStream;
+import io.pravega.example.video.ImageFormat;
+import io.pravega.example.video.VideoFrame;
+
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.Random;
 
 import static java.awt.image.BufferedImage.TYPE_3BYTE_BGR;
@@ -27,55 +23,70 @@ import static java.lang.Math.min;
 
 
 /**
- * Generate PNG images for testing.
+ * Generate images for testing. Images are PNG unless another format is selected.
  * Images will show the camera number and frame number.
+ * See FastImageGenerator for a much faster generator for load tests.
  */
 public class ImageGenerator {
-    private final int width;
-    private final int height;
+    protected final int width;
+    protected final int height;
+    private ImageCodec codec;
+    protected ImageFormat imageFormat = ImageFormat.PNG;
 
     public ImageGenerator(int width, int height) {
         this.width = width;
         this.height = height;
     }
 
+    public ImageGenerator withCodec(ImageCodec codec) {
+        this.codec = codec;
+        return this;
+    }
+
+    public ImageGenerator withImageFormat(ImageFormat imageFormat) {
+        this.imageFormat = imageFormat;
+        return this;
+    }
+
     /**
-     * Generate a PNG image for testing.
+     * Generate an image for testing.
      *
-     * @return Image file bytes
+     * @return Image file bytes in the selected format
      */
     public byte[] generate(int camera, int frameNumber) {
-        try {
-            BufferedImage outImage = new BufferedImage(width, height, TYPE_3BYTE_BGR);
+        BufferedImage outImage = new BufferedImage(width, height, TYPE_3BYTE_BGR);
+
+        // Image background will be random bytes to prevent compression.
+        byte[] imageBuffer = ((DataBufferByte) outImage.getRaster().getDataBuffer()).getData();
+        Random rnd = new Random();
+        rnd.nextBytes(imageBuffer);
+        Graphics2D graphics = outImage.createGraphics();
 
-            // Image background will be random bytes to prevent compression.
-            byte[] imageBuffer = ((DataBufferByte) outImage.getRaster().getDataBuffer()).getData();
-            Random rnd = new Random();
-            rnd.nextBytes(imageBuffer);
-            Graphics2D graphics = outImage.createGraphics();
+        // Write camera and frame number on image.
+        graphics.setFont(getFont(graphics));
+        int lineHeight = graphics.getFontMetrics().getHeight();
+        graphics.drawString("CAMERA", 5, 5 + lineHeight);
+        graphics.drawString(String.format("%04d", camera), 5, 5 + 2*lineHeight);
+        graphics.drawString("FRAME", 5, 5 + 3*lineHeight);
+        graphics.drawString(String.format("%05d", frameNumber), 5, 5 + 4*lineHeight);
 
-            // Write camera and frame number on image.
-            float fontSize = min(width, height) * 0.13f;
-            Font currentFont = graphics.getFont();
-            Font newFont = currentFont.deriveFont(fontSize);
-            graphics.setFont(newFont);
-            int lineHeight = graphics.getFontMetrics().getHeight();
-            graphics.drawString("CAMERA", 5, 5 + lineHeight);
-            graphics.drawString(String.format("%04d", camera), 5, 5 + 2*lineHeight);
-            graphics.drawString("FRAME", 5, 5 + 3*lineHeight);
-            graphics.drawString(String.format("%05d", frameNumber), 5, 5 + 4*lineHeight);
+        graphics.dispose();
 
-            // Write PNG to byte array.
-            ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
-            ImageWriteParam writeParam = writer.getDefaultWriteParam();
-//            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-//            writeParam.setCompressionQuality(1.0f);
-            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-            writer.setOutput(new MemoryCacheImageOutputStream(outStream));
-            writer.write(null, new IIOImage(outImage, null, null), writeParam);
-            return outStream.toByteArray();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        return getCodec().encode(RawImages.fromBufferedImage(new VideoFrame(), outImage), imageFormat.getFormatName());
+    }
+
+    protected ImageCodec getCodec() {
+        if (codec == null) {
+            codec = new ImageCodecOptions().createCodec();
         }
+        return codec;
+    }
+
+    /**
+     * @return The font used to write the camera and frame number.
+     */
+    protected Font getFont(Graphics2D graphics) {
+        float fontSize = min(width, height) * 0.13f;
+        return graphics.getFont().deriveFont(fontSize);
     }
 }
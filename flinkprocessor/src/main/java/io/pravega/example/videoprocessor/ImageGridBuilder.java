@@ -10,17 +10,28 @@
  */
 package io.pravega.example.videoprocessor;
 
-import javax.imageio.ImageIO;
+import io.pravega.example.video.PixelFormat;
+import io.pravega.example.video.RawVideoFrame;
+import io.pravega.example.video.VideoFrame;
+
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
 
 
 /**
  * Combines multiple images into a square grid of images.
- * Images must be the correct size.
+ * Raw images must be the correct size. Encoded images are decoded and resized directly into their position.
+ * Adding an image replaces only its own tile, so a builder can be reused to update the tiles that changed.
+ * Because each tile is a disjoint region of the output image, tiles can be added in parallel with an executor.
+ * Positions outside of the grid are ignored.
  * See example output in /images/grid-sample.png.
  */
 public class ImageGridBuilder {
@@ -30,6 +41,13 @@ public class ImageGridBuilder {
     private final int margin;
     private final int statusWidth;
     private final BufferedImage outImage;
+    private final byte[] outPixels;
+    // ImageResizer is not thread-safe so each thread that adds encoded images uses its own.
+    private final ThreadLocal<ImageResizer> resizer;
+    private ExecutorService executor;
+    private ImageCodecOptions codecOptions = new ImageCodecOptions();
+    // Created when the first output image is encoded, so that it uses the executor.
+    private ImageCodec codec;
 
     /**
      *
@@ -40,12 +58,50 @@ public class ImageGridBuilder {
     public ImageGridBuilder(int imageWidth, int imageHeight, int numImages) {
         this.imageWidth = imageWidth;
         this.imageHeight = imageHeight;
-        gridCount = (int) Math.ceil(Math.sqrt(numImages));
+        gridCount = gridCount(numImages);
         margin = 1;
         statusWidth = 0;
         int outputWidth = (imageWidth + margin) * gridCount - margin + statusWidth;
         int outputHeight = (imageHeight + margin) * gridCount - margin;
-        outImage = new BufferedImage(outputWidth, outputHeight, BufferedImage.TYPE_INT_RGB);
+        // This has the layout of PixelFormat.BGR24 so that raw images can be copied row by row.
+        outImage = new BufferedImage(outputWidth, outputHeight, BufferedImage.TYPE_3BYTE_BGR);
+        outPixels = ((DataBufferByte) outImage.getRaster().getDataBuffer()).getData();
+        resizer = ThreadLocal.withInitial(() -> new ImageResizer(imageWidth, imageHeight).withCodec(codecOptions.createCodec()));
+    }
+
+    /**
+     * @param executor If not null, addImages and addRawImages decode and copy tiles in parallel on this executor.
+     *                 The size of its thread pool bounds the parallelism.
+     */
+    public ImageGridBuilder withExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * @param codecOptions Selects the codec used to decode encoded images and to encode the output image.
+     *                     The output image may be compressed in parallel on the executor.
+     */
+    public ImageGridBuilder withCodec(ImageCodecOptions codecOptions) {
+        this.codecOptions = codecOptions;
+        this.codec = null;
+        return this;
+    }
+
+    private static int gridCount(int numImages) {
+        return (int) Math.ceil(Math.sqrt(numImages));
+    }
+
+    private boolean isInGrid(int position) {
+        return position >= 0 && position < gridCount * gridCount;
+    }
+
+    /**
+     * @return True if the grid for numImages has the same layout as this grid.
+     *         If so, this builder can be reused and its tiles are at the same positions.
+     */
+    public boolean hasLayoutFor(int numImages) {
+        return gridCount(numImages) == gridCount;
     }
 
     /**
@@ -54,14 +110,65 @@ public class ImageGridBuilder {
      * @param image    Image file bytes.
      */
     public void addImage(int position, byte[] image) {
-        try {
-            ByteArrayInputStream inStream = new ByteArrayInputStream(image);
-            BufferedImage inImage = ImageIO.read(inStream);
-            int x = (position % gridCount) * (imageWidth + margin);
-            int y = (position / gridCount) * (imageHeight + margin);
-            outImage.getRaster().setRect(x, y, inImage.getData());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        if (!isInGrid(position)) {
+            return;
+        }
+        VideoFrame frame = new VideoFrame();
+        frame.data = image;
+        addImage(position, resizer.get().decodeAndResize(frame));
+    }
+
+    /**
+     *
+     * @param position 0-based position.
+     * @param image    Decoded image of the correct size.
+     */
+    public void addImage(int position, RawVideoFrame image) {
+        if (image.width != imageWidth || image.height != imageHeight) {
+            throw new IllegalArgumentException("Image size " + image.width + "x" + image.height
+                    + " does not match " + imageWidth + "x" + imageHeight);
+        }
+        if (!isInGrid(position)) {
+            return;
+        }
+        int x = (position % gridCount) * (imageWidth + margin);
+        int y = (position / gridCount) * (imageHeight + margin);
+        // Pixels are written directly to the output raster so that tiles can be written by concurrent threads.
+        int outStride = outImage.getWidth() * 3;
+        if (image.pixelFormat == PixelFormat.BGR24) {
+            int rowLength = imageWidth * 3;
+            for (int row = 0; row < imageHeight; row++) {
+                System.arraycopy(image.pixels, row * rowLength, outPixels, (y + row) * outStride + x * 3, rowLength);
+            }
+        } else {
+            for (int row = 0; row < imageHeight; row++) {
+                int in = row * imageWidth;
+                int out = (y + row) * outStride + x * 3;
+                for (int col = 0; col < imageWidth; col++) {
+                    byte gray = image.pixels[in++];
+                    outPixels[out++] = gray;
+                    outPixels[out++] = gray;
+                    outPixels[out++] = gray;
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears a tile to black.
+     *
+     * @param position 0-based position.
+     */
+    public void clearImage(int position) {
+        if (!isInGrid(position)) {
+            return;
+        }
+        int x = (position % gridCount) * (imageWidth + margin);
+        int y = (position / gridCount) * (imageHeight + margin);
+        int outStride = outImage.getWidth() * 3;
+        for (int row = 0; row < imageHeight; row++) {
+            int offset = (y + row) * outStride + x * 3;
+            Arrays.fill(outPixels, offset, offset + imageWidth * 3, (byte) 0);
         }
     }
 
@@ -70,21 +177,61 @@ public class ImageGridBuilder {
      * @param images Map from position to image file bytes.
      */
     public void addImages(Map<Integer, byte[]> images) {
-        images.forEach(this::addImage);
+        addAll(images, this::addImage);
+    }
+
+    /**
+     *
+     * @param images Map from position to decoded image of the correct size.
+     */
+    public void addRawImages(Map<Integer, RawVideoFrame> images) {
+        addAll(images, this::addImage);
+    }
+
+    private <T> void addAll(Map<Integer, T> images, BiConsumer<Integer, T> addImage) {
+        if (executor == null || images.size() < 2) {
+            images.forEach(addImage);
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>(images.size());
+        images.forEach((position, image) -> futures.add(executor.submit(() -> addImage.accept(position, image))));
+        // Wait for all tiles, even after a failure, so that no task writes to the output image after this returns.
+        RuntimeException error = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (error == null) {
+                    error = new RuntimeException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(false));
+                throw new RuntimeException(e);
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * @param header The header fields of the output frame.
+     * @return A copy of the output image, which is not changed when tiles are added later.
+     */
+    public RawVideoFrame getOutputImage(VideoFrame header) {
+        return new RawVideoFrame(header, outImage.getWidth(), outImage.getHeight(), PixelFormat.BGR24, outPixels.clone());
     }
 
     /**
      *
-     * @param format "png" for PNG output.
+     * @param format "png" for PNG output, "jpeg" for JPEG output, or "qoi" for QOI output.
      * @return Image file bytes.
      */
     public byte[] getOutputImageBytes(String format) {
-        try {
-            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-            ImageIO.write(outImage, format, outStream);
-            return outStream.toByteArray();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        if (codec == null) {
+            codec = codecOptions.createCodec(executor);
         }
+        return codec.encode(RawImages.fromBufferedImage(new VideoFrame(), outImage), format);
     }
 }
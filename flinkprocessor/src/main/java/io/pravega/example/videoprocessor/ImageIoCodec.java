@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.Qoi;
+import io.pravega.example.video.RawVideoFrame;
+import io.pravega.example.video.VideoFrame;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * An ImageCodec that uses javax.imageio.
+ * Images are decoded by ImageDecoder, which supports source regions and subsampling.
+ * PNG images are encoded by PngEncoder. Other formats are encoded by the ImageIO writer for the format.
+ * ImageIO does not support QOI, so QOI images are decoded and encoded by Qoi. They are not subsampled.
+ */
+class ImageIoCodec implements ImageCodec {
+    private final ImageCodecOptions options;
+    private final ImageDecoder decoder = new ImageDecoder();
+    private final PngEncoder pngEncoder;
+    private final Map<String, ImageWriter> writers = new HashMap<>();
+    private final ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+
+    ImageIoCodec(ImageCodecOptions options, ExecutorService executor) {
+        this.options = options;
+        pngEncoder = new PngEncoder(executor)
+                .withCompressionLevel(options.getPngCompressionLevel())
+                .withFilter(options.getPngFilter());
+    }
+
+    @Override
+    public RawVideoFrame decode(byte[] image, VideoFrame header, Rectangle region, int minWidth, int minHeight) {
+        if (Qoi.isQoi(image)) {
+            return RawImages.crop(Qoi.decode(image, header), region);
+        }
+        try {
+            return decoder.decode(new ByteArrayImageInputStream(image), header, region, minWidth, minHeight);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public byte[] encode(RawVideoFrame frame, String formatName) {
+        if (formatName.equals("png")) {
+            return pngEncoder.encode(frame);
+        }
+        if (formatName.equals("qoi")) {
+            return Qoi.encode(frame);
+        }
+        ImageWriter writer = writers.computeIfAbsent(formatName, name -> {
+            Iterator<ImageWriter> iterator = ImageIO.getImageWritersByFormatName(name);
+            if (!iterator.hasNext()) {
+                throw new IllegalArgumentException("Unsupported image format " + name);
+            }
+            return iterator.next();
+        });
+        ImageWriteParam writeParam = writer.getDefaultWriteParam();
+        if (writeParam.canWriteCompressed() && (formatName.equals("jpeg") || formatName.equals("jpg"))) {
+            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            writeParam.setCompressionQuality(options.getJpegQuality() / 100.0f);
+        }
+        outBytes.reset();
+        try (ImageOutputStream imageOutStream = new MemoryCacheImageOutputStream(outBytes)) {
+            writer.setOutput(imageOutStream);
+            writer.write(null, new IIOImage(RawImages.toBufferedImage(frame), null, null), writeParam);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            writer.setOutput(null);
+        }
+        return outBytes.toByteArray();
+    }
+}
@@ -10,24 +10,75 @@
  */
 package io.pravega.example.videoprocessor;
 
-import javax.imageio.ImageIO;
+import io.pravega.example.video.PixelFormat;
+import io.pravega.example.video.RawVideoFrame;
+import io.pravega.example.video.VideoFrame;
+
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.util.Collections;
+import java.util.Map;
 
 
 /**
  * Resizes images to a fixed size.
+ * Use {@link #decodeAndResize} to pass the resized pixels to the next stage without encoding them.
+ * Except for SMOOTH, images are resized by RasterResizer directly on their pixels.
+ *
+ * Images are decoded and encoded by an ImageCodec, which is ImageIO by default.
+ * The codec, the decoded image, and intermediate buffers are reused across calls,
+ * so a steady stream of images of the same size allocates little more than the output.
+ * An instance must only be used by one thread at a time.
+ *
+ * Optionally, only a region of each camera is used, and source pixels are skipped when decoding
+ * as long as the decoded image is at least twice the output size.
  */
 public class ImageResizer {
     private final int outputWidth;
     private final int outputHeight;
+    private ResizeAlgorithm algorithm = ResizeAlgorithm.AREA_AVERAGE;
+    private boolean decodeSubsampling = false;
+    private Map<Integer, Rectangle> cameraRegions = Collections.emptyMap();
+
+    private ImageCodec codec = new ImageCodecOptions().createCodec();
+    private final RasterResizer rasterResizer = new RasterResizer();
 
     public ImageResizer(int outputWidth, int outputHeight) {
         this.outputWidth = outputWidth;
         this.outputHeight = outputHeight;
     }
 
+    public ImageResizer withAlgorithm(ResizeAlgorithm algorithm) {
+        this.algorithm = algorithm;
+        return this;
+    }
+
+    /**
+     * @param codec The codec used to decode and encode images. It is used only by this resizer.
+     */
+    public ImageResizer withCodec(ImageCodec codec) {
+        this.codec = codec;
+        return this;
+    }
+
+    /**
+     * @param decodeSubsampling If true, skip source pixels when decoding as long as the decoded image
+     *                          is at least twice the output size.
+     */
+    public ImageResizer withDecodeSubsampling(boolean decodeSubsampling) {
+        this.decodeSubsampling = decodeSubsampling;
+        return this;
+    }
+
+    /**
+     * @param cameraRegions Map from camera to the region of its images to use. Other cameras use the entire image.
+     */
+    public ImageResizer withCameraRegions(Map<Integer, Rectangle> cameraRegions) {
+        this.cameraRegions = cameraRegions;
+        return this;
+    }
+
     /**
      * Resizes images to a fixed size.
      *
@@ -35,23 +86,60 @@ public class ImageResizer {
      * @return Image file bytes
      */
     public byte[] resize(byte[] image) {
-        ByteArrayInputStream inStream = new ByteArrayInputStream(image);
-        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-        resize(inStream, outStream);
-        return outStream.toByteArray();
+        return codec.encode(resize(decode(image, new VideoFrame())), "png");
     }
 
     public void resize(InputStream inStream, OutputStream outStream) {
         try {
-            BufferedImage inImage = ImageIO.read(inStream);
-            Image scaledImage = inImage.getScaledInstance(outputWidth, outputHeight, Image.SCALE_SMOOTH);
-            BufferedImage outImage = new BufferedImage(outputWidth, outputHeight, inImage.getType());
+            ByteArrayOutputStream inBytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64 * 1024];
+            int length;
+            while ((length = inStream.read(buffer)) >= 0) {
+                inBytes.write(buffer, 0, length);
+            }
+            outStream.write(resize(inBytes.toByteArray()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Decodes and resizes an image. The result is not encoded.
+     *
+     * @param frame Frame with image file bytes
+     * @return Frame with the same header fields and BGR24 or GRAY8 pixels
+     */
+    public RawVideoFrame decodeAndResize(VideoFrame frame) {
+        RawVideoFrame decodedFrame = decode(frame.data, frame);
+        RawVideoFrame resizedFrame = resize(decodedFrame);
+        if (resizedFrame.pixels == decodedFrame.pixels) {
+            // The decoded pixels may be overwritten by the next image.
+            resizedFrame.pixels = resizedFrame.pixels.clone();
+        }
+        return resizedFrame;
+    }
+
+    private RawVideoFrame decode(byte[] image, VideoFrame header) {
+        int minWidth = decodeSubsampling ? 2 * outputWidth : 0;
+        int minHeight = decodeSubsampling ? 2 * outputHeight : 0;
+        return codec.decode(image, header, cameraRegions.get(header.camera), minWidth, minHeight);
+    }
+
+    /**
+     * @return Frame with the same header fields and pixel format. This is a new frame even if the size is unchanged.
+     */
+    public RawVideoFrame resize(RawVideoFrame frame) {
+        if (algorithm == ResizeAlgorithm.SMOOTH) {
+            Image scaledImage = RawImages.toBufferedImage(frame).getScaledInstance(outputWidth, outputHeight, Image.SCALE_SMOOTH);
+            int imageType = frame.pixelFormat == PixelFormat.GRAY8 ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR;
+            BufferedImage outImage = new BufferedImage(outputWidth, outputHeight, imageType);
             Graphics2D g2d = outImage.createGraphics();
             g2d.drawImage(scaledImage, 0, 0, null);
             g2d.dispose();
-            ImageIO.write(outImage, "png", outStream);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            return RawImages.fromBufferedImage(frame, outImage);
         }
+        byte[] pixels = rasterResizer.resize(frame.pixels, frame.width, frame.height, frame.pixelFormat.getBytesPerPixel(),
+                outputWidth, outputHeight, algorithm);
+        return new RawVideoFrame(frame, outputWidth, outputHeight, frame.pixelFormat, pixels);
     }
 }
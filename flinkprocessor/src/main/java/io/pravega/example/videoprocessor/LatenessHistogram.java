@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import org.apache.flink.metrics.Histogram;
+import org.apache.flink.metrics.HistogramStatistics;
+
+/**
+ * A histogram of non-negative values, such as the lateness of events in milliseconds, with bounded memory.
+ * Values up to 8 have their own bucket and each larger power of two is divided into 8 buckets,
+ * so a quantile is at most 12.5% above the true value.
+ * To follow changes in the distribution, all counts are halved every decayInterval updates.
+ * Methods are synchronized because metrics are read by another thread.
+ */
+public class LatenessHistogram implements Histogram {
+    private static final int SUB_BUCKETS = 8;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int NUM_BUCKETS = SUB_BUCKETS + (31 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long decayInterval;
+    private final long[] counts = new long[NUM_BUCKETS];
+    // The sum of counts.
+    private long total;
+    private long updatesSinceDecay;
+    // The number of updates, which is not decayed.
+    private long count;
+
+    public LatenessHistogram() {
+        this(10000);
+    }
+
+    /**
+     * @param decayInterval All counts are halved after this many updates.
+     */
+    public LatenessHistogram(long decayInterval) {
+        this.decayInterval = decayInterval;
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+        long clamped = Math.min(value, Integer.MAX_VALUE);
+        int exponent = 63 - Long.numberOfLeadingZeros(clamped);
+        int subBucket = (int) (clamped >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return The largest value in a bucket.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    @Override
+    public synchronized void update(long value) {
+        counts[bucketOf(value)]++;
+        total++;
+        count++;
+        if (++updatesSinceDecay >= decayInterval) {
+            updatesSinceDecay = 0;
+            total = 0;
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                counts[i] /= 2;
+                total += counts[i];
+            }
+        }
+    }
+
+    @Override
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @param quantile From 0 to 1.
+     * @return The upper bound of the bucket of the quantile, or -1 if there are no values.
+     */
+    public synchronized long getQuantile(double quantile) {
+        return quantileOf(counts, total, quantile);
+    }
+
+    private static long quantileOf(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(counts.length - 1);
+    }
+
+    @Override
+    public synchronized HistogramStatistics getStatistics() {
+        return new Statistics(counts.clone(), total);
+    }
+
+    /**
+     * A snapshot of the histogram. Each value is the upper bound of its bucket.
+     */
+    private static class Statistics extends HistogramStatistics {
+        private final long[] counts;
+        private final long total;
+
+        Statistics(long[] counts, long total) {
+            this.counts = counts;
+            this.total = total;
+        }
+
+        @Override
+        public double getQuantile(double quantile) {
+            return Math.max(0, quantileOf(counts, total, quantile));
+        }
+
+        @Override
+        public long[] getValues() {
+            long[] values = new long[(int) total];
+            int index = 0;
+            for (int i = 0; i < counts.length; i++) {
+                for (long j = 0; j < counts[i]; j++) {
+                    values[index++] = upperBoundOf(i);
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public int size() {
+            return (int) total;
+        }
+
+        @Override
+        public double getMean() {
+            if (total == 0) {
+                return 0;
+            }
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                sum += (double) counts[i] * upperBoundOf(i);
+            }
+            return sum / total;
+        }
+
+        @Override
+        public double getStdDev() {
+            if (total < 2) {
+                return 0;
+            }
+            double mean = getMean();
+            double sumOfSquares = 0;
+            for (int i = 0; i < counts.length; i++) {
+                double difference = upperBoundOf(i) - mean;
+                sumOfSquares += counts[i] * difference * difference;
+            }
+            return Math.sqrt(sumOfSquares / (total - 1));
+        }
+
+        @Override
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    return upperBoundOf(i);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public long getMin() {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    return upperBoundOf(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -14,24 +14,34 @@ import io.pravega.client.stream.StreamCut;
 import io.pravega.connectors.flink.FlinkPravegaReader;
 import io.pravega.connectors.flink.FlinkPravegaWriter;
 import io.pravega.connectors.flink.PravegaWriterMode;
-import io.pravega.example.flinkprocessor.AbstractJob;
 import io.pravega.example.video.ChunkedVideoFrame;
+import io.pravega.example.video.RawVideoFrame;
 import io.pravega.example.video.VideoFrame;
 import org.apache.flink.api.common.functions.AggregateFunction;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.configuration.Configuration;
 import org.apache.flink.streaming.api.datastream.DataStream;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
-import org.apache.flink.streaming.api.functions.timestamps.BoundedOutOfOrdernessTimestampExtractor;
+import org.apache.flink.streaming.api.functions.windowing.ProcessAllWindowFunction;
 import org.apache.flink.streaming.api.windowing.assigners.TumblingEventTimeWindows;
 import org.apache.flink.streaming.api.windowing.time.Time;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.util.Collector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
-
-import static java.lang.Math.max;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * A Flink job that reads images from multiple cameras stored in a Pravega stream, combines them
@@ -39,7 +49,7 @@ import static java.lang.Math.max;
  * images to another Pravega stream.
  * Images are chunked into 512 KB chunks to allow for very large images.
  */
-public class MultiVideoGridJob extends AbstractJob {
+public class MultiVideoGridJob extends AbstractVideoJob {
     private static Logger log = LoggerFactory.getLogger(MultiVideoGridJob.class);
 
     /**
@@ -58,11 +68,6 @@ public class MultiVideoGridJob extends AbstractJob {
         super(config);
     }
 
-    @Override
-    public VideoAppConfiguration getConfig() {
-        return (VideoAppConfiguration) super.getConfig();
-    }
-
     public void run() {
         try {
             final String jobName = MultiVideoGridJob.class.getName();
@@ -87,72 +92,105 @@ public class MultiVideoGridJob extends AbstractJob {
                     .uid("input-source")
                     .name("input-source");
 
-            // Assign timestamps and watermarks based on timestamp in each chunk.
-            DataStream<ChunkedVideoFrame> inChunkedVideoFramesWithTimestamps = inChunkedVideoFrames
-                    .assignTimestampsAndWatermarks(
-                        new BoundedOutOfOrdernessTimestampExtractor<ChunkedVideoFrame>(
-                                Time.milliseconds(getConfig().getMaxOutOfOrdernessMs())) {
-                            @Override
-                            public long extractTimestamp(ChunkedVideoFrame element) {
-                                return element.timestamp.getTime();
-                            }
-                        })
-                    .uid("assignTimestampsAndWatermarks")
-                    .name("assignTimestampsAndWatermarks");
-//            inChunkedVideoFramesWithTimestamps.printToErr().uid("inChunkedVideoFramesWithTimestamps-print").name("inChunkedVideoFramesWithTimestamps-print");
-
-            // Reassemble whole video frames from chunks.
-            boolean failOnError = false;
-            DataStream<VideoFrame> inVideoFrames = inChunkedVideoFramesWithTimestamps
-                    .keyBy("camera")
-                    .window(new ChunkedVideoFrameWindowAssigner())
-                    .process(new ChunkedVideoFrameReassembler().withFailOnError(failOnError))
-                    .uid("ChunkedVideoFrameReassembler")
-                    .name("ChunkedVideoFrameReassembler");
+            // Assign timestamps and reassemble whole video frames from chunks.
+            DataStream<VideoFrame> inVideoFrames = reassembleVideoFrames(inChunkedVideoFrames);
             inVideoFrames.printToErr().uid("inVideoFrames-print").name("inVideoFrames-print");
 
-            // Resize all input images. This will be performed in parallel.
+            // Decode and resize all input images. This will be performed in parallel.
+            // The resized images are not encoded because they are only used to build the grid.
             int imageWidth = getConfig().getImageWidth();
             int imageHeight = imageWidth;
-            DataStream<VideoFrame> resizedVideoFrames = inVideoFrames
-                    .map(frame -> {
-                        ImageResizer resizer = new ImageResizer(imageWidth, imageHeight);
-                        frame.data = resizer.resize(frame.data);
-                        frame.hash = null;
-                        return frame;
-                    })
+            DataStream<RawVideoFrame> resizedVideoFrames = inVideoFrames
+                    .map(new VideoFrameResizer(imageWidth, imageHeight, getConfig().getResizeAlgorithm())
+                            .withDecodeSubsampling(getConfig().isDecodeSubsampling())
+                            .withCameraRegions(getConfig().getCameraRegions())
+                            .withCodec(getConfig().getImageCodecOptions()))
                     .uid("ImageResizer")
                     .name("ImageResizer");
 //            resizedVideoFrames.printToErr().uid("resizedVideoFrames-print").name("resizedVideoFrames-print");;
 
             // Aggregate resized images.
             // For each time window, we take the last image from each camera.
-            // Then these images are combined in a square grid.
-            // To maintain ordering in the output images, we use parallelism of 1 for all subsequent operations.
+            // Then these images are drawn over the tiles of a square grid that persists across windows.
+            // The grid is drawn by a single task, which assigns the frame number of each output image.
             long periodMs = (long) (1000.0 / getConfig().getFramesPerSec());
+            if (getConfig().getMaxTileAgeMs() > 0 && getConfig().getMaxTileAgeMs() < periodMs) {
+                // A tile that was updated in the current window could be older than this at the end of the window.
+                throw new IllegalArgumentException("maxTileAgeMs (" + getConfig().getMaxTileAgeMs()
+                        + ") must be 0 or at least the window period (" + periodMs + ")");
+            }
             int camera = 1000;
             int ssrc = new Random().nextInt();
-            DataStream<VideoFrame> outVideoFrames = resizedVideoFrames
-                    .windowAll(TumblingEventTimeWindows.of(Time.milliseconds(periodMs)))
-                    .aggregate(new ImageAggregator(imageWidth, imageHeight, camera, ssrc))
-                    .setParallelism(1)
-                    .uid("ImageAggregator")
-                    .name("ImageAggregator");
+            ImageGridRenderer gridRenderer = new ImageGridRenderer(imageWidth, imageHeight, camera, ssrc)
+                    .withThreads(getConfig().getGridThreads())
+                    .withMaxTileAgeMs(getConfig().getMaxTileAgeMs())
+                    .withCameras(getConfig().getGridCameras());
+            final int gridPartitions = getConfig().getGridPartitions();
+            DataStream<RawVideoFrame> gridImages;
+            if (gridPartitions > 1) {
+                // First take the last image from each camera in parallel, in partial grids partitioned by camera.
+                // Then merge the partial grids, so the single grid task receives at most one image per camera and window.
+                DataStream<ImageAggregatorAccum> partialGrids = resizedVideoFrames
+                        .keyBy(frame -> Math.floorMod(frame.camera, gridPartitions))
+                        .window(TumblingEventTimeWindows.of(Time.milliseconds(periodMs)))
+                        .aggregate(new ImageAggregator(), ImageAggregatorAccum.typeInfo(), ImageAggregatorAccum.typeInfo())
+                        .uid("PartialImageAggregator")
+                        .name("PartialImageAggregator");
+                gridImages = partialGrids
+                        .windowAll(TumblingEventTimeWindows.of(Time.milliseconds(periodMs)))
+                        .aggregate(new PartialGridMerger(), gridRenderer)
+                        .setParallelism(1)
+                        .uid("ImageAggregator")
+                        .name("ImageAggregator");
+            } else {
+                gridImages = resizedVideoFrames
+                        .windowAll(TumblingEventTimeWindows.of(Time.milliseconds(periodMs)))
+                        .aggregate(new ImageAggregator(), gridRenderer)
+                        .setParallelism(1)
+                        .uid("ImageAggregator")
+                        .name("ImageAggregator");
+            }
+
+            // Encode the grid images in parallel.
+            final int encoderParallelism = getConfig().getGridEncoderParallelism();
+            DataStream<VideoFrame> encodedVideoFrames = gridImages
+                    .map(new VideoFrameEncoder(getConfig().getHashAlgorithm())
+                            .withThreads(getConfig().getGridThreads())
+                            .withCodec(getConfig().getImageCodecOptions())
+                            .withImageFormat(getConfig().getOutputImageFormat()))
+                    .setParallelism(encoderParallelism)
+                    .uid("GridEncoder")
+                    .name("GridEncoder");
+
+            // Restore the order of the encoded images. To maintain ordering, we use parallelism of 1 for all subsequent operations.
+            DataStream<VideoFrame> outVideoFrames;
+            if (encoderParallelism > 1) {
+                outVideoFrames = encodedVideoFrames
+                        .keyBy(frame -> 0)
+                        .process(new VideoFrameReorderer())
+                        .setParallelism(1)
+                        .uid("GridReorderer")
+                        .name("GridReorderer");
+            } else {
+                outVideoFrames = encodedVideoFrames;
+            }
             outVideoFrames.printToErr().setParallelism(1).uid("outVideoFrames-print").name("outVideoFrames-print");
 
             // Split output video frames into chunks of 1 MB or less.
             DataStream<ChunkedVideoFrame> outChunkedVideoFrames = outVideoFrames
-                    .flatMap(new VideoFrameChunker())
+                    .flatMap(new VideoFrameChunker()
+                            .withChunkHash(getConfig().isUseChunkHash())
+                            .withParityChunks(getConfig().getParityChunks()))
                     .setParallelism(1)
                     .uid("VideoFrameChunker")
                     .name("VideoFrameChunker");
 //            outChunkedVideoFrames.printToErr().setParallelism(1).uid("outChunkedVideoFrames-print").name("outChunkedVideoFrames-print");
 
-            // Write chunks to Pravega encoded as JSON.
+            // Write chunks to Pravega encoded as JSON or binary.
             FlinkPravegaWriter<ChunkedVideoFrame> flinkPravegaWriter = FlinkPravegaWriter.<ChunkedVideoFrame>builder()
                     .withPravegaConfig(getConfig().getPravegaConfig())
                     .forStream(getConfig().getOutputStreamConfig().getStream())
-                    .withSerializationSchema(new ChunkedVideoFrameSerializationSchema())
+                    .withSerializationSchema(new ChunkedVideoFrameSerializationSchema(getConfig().isUseBinaryEncoding()))
                     .withEventRouter(frame -> String.format("%d", frame.camera))
                     .withWriterMode(PravegaWriterMode.ATLEAST_ONCE)
                     .build();
@@ -170,66 +208,281 @@ public class MultiVideoGridJob extends AbstractJob {
     }
 
     public static class ImageAggregatorAccum {
-        // Map from camera to last image data.
-        public Map<Integer, byte[]> images = new HashMap<>();
+        // Map from camera to last resized image.
+        public Map<Integer, RawVideoFrame> images = new HashMap<>();
         // Maximum timestamp from cameras.
         public Timestamp timestamp = new Timestamp(0);
+
+        /**
+         * @return TypeInformation that serializes images with RawVideoFrameTypeInfo instead of Kryo.
+         *         This is used for partial grids, which are sent between tasks.
+         */
+        public static TypeInformation<ImageAggregatorAccum> typeInfo() {
+            Map<String, TypeInformation<?>> fields = new HashMap<>();
+            fields.put("images", Types.MAP(Types.INT, new RawVideoFrameTypeInfo()));
+            fields.put("timestamp", Types.SQL_TIMESTAMP);
+            return Types.POJO(ImageAggregatorAccum.class, fields);
+        }
+
+        /**
+         * Adds image unless this accumulator has a later image from the same camera.
+         * Images are ordered by timestamp and then by frame number.
+         */
+        void addLatest(RawVideoFrame image) {
+            RawVideoFrame current = images.get(image.camera);
+            if (current == null || current.timestamp.before(image.timestamp)
+                    || (current.timestamp.equals(image.timestamp) && current.frameNumber <= image.frameNumber)) {
+                images.put(image.camera, image);
+            }
+            if (image.timestamp.after(timestamp)) {
+                timestamp = new Timestamp(image.timestamp.getTime());
+            }
+        }
     }
 
-    public static class ImageAggregator implements AggregateFunction<VideoFrame, ImageAggregatorAccum, VideoFrame> {
+    /**
+     * Collects the last image from each camera in a window.
+     */
+    public static class ImageAggregator implements AggregateFunction<RawVideoFrame, ImageAggregatorAccum, ImageAggregatorAccum> {
         private static Logger log = LoggerFactory.getLogger(ImageAggregator.class);
 
+        @Override
+        public ImageAggregatorAccum createAccumulator() {
+            return new ImageAggregatorAccum();
+        }
+
+        @Override
+        public ImageAggregatorAccum getResult(ImageAggregatorAccum accum) {
+            return accum;
+        }
+
+        @Override
+        public ImageAggregatorAccum add(RawVideoFrame value, ImageAggregatorAccum accum) {
+            log.trace("add: value={}", value);
+            accum.addLatest(value);
+            return accum;
+        }
+
+        /**
+         * Keeps the last image from each camera in either accumulator. The result reuses a.
+         */
+        @Override
+        public ImageAggregatorAccum merge(ImageAggregatorAccum a, ImageAggregatorAccum b) {
+            for (RawVideoFrame image : b.images.values()) {
+                a.addLatest(image);
+            }
+            if (b.timestamp.after(a.timestamp)) {
+                a.timestamp = b.timestamp;
+            }
+            return a;
+        }
+    }
+
+    /**
+     * Merges partial grids from PartialImageAggregator into a single grid with the last image from each camera.
+     */
+    public static class PartialGridMerger implements AggregateFunction<ImageAggregatorAccum, ImageAggregatorAccum, ImageAggregatorAccum> {
+        private final ImageAggregator aggregator = new ImageAggregator();
+
+        @Override
+        public ImageAggregatorAccum createAccumulator() {
+            return aggregator.createAccumulator();
+        }
+
+        @Override
+        public ImageAggregatorAccum add(ImageAggregatorAccum value, ImageAggregatorAccum accum) {
+            return aggregator.merge(accum, value);
+        }
+
+        @Override
+        public ImageAggregatorAccum getResult(ImageAggregatorAccum accum) {
+            return accum;
+        }
+
+        @Override
+        public ImageAggregatorAccum merge(ImageAggregatorAccum a, ImageAggregatorAccum b) {
+            return aggregator.merge(a, b);
+        }
+    }
+
+    /**
+     * Draws the images collected in each window over a grid that persists across windows.
+     * The output images are not encoded, so that they can be encoded in parallel by VideoFrameEncoder.
+     * The last image from each camera is kept in global window state, so a camera that did not deliver
+     * a new frame in a window keeps its tile. Only the tiles of cameras with a new frame are repainted,
+     * unless a new camera changes the layout of the grid, in which case all tiles are repainted.
+     * If a staleness limit is set, the tile of a camera without a frame for that long is cleared.
+     * If a camera set is set, the layout is sized for that set and does not change as cameras come and go,
+     * and images from other cameras are ignored.
+     * Otherwise, the layout is sized for the cameras with a tile and each camera is drawn at the position of its number.
+     * Tiles can be copied on a pool of threads because this operator must have a parallelism of 1.
+     */
+    public static class ImageGridRenderer extends ProcessAllWindowFunction<ImageAggregatorAccum, RawVideoFrame, TimeWindow> {
+        private static Logger log = LoggerFactory.getLogger(ImageGridRenderer.class);
+
+        private static final MapStateDescriptor<Integer, RawVideoFrame> TILES_DESCRIPTOR = new MapStateDescriptor<>(
+                "tiles", IntSerializer.INSTANCE, new RawVideoFrameTypeInfo.Serializer());
+
         private final int imageWidth;
         private final int imageHeight;
         private final int camera;
         private final int ssrc;
+        private int numThreads = 1;
+        private long maxTileAgeMs = 0;
+        // Map from camera to position. If empty, the position is the camera.
+        private Map<Integer, Integer> cameraPositions = new HashMap<>();
         // frameNumber is part of the state. There is only a single partition so this can be an ordinary instance variable.
         // TODO: Store frameNumber in Flink state to maintain value across restarts.
         private int frameNumber;
+        // The grid is rebuilt from the tiles in state after a restart.
+        private transient ImageGridBuilder builder;
+        private transient int numTiles;
+        private transient ExecutorService executor;
 
-        public ImageAggregator(int imageWidth, int imageHeight, int camera, int ssrc) {
+        public ImageGridRenderer(int imageWidth, int imageHeight, int camera, int ssrc) {
             this.imageWidth = imageWidth;
             this.imageHeight = imageHeight;
             this.camera = camera;
             this.ssrc = ssrc;
         }
 
-        @Override
-        public ImageAggregatorAccum createAccumulator() {
-            return new ImageAggregatorAccum();
+        /**
+         * @param numThreads The number of threads used to copy tiles into the grid. If 1, tiles are copied by the task thread.
+         */
+        public ImageGridRenderer withThreads(int numThreads) {
+            this.numThreads = numThreads;
+            return this;
+        }
+
+        /**
+         * @param maxTileAgeMs The tile of a camera is cleared when its last image is older than this
+         *                     at the end of a window. If 0, tiles are kept until the camera sends a new image.
+         *                     Otherwise, this should be at least the window period.
+         */
+        public ImageGridRenderer withMaxTileAgeMs(long maxTileAgeMs) {
+            this.maxTileAgeMs = maxTileAgeMs;
+            return this;
+        }
+
+        /**
+         * @param cameras The cameras in the grid, in order of position. If empty, all cameras are in the grid.
+         */
+        public ImageGridRenderer withCameras(List<Integer> cameras) {
+            cameraPositions = new HashMap<>();
+            for (int position = 0; position < cameras.size(); position++) {
+                cameraPositions.put(cameras.get(position), position);
+            }
+            return this;
+        }
+
+        private int positionOf(int camera) {
+            return cameraPositions.isEmpty() ? camera : cameraPositions.get(camera);
         }
 
         @Override
-        public VideoFrame getResult(ImageAggregatorAccum accum) {
-            VideoFrame videoFrame = new VideoFrame();
-            videoFrame.camera = camera;
-            videoFrame.ssrc = ssrc;
-            videoFrame.timestamp = accum.timestamp;
-            videoFrame.frameNumber = frameNumber;
-            ImageGridBuilder builder = new ImageGridBuilder(imageWidth, imageHeight, accum.images.size());
-            builder.addImages(accum.images);
-            videoFrame.data = builder.getOutputImageBytes("png");
-            videoFrame.hash = videoFrame.calculateHash();
-            videoFrame.tags = new HashMap<String,String>();
-            videoFrame.tags.put("numCameras", Integer.toString(accum.images.size()));
-            frameNumber++;
-            log.trace("getResult: videoFrame={}", videoFrame);
-            return videoFrame;
+        public void open(Configuration parameters) {
+            if (numThreads > 1) {
+                executor = Executors.newFixedThreadPool(numThreads);
+            }
         }
 
         @Override
-        public ImageAggregatorAccum add(VideoFrame value, ImageAggregatorAccum accum) {
-            log.trace("add: value={}", value);
-            accum.images.put(value.camera, value.data);
-            accum.timestamp = new Timestamp(max(accum.timestamp.getTime(), value.timestamp.getTime()));
-            return accum;
+        public void close() {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
         }
 
         @Override
-        public ImageAggregatorAccum merge(ImageAggregatorAccum a, ImageAggregatorAccum b) {
-            // TODO: Accumulator can be made more efficient when multiple frames from the same camera can be merged. For now, don't merge.
-            return null;
+        public void process(Context context, Iterable<ImageAggregatorAccum> elements, Collector<RawVideoFrame> out) throws Exception {
+            out.collect(render(elements.iterator().next(), context.window().maxTimestamp(),
+                    context.globalState().getMapState(TILES_DESCRIPTOR)));
         }
 
+        /**
+         * Updates the tiles in state with the images of a window and draws the grid.
+         *
+         * @param windowMaxTimestamp The maximum timestamp of the window, used to find stale tiles.
+         */
+        RawVideoFrame render(ImageAggregatorAccum accum, long windowMaxTimestamp, MapState<Integer, RawVideoFrame> tiles) throws Exception {
+            boolean tilesChanged = false;
+            if (builder == null && !cameraPositions.isEmpty()) {
+                // Restored state may have tiles of cameras that are not in the grid,
+                // for example if the job was previously run with different cameras.
+                List<Integer> otherCameras = new ArrayList<>();
+                for (Integer tileCamera : tiles.keys()) {
+                    if (!cameraPositions.containsKey(tileCamera)) {
+                        otherCameras.add(tileCamera);
+                    }
+                }
+                for (Integer otherCamera : otherCameras) {
+                    log.info("render: removing tile of camera {} that is not in the grid", otherCamera);
+                    tiles.remove(otherCamera);
+                }
+            }
+            Map<Integer, RawVideoFrame> changedImages = new HashMap<>();
+            for (RawVideoFrame image : accum.images.values()) {
+                if (!cameraPositions.isEmpty() && !cameraPositions.containsKey(image.camera)) {
+                    log.debug("render: ignoring image from camera {} that is not in the grid", image.camera);
+                    continue;
+                }
+                if (!tiles.contains(image.camera)) {
+                    tilesChanged = true;
+                }
+                tiles.put(image.camera, image);
+                changedImages.put(positionOf(image.camera), image);
+            }
+            List<Integer> staleCameras = new ArrayList<>();
+            if (maxTileAgeMs > 0) {
+                long minTimestamp = windowMaxTimestamp - maxTileAgeMs;
+                for (Map.Entry<Integer, RawVideoFrame> entry : tiles.entries()) {
+                    if (entry.getValue().timestamp.getTime() < minTimestamp) {
+                        staleCameras.add(entry.getKey());
+                    }
+                }
+                for (Integer staleCamera : staleCameras) {
+                    log.debug("render: clearing stale tile of camera {}", staleCamera);
+                    tiles.remove(staleCamera);
+                    changedImages.remove(positionOf(staleCamera));
+                    tilesChanged = true;
+                }
+            }
+            if (builder == null || tilesChanged) {
+                numTiles = 0;
+                for (Integer ignored : tiles.keys()) {
+                    numTiles++;
+                }
+            }
+            int layoutSize = cameraPositions.isEmpty() ? numTiles : cameraPositions.size();
+            if (builder == null || !builder.hasLayoutFor(layoutSize)) {
+                log.info("render: drawing grid for {} cameras", layoutSize);
+                builder = new ImageGridBuilder(imageWidth, imageHeight, layoutSize)
+                        .withExecutor(executor);
+                Map<Integer, RawVideoFrame> allImages = new HashMap<>();
+                for (Map.Entry<Integer, RawVideoFrame> entry : tiles.entries()) {
+                    allImages.put(positionOf(entry.getKey()), entry.getValue());
+                }
+                builder.addRawImages(allImages);
+            } else {
+                for (Integer staleCamera : staleCameras) {
+                    builder.clearImage(positionOf(staleCamera));
+                }
+                builder.addRawImages(changedImages);
+            }
+
+            VideoFrame header = new VideoFrame();
+            header.camera = camera;
+            header.ssrc = ssrc;
+            header.timestamp = accum.timestamp;
+            header.frameNumber = frameNumber;
+            header.tags = new HashMap<String,String>();
+            header.tags.put("numCameras", Integer.toString(numTiles));
+            header.tags.put("numChangedCameras", Integer.toString(changedImages.size()));
+            frameNumber++;
+            RawVideoFrame gridImage = builder.getOutputImage(header);
+            log.trace("render: gridImage={}", gridImage);
+            return gridImage;
+        }
     }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.PixelFormat;
+import io.pravega.example.video.Qoi;
+import io.pravega.example.video.RawVideoFrame;
+import io.pravega.example.video.VideoFrame;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.IntPointer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgcodecs;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.awt.*;
+import java.io.IOException;
+
+/**
+ * An ImageCodec that uses OpenCV imdecode and imencode on the CPU.
+ *
+ * If source pixels may be skipped, images are decoded with IMREAD_REDUCED_COLOR_2, 4, or 8.
+ * For JPEG this scales the DCT and avoids most of the decoding work. For other formats OpenCV decodes
+ * the entire image and then reduces it. The reduction is the same for width and height.
+ * OpenCV does not support QOI, so QOI images are decoded and encoded by Qoi.
+ */
+class OpenCvCodec implements ImageCodec {
+    private final ImageCodecOptions options;
+
+    OpenCvCodec(ImageCodecOptions options) {
+        this.options = options;
+    }
+
+    @Override
+    public RawVideoFrame decode(byte[] image, VideoFrame header, Rectangle region, int minWidth, int minHeight) {
+        if (Qoi.isQoi(image)) {
+            return RawImages.crop(Qoi.decode(image, header), region);
+        }
+        int reduction = 1;
+        Rectangle sourceRegion = region;
+        if (region != null || minWidth > 0 || minHeight > 0) {
+            ImageDecoder.Header imageHeader;
+            try {
+                imageHeader = ImageDecoder.readHeader(image);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            sourceRegion = new Rectangle(0, 0, imageHeader.width, imageHeader.height);
+            if (region != null) {
+                sourceRegion = sourceRegion.intersection(region);
+                if (sourceRegion.isEmpty()) {
+                    throw new IllegalArgumentException("Region " + region + " is outside of the image; header=" + header);
+                }
+            }
+            if (minWidth > 0 || minHeight > 0) {
+                int maxReduction = Math.min(
+                        minWidth > 0 ? sourceRegion.width / minWidth : Integer.MAX_VALUE,
+                        minHeight > 0 ? sourceRegion.height / minHeight : Integer.MAX_VALUE);
+                while (reduction < 8 && reduction * 2 <= maxReduction) {
+                    reduction *= 2;
+                }
+            }
+        }
+        int flags = reduction == 8 ? opencv_imgcodecs.IMREAD_REDUCED_COLOR_8
+                : reduction == 4 ? opencv_imgcodecs.IMREAD_REDUCED_COLOR_4
+                : reduction == 2 ? opencv_imgcodecs.IMREAD_REDUCED_COLOR_2
+                : opencv_imgcodecs.IMREAD_ANYCOLOR;
+        try (BytePointer data = new BytePointer(image);
+             Mat encoded = new Mat(data);
+             Mat decoded = opencv_imgcodecs.imdecode(encoded, flags)) {
+            if (decoded.empty()) {
+                throw new IllegalArgumentException("Unable to decode image; header=" + header);
+            }
+            if (decoded.depth() != opencv_core.CV_8U || (decoded.channels() != 1 && decoded.channels() != 3)
+                    || !decoded.isContinuous()) {
+                throw new IllegalArgumentException("Unsupported decoded image type " + decoded.type() + "; header=" + header);
+            }
+            PixelFormat pixelFormat = decoded.channels() == 1 ? PixelFormat.GRAY8 : PixelFormat.BGR24;
+            // A reduced image is rounded up in size, so the scaled region is clipped to it.
+            Rectangle decodedRegion = new Rectangle(0, 0, decoded.cols(), decoded.rows());
+            if (sourceRegion != null) {
+                decodedRegion = decodedRegion.intersection(new Rectangle(
+                        sourceRegion.x / reduction,
+                        sourceRegion.y / reduction,
+                        (sourceRegion.width + reduction - 1) / reduction,
+                        (sourceRegion.height + reduction - 1) / reduction));
+            }
+            int rowLength = decodedRegion.width * pixelFormat.getBytesPerPixel();
+            byte[] pixels = new byte[rowLength * decodedRegion.height];
+            BytePointer decodedData = decoded.data();
+            long step = (long) decoded.cols() * pixelFormat.getBytesPerPixel();
+            for (int row = 0; row < decodedRegion.height; row++) {
+                decodedData.position((decodedRegion.y + row) * step + (long) decodedRegion.x * pixelFormat.getBytesPerPixel());
+                decodedData.get(pixels, row * rowLength, rowLength);
+            }
+            return new RawVideoFrame(header, decodedRegion.width, decodedRegion.height, pixelFormat, pixels);
+        }
+    }
+
+    @Override
+    public byte[] encode(RawVideoFrame frame, String formatName) {
+        if (formatName.equals("qoi")) {
+            return Qoi.encode(frame);
+        }
+        int type = frame.pixelFormat == PixelFormat.GRAY8 ? opencv_core.CV_8UC1 : opencv_core.CV_8UC3;
+        int[] params = formatName.equals("png")
+                ? new int[]{opencv_imgcodecs.IMWRITE_PNG_COMPRESSION, options.getPngCompressionLevel()}
+                : new int[]{opencv_imgcodecs.IMWRITE_JPEG_QUALITY, options.getJpegQuality()};
+        try (BytePointer pixels = new BytePointer(frame.pixels);
+             Mat mat = new Mat(frame.height, frame.width, type, pixels);
+             IntPointer paramsPointer = new IntPointer(params);
+             BytePointer encoded = new BytePointer()) {
+            if (!opencv_imgcodecs.imencode("." + formatName, mat, encoded, paramsPointer)) {
+                throw new IllegalArgumentException("Unable to encode image as " + formatName);
+            }
+            byte[] bytes = new byte[(int) encoded.limit()];
+            encoded.get(bytes);
+            return bytes;
+        }
+    }
+}
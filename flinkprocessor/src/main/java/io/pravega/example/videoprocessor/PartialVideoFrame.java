@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.ChunkedVideoFrame;
+import io.pravega.example.video.VideoFrame;
+import org.apache.flink.api.common.typeutils.base.TypeSerializerSingleton;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+
+import java.io.IOException;
+import java.security.DigestException;
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+/**
+ * The chunks received so far for a single video frame.
+ * The array of chunks is allocated when the first chunk arrives, with one slot per chunk,
+ * and the frame data is concatenated exactly once when the last missing chunk arrives.
+ * Chunks may be added in any order. A bitmap of received chunks is used to drop duplicates.
+ * After the frame has been emitted, the chunk data can be released while the bitmap is retained
+ * so that duplicates that arrive later are also dropped.
+ * Chunks with a chunk hash are validated when they are added. If all chunks were validated this way,
+ * the hash of the reassembled frame is not calculated.
+ * If the frame has parity chunks, it is complete when any finalChunkIndex + 1 chunks have been received
+ * and missing data chunks are recovered when the frame is reassembled.
+ */
+public class PartialVideoFrame {
+    // Fields of the frame, taken from the first chunk received. header.data is not used.
+    public VideoFrame header;
+    public short finalChunkIndex;
+    public short numParityChunks;
+    public int frameSize;
+    // Chunk data indexed by chunkIndex, including parity chunks. Null for chunks not yet received. Null after releaseChunks.
+    public byte[][] chunks;
+    // Bit i is set if chunk i has been received.
+    public long[] receivedChunks;
+    public int numChunksReceived;
+    // True if every chunk received so far had a valid chunk hash.
+    public boolean chunksValidated = true;
+
+    public PartialVideoFrame() {
+    }
+
+    public PartialVideoFrame(ChunkedVideoFrame firstChunk) {
+        header = new VideoFrame(firstChunk);
+        header.data = null;
+        finalChunkIndex = firstChunk.finalChunkIndex;
+        numParityChunks = firstChunk.numParityChunks;
+        frameSize = firstChunk.frameSize;
+        chunks = new byte[getNumChunks()][];
+        receivedChunks = newBitmap(getNumChunks());
+    }
+
+    /**
+     * @return The number of data and parity chunks.
+     */
+    public int getNumChunks() {
+        return finalChunkIndex + 1 + numParityChunks;
+    }
+
+    /**
+     * Adds a chunk to this frame.
+     * The chunk data is not copied unless the chunk is a slice of a larger buffer.
+     * If the chunk has a chunk hash that is not valid, DigestException is thrown and this frame is not changed,
+     * so that the chunk can still be received again.
+     *
+     * @return False if the chunk is a duplicate, or the frame has been released, and the chunk was ignored.
+     */
+    public boolean add(ChunkedVideoFrame chunk) throws ChunkSequenceException, DigestException {
+        if (chunk.finalChunkIndex != finalChunkIndex) {
+            throw new ChunkSequenceException(MessageFormat.format(
+                    "finalChunkIndex ({0}) does not match that of first chunk ({1}); chunk={2}",
+                    chunk.finalChunkIndex, finalChunkIndex, chunk));
+        }
+        if (chunk.numParityChunks != numParityChunks) {
+            throw new ChunkSequenceException(MessageFormat.format(
+                    "numParityChunks ({0}) does not match that of first chunk ({1}); chunk={2}",
+                    chunk.numParityChunks, numParityChunks, chunk));
+        }
+        if (chunk.chunkIndex < 0 || chunk.chunkIndex >= getNumChunks()) {
+            throw new ChunkSequenceException(MessageFormat.format(
+                    "chunkIndex ({0}) is not between 0 and finalChunkIndex ({1}) plus numParityChunks ({2}); chunk={3}",
+                    chunk.chunkIndex, finalChunkIndex, numParityChunks, chunk));
+        }
+        if (isSet(receivedChunks, chunk.chunkIndex) || isReleased()) {
+            // A released frame can receive new parity chunks after it has been emitted.
+            return false;
+        }
+        if (chunk.chunkHash != null) {
+            chunk.validateChunkHash();
+        } else {
+            chunksValidated = false;
+        }
+        testAndSet(receivedChunks, chunk.chunkIndex);
+        chunks[chunk.chunkIndex] = chunk.hasDataSlice()
+                ? Arrays.copyOfRange(chunk.dataArray(), chunk.dataOffset(), chunk.dataOffset() + chunk.dataLength())
+                : chunk.data;
+        numChunksReceived++;
+        return true;
+    }
+
+    public boolean isComplete() {
+        return numChunksReceived >= finalChunkIndex + 1;
+    }
+
+    /**
+     * Frees the chunk data after the frame has been emitted. Duplicates will continue to be dropped.
+     */
+    public void releaseChunks() {
+        chunks = null;
+    }
+
+    public boolean isReleased() {
+        return chunks == null;
+    }
+
+    /**
+     * @return The total size of the chunk data held by this frame.
+     */
+    public long getBufferedBytes() {
+        long bufferedBytes = 0;
+        if (chunks != null) {
+            for (byte[] chunk : chunks) {
+                if (chunk != null) {
+                    bufferedBytes += chunk.length;
+                }
+            }
+        }
+        return bufferedBytes;
+    }
+
+    /**
+     * Recovers any missing data chunks, concatenates the data chunks, and validates the hash,
+     * unless all chunks were validated when they were added.
+     * A frame with a single data chunk uses the chunk data without copying it.
+     */
+    public VideoFrame toVideoFrame() throws ChunkSequenceException, DigestException {
+        if (!isComplete()) {
+            throw new ChunkSequenceException(MessageFormat.format(
+                    "Number of chunks received ({0}) does not match expected value ({1}); frame={2}",
+                    numChunksReceived, finalChunkIndex + 1, header));
+        }
+        if (isReleased()) {
+            throw new IllegalStateException("Chunks have been released");
+        }
+        int numDataChunks = finalChunkIndex + 1;
+        byte[][] dataChunks = recoverDataChunks(numDataChunks);
+        VideoFrame videoFrame = new VideoFrame(header);
+        if (numDataChunks == 1) {
+            videoFrame.data = dataChunks[0];
+        } else {
+            int totalSize = 0;
+            for (int i = 0; i < numDataChunks; i++) {
+                totalSize += dataChunks[i].length;
+            }
+            videoFrame.data = new byte[totalSize];
+            int offset = 0;
+            for (int i = 0; i < numDataChunks; i++) {
+                System.arraycopy(dataChunks[i], 0, videoFrame.data, offset, dataChunks[i].length);
+                offset += dataChunks[i].length;
+            }
+        }
+        if (!chunksValidated) {
+            videoFrame.validateHash();
+        }
+        return videoFrame;
+    }
+
+    /**
+     * Uses the parity chunks to recover any data chunks that have not been received.
+     * All data chunks except the last have the same length as the parity chunks.
+     * Recovered chunks are not stored in this frame so that getBufferedBytes continues to count only received chunks.
+     *
+     * @return The chunks with all data chunks present. This is the chunks array itself if no data chunks were missing.
+     */
+    private byte[][] recoverDataChunks(int numDataChunks) throws ChunkSequenceException {
+        int parityLength = -1;
+        boolean missing = false;
+        for (int i = 0; i < chunks.length; i++) {
+            if (i < numDataChunks && chunks[i] == null) {
+                missing = true;
+            } else if (i >= numDataChunks && chunks[i] != null) {
+                parityLength = chunks[i].length;
+            }
+        }
+        if (!missing) {
+            return chunks;
+        }
+        int[] dataLengths = new int[numDataChunks];
+        Arrays.fill(dataLengths, parityLength);
+        dataLengths[numDataChunks - 1] = frameSize - (numDataChunks - 1) * parityLength;
+        if (parityLength < 0 || dataLengths[numDataChunks - 1] < 0 || dataLengths[numDataChunks - 1] > parityLength) {
+            throw new ChunkSequenceException(MessageFormat.format(
+                    "frameSize ({0}) is not consistent with parity chunk length ({1}); frame={2}",
+                    frameSize, parityLength, header));
+        }
+        byte[][] recoveredChunks = chunks.clone();
+        ReedSolomon.decode(recoveredChunks, numDataChunks, dataLengths);
+        return recoveredChunks;
+    }
+
+    static long[] newBitmap(int numBits) {
+        return new long[(numBits + 63) / 64];
+    }
+
+    static boolean isSet(long[] bitmap, int index) {
+        return (bitmap[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Sets a bit in a bitmap.
+     *
+     * @return The previous value of the bit.
+     */
+    static boolean testAndSet(long[] bitmap, int index) {
+        long mask = 1L << index;
+        boolean previous = (bitmap[index >>> 6] & mask) != 0;
+        bitmap[index >>> 6] |= mask;
+        return previous;
+    }
+
+    static int cardinality(long[] bitmap) {
+        int count = 0;
+        for (long word : bitmap) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "PartialVideoFrame{" +
+                "header=" + header +
+                ", finalChunkIndex=" + finalChunkIndex +
+                ", numParityChunks=" + numParityChunks +
+                ", numChunksReceived=" + numChunksReceived +
+                ", chunksValidated=" + chunksValidated +
+                ", released=" + isReleased() +
+                '}';
+    }
+
+    // ------------------------------------------------------------------------
+    // Serializer
+    // ------------------------------------------------------------------------
+
+    /**
+     * The serializer used to write the PartialVideoFrame type.
+     * Copies share the chunk data arrays because these are never modified.
+     */
+    public static class Serializer extends TypeSerializerSingleton<PartialVideoFrame> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean isImmutableType() {
+            return false;
+        }
+
+        @Override
+        public PartialVideoFrame createInstance() {
+            return new PartialVideoFrame();
+        }
+
+        @Override
+        public PartialVideoFrame copy(PartialVideoFrame from) {
+            PartialVideoFrame to = new PartialVideoFrame();
+            to.header = new VideoFrame();
+            VideoFrameTypeInfo.Serializer.copyFields(from.header, to.header);
+            to.finalChunkIndex = from.finalChunkIndex;
+            to.numParityChunks = from.numParityChunks;
+            to.frameSize = from.frameSize;
+            to.chunks = from.chunks == null ? null : from.chunks.clone();
+            to.receivedChunks = from.receivedChunks.clone();
+            to.numChunksReceived = from.numChunksReceived;
+            to.chunksValidated = from.chunksValidated;
+            return to;
+        }
+
+        @Override
+        public PartialVideoFrame copy(PartialVideoFrame from, PartialVideoFrame reuse) {
+            return copy(from);
+        }
+
+        @Override
+        public int getLength() {
+            return -1;
+        }
+
+        @Override
+        public void serialize(PartialVideoFrame record, DataOutputView target) throws IOException {
+            VideoFrameTypeInfo.Serializer.serializeFields(record.header, target);
+            target.writeShort(record.finalChunkIndex);
+            target.writeShort(record.numParityChunks);
+            target.writeInt(record.frameSize);
+            for (long word : record.receivedChunks) {
+                target.writeLong(word);
+            }
+            target.writeBoolean(record.chunksValidated);
+            target.writeBoolean(record.chunks != null);
+            if (record.chunks != null) {
+                for (byte[] chunk : record.chunks) {
+                    VideoFrameTypeInfo.Serializer.writeBytes(chunk, target);
+                }
+            }
+        }
+
+        @Override
+        public PartialVideoFrame deserialize(DataInputView source) throws IOException {
+            PartialVideoFrame record = new PartialVideoFrame();
+            record.header = new VideoFrame();
+            VideoFrameTypeInfo.Serializer.deserializeFields(record.header, source);
+            record.finalChunkIndex = source.readShort();
+            record.numParityChunks = source.readShort();
+            record.frameSize = source.readInt();
+            record.receivedChunks = newBitmap(record.getNumChunks());
+            for (int i = 0; i < record.receivedChunks.length; i++) {
+                record.receivedChunks[i] = source.readLong();
+            }
+            record.numChunksReceived = cardinality(record.receivedChunks);
+            record.chunksValidated = source.readBoolean();
+            if (source.readBoolean()) {
+                record.chunks = new byte[record.getNumChunks()][];
+                for (int i = 0; i < record.chunks.length; i++) {
+                    record.chunks[i] = VideoFrameTypeInfo.Serializer.readBytes(source);
+                }
+            }
+            return record;
+        }
+
+        @Override
+        public PartialVideoFrame deserialize(PartialVideoFrame reuse, DataInputView source) throws IOException {
+            return deserialize(source);
+        }
+
+        @Override
+        public void copy(DataInputView source, DataOutputView target) throws IOException {
+            VideoFrameTypeInfo.Serializer.copyFields(source, target);
+            short finalChunkIndex = source.readShort();
+            target.writeShort(finalChunkIndex);
+            short numParityChunks = source.readShort();
+            target.writeShort(numParityChunks);
+            target.writeInt(source.readInt());
+            int numChunks = finalChunkIndex + 1 + numParityChunks;
+            int bitmapLength = newBitmap(numChunks).length;
+            for (int i = 0; i < bitmapLength; i++) {
+                target.writeLong(source.readLong());
+            }
+            target.writeBoolean(source.readBoolean());
+            boolean hasChunks = source.readBoolean();
+            target.writeBoolean(hasChunks);
+            if (hasChunks) {
+                for (int i = 0; i < numChunks; i++) {
+                    VideoFrameTypeInfo.Serializer.copyBytes(source, target);
+                }
+            }
+        }
+
+        @Override
+        public boolean canEqual(Object obj) {
+            return obj instanceof PartialVideoFrame.Serializer;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.PixelFormat;
+import io.pravega.example.video.RawVideoFrame;
+import io.pravega.example.video.VideoFrame;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A PNG encoder that filters and deflates horizontal stripes of an image in parallel.
+ *
+ * Each stripe is compressed by its own Deflater, primed with the last 32 KB of filtered data of the previous stripe,
+ * and ended with a sync flush. The compressed stripes are concatenated into a single zlib stream
+ * and written as one IDAT chunk per stripe, so the output is an ordinary PNG file.
+ * The Adler-32 checksums of the stripes are combined, so no pass over the whole image is sequential.
+ *
+ * BGR24 images are written as 8-bit RGB and GRAY8 images as 8-bit grayscale.
+ * An instance can be used by multiple threads if its options are not changed.
+ */
+public class PngEncoder {
+    private static final byte[] SIGNATURE = {(byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n'};
+    private static final int WINDOW_SIZE = 32 * 1024;
+    private static final int ADLER_BASE = 65521;
+    private static final Filter[] FILTERS = Filter.values();
+
+    private final ExecutorService executor;
+    // The defaults are faster than the ImageIO PNG writer even on a single thread. See ImageCodecOptions.
+    private int compressionLevel = 1;
+    private Filter filter = Filter.UP;
+    private int stripeSize = 256 * 1024;
+
+    /**
+     * PNG row filters. ADAPTIVE chooses the filter for each row with the smallest sum of absolute differences,
+     * which is the heuristic recommended by the PNG specification.
+     */
+    public enum Filter {
+        // The ordinals of NONE to PAETH are the PNG filter types.
+        NONE,
+        SUB,
+        UP,
+        AVERAGE,
+        PAETH,
+        ADAPTIVE,
+    }
+
+    /**
+     * Creates an encoder that compresses stripes on the calling thread.
+     */
+    public PngEncoder() {
+        this(null);
+    }
+
+    /**
+     * @param executor If not null, stripes are filtered and compressed in parallel on this executor.
+     */
+    public PngEncoder(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param compressionLevel Deflate level from 0 (no compression) to 9 (best compression).
+     */
+    public PngEncoder withCompressionLevel(int compressionLevel) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("Invalid compression level " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    public PngEncoder withFilter(Filter filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    /**
+     * @param stripeSize The approximate number of uncompressed bytes in each stripe.
+     *                   Smaller stripes allow more parallelism but compress slightly worse.
+     */
+    public PngEncoder withStripeSize(int stripeSize) {
+        this.stripeSize = stripeSize;
+        return this;
+    }
+
+    public byte[] encode(BufferedImage image) {
+        return encode(RawImages.fromBufferedImage(new VideoFrame(), image));
+    }
+
+    public byte[] encode(RawVideoFrame frame) {
+        int bytesPerPixel = frame.pixelFormat.getBytesPerPixel();
+        int rowLength = frame.width * bytesPerPixel;
+        int rowsPerStripe = Math.max(1, stripeSize / (rowLength + 1));
+        int numStripes = (frame.height + rowsPerStripe - 1) / rowsPerStripe;
+
+        List<Future<Stripe>> futures = new ArrayList<>(numStripes);
+        List<Stripe> stripes = new ArrayList<>(numStripes);
+        for (int i = 0; i < numStripes; i++) {
+            int firstRow = i * rowsPerStripe;
+            int endRow = Math.min(frame.height, firstRow + rowsPerStripe);
+            boolean last = i == numStripes - 1;
+            if (executor == null) {
+                stripes.add(encodeStripe(frame, firstRow, endRow, last));
+            } else {
+                futures.add(executor.submit(() -> encodeStripe(frame, firstRow, endRow, last)));
+            }
+        }
+        try {
+            for (Future<Stripe> future : futures) {
+                stripes.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new RuntimeException(e);
+        }
+
+        try {
+            int compressedSize = 0;
+            for (Stripe stripe : stripes) {
+                compressedSize += stripe.length + 12;
+            }
+            ByteArrayOutputStream outBytes = new ByteArrayOutputStream(compressedSize + 64);
+            DataOutputStream out = new DataOutputStream(outBytes);
+            out.write(SIGNATURE);
+            ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+            DataOutputStream headerOut = new DataOutputStream(header);
+            headerOut.writeInt(frame.width);
+            headerOut.writeInt(frame.height);
+            headerOut.writeByte(8);
+            headerOut.writeByte(frame.pixelFormat == PixelFormat.GRAY8 ? 0 : 2);
+            headerOut.writeByte(0);
+            headerOut.writeByte(0);
+            headerOut.writeByte(0);
+            writeChunk(out, "IHDR", header.toByteArray(), 0, header.size());
+            long adler = 1;
+            boolean first = true;
+            for (Stripe stripe : stripes) {
+                if (first) {
+                    // The zlib header has no preset dictionary; only the stripes after the first one use a dictionary.
+                    byte[] data = new byte[2 + stripe.length];
+                    data[0] = 0x78;
+                    data[1] = zlibFlags(compressionLevel);
+                    System.arraycopy(stripe.compressed, 0, data, 2, stripe.length);
+                    writeChunk(out, "IDAT", data, 0, data.length);
+                    first = false;
+                } else {
+                    writeChunk(out, "IDAT", stripe.compressed, 0, stripe.length);
+                }
+                adler = combineAdler32(adler, stripe.adler, stripe.uncompressedLength);
+            }
+            byte[] trailer = {(byte) (adler >>> 24), (byte) (adler >>> 16), (byte) (adler >>> 8), (byte) adler};
+            writeChunk(out, "IDAT", trailer, 0, trailer.length);
+            writeChunk(out, "IEND", new byte[0], 0, 0);
+            return outBytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class Stripe {
+        byte[] compressed;
+        int length;
+        long adler;
+        long uncompressedLength;
+    }
+
+    private Stripe encodeStripe(RawVideoFrame frame, int firstRow, int endRow, boolean last) {
+        int filteredRowLength = frame.width * frame.pixelFormat.getBytesPerPixel() + 1;
+        // Filtering depends only on the unfiltered rows, so the end of the previous stripe can be filtered again
+        // here to obtain the dictionary without waiting for the previous stripe.
+        int dictionaryRows = Math.min(firstRow, (WINDOW_SIZE + filteredRowLength - 1) / filteredRowLength);
+        RowFilter rowFilter = new RowFilter(frame, filter);
+        byte[] filtered = new byte[(endRow - firstRow + dictionaryRows) * filteredRowLength];
+        for (int row = firstRow - dictionaryRows; row < endRow; row++) {
+            rowFilter.filterRow(row, filtered, (row - firstRow + dictionaryRows) * filteredRowLength);
+        }
+        int dataOffset = dictionaryRows * filteredRowLength;
+        int dataLength = filtered.length - dataOffset;
+
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            if (dictionaryRows > 0) {
+                int dictionaryLength = Math.min(WINDOW_SIZE, dataOffset);
+                deflater.setDictionary(filtered, dataOffset - dictionaryLength, dictionaryLength);
+            }
+            deflater.setInput(filtered, dataOffset, dataLength);
+            if (last) {
+                deflater.finish();
+            }
+            Stripe stripe = new Stripe();
+            stripe.compressed = new byte[dataLength + dataLength / 1000 + 64];
+            int flush = last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+            while (true) {
+                stripe.length += deflater.deflate(stripe.compressed, stripe.length, stripe.compressed.length - stripe.length, flush);
+                if (last ? deflater.finished() : stripe.length < stripe.compressed.length) {
+                    break;
+                }
+                stripe.compressed = Arrays.copyOf(stripe.compressed, stripe.compressed.length * 2);
+            }
+            Adler32 adler32 = new Adler32();
+            adler32.update(filtered, dataOffset, dataLength);
+            stripe.adler = adler32.getValue();
+            stripe.uncompressedLength = dataLength;
+            return stripe;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Applies PNG filters to rows. The rows are converted to PNG byte order before filtering.
+     */
+    private static class RowFilter {
+        private final RawVideoFrame frame;
+        private final Filter filter;
+        private final int bytesPerPixel;
+        private final int rowLength;
+        private final byte[] previous;
+        private final byte[] current;
+        private final byte[][] candidates;
+        private int currentRow = -1;
+
+        RowFilter(RawVideoFrame frame, Filter filter) {
+            this.frame = frame;
+            this.filter = filter;
+            bytesPerPixel = frame.pixelFormat.getBytesPerPixel();
+            rowLength = frame.width * bytesPerPixel;
+            previous = new byte[rowLength];
+            current = new byte[rowLength];
+            candidates = filter == Filter.ADAPTIVE ? new byte[Filter.ADAPTIVE.ordinal()][rowLength] : null;
+        }
+
+        /**
+         * Writes the filter type and the filtered bytes of row to out. Rows must be filtered in order.
+         */
+        void filterRow(int row, byte[] out, int outOffset) {
+            if (row == 0) {
+                Arrays.fill(previous, (byte) 0);
+            } else if (currentRow == row - 1) {
+                System.arraycopy(current, 0, previous, 0, rowLength);
+            } else {
+                loadRow(row - 1, previous);
+            }
+            loadRow(row, current);
+            currentRow = row;
+
+            if (filter != Filter.ADAPTIVE) {
+                out[outOffset] = (byte) filter.ordinal();
+                apply(filter, out, outOffset + 1);
+                return;
+            }
+            int bestSum = Integer.MAX_VALUE;
+            int best = 0;
+            for (int type = 0; type < candidates.length; type++) {
+                int sum = apply(FILTERS[type], candidates[type], 0);
+                if (sum < bestSum) {
+                    bestSum = sum;
+                    best = type;
+                }
+            }
+            out[outOffset] = (byte) best;
+            System.arraycopy(candidates[best], 0, out, outOffset + 1, rowLength);
+        }
+
+        private void loadRow(int row, byte[] target) {
+            int offset = row * rowLength;
+            if (frame.pixelFormat == PixelFormat.BGR24) {
+                for (int i = 0; i < rowLength; i += 3) {
+                    target[i] = frame.pixels[offset + i + 2];
+                    target[i + 1] = frame.pixels[offset + i + 1];
+                    target[i + 2] = frame.pixels[offset + i];
+                }
+            } else {
+                System.arraycopy(frame.pixels, offset, target, 0, rowLength);
+            }
+        }
+
+        /**
+         * Filters the current row. The first bytesPerPixel bytes have no left neighbor and are handled separately.
+         *
+         * @return The sum of the absolute values of the filtered bytes as signed bytes.
+         */
+        private int apply(Filter type, byte[] out, int outOffset) {
+            final byte[] cur = current;
+            final byte[] prev = previous;
+            final int bpp = Math.min(bytesPerPixel, rowLength);
+            int sum = 0;
+            switch (type) {
+                case NONE:
+                    for (int i = 0; i < rowLength; i++) {
+                        byte v = cur[i];
+                        out[outOffset + i] = v;
+                        sum += Math.abs(v);
+                    }
+                    break;
+                case SUB:
+                    for (int i = 0; i < bpp; i++) {
+                        byte v = cur[i];
+                        out[outOffset + i] = v;
+                        sum += Math.abs(v);
+                    }
+                    for (int i = bpp; i < rowLength; i++) {
+                        byte v = (byte) (cur[i] - cur[i - bpp]);
+                        out[outOffset + i] = v;
+                        sum += Math.abs(v);
+                    }
+                    break;
+                case UP:
+                    for (int i = 0; i < rowLength; i++) {
+                        byte v = (byte) (cur[i] - prev[i]);
+                        out[outOffset + i] = v;
+                        sum += Math.abs(v);
+                    }
+                    break;
+                case AVERAGE:
+                    for (int i = 0; i < bpp; i++) {
+                        byte v = (byte) (cur[i] - ((prev[i] & 0xFF) >>> 1));
+                        out[outOffset + i] = v;
+                        sum += Math.abs(v);
+                    }
+                    for (int i = bpp; i < rowLength; i++) {
+                        byte v = (byte) (cur[i] - (((cur[i - bpp] & 0xFF) + (prev[i] & 0xFF)) >>> 1));
+                        out[outOffset + i] = v;
+                        sum += Math.abs(v);
+                    }
+                    break;
+                case PAETH:
+                    // With no left neighbor, the predictor is the byte above.
+                    for (int i = 0; i < bpp; i++) {
+                        byte v = (byte) (cur[i] - prev[i]);
+                        out[outOffset + i] = v;
+                        sum += Math.abs(v);
+                    }
+                    for (int i = bpp; i < rowLength; i++) {
+                        byte v = (byte) (cur[i] - paethPredictor(cur[i - bpp] & 0xFF, prev[i] & 0xFF, prev[i - bpp] & 0xFF));
+                        out[outOffset + i] = v;
+                        sum += Math.abs(v);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported filter " + type);
+            }
+            return sum;
+        }
+
+        private static int paethPredictor(int a, int b, int c) {
+            int p = a + b - c;
+            int pa = Math.abs(p - a);
+            int pb = Math.abs(p - b);
+            int pc = Math.abs(p - c);
+            if (pa <= pb && pa <= pc) {
+                return a;
+            }
+            return pb <= pc ? b : c;
+        }
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data, int offset, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, offset, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * @return The second byte of a zlib header for a 32 KB window and the given level.
+     */
+    private static byte zlibFlags(int level) {
+        int levelFlags = level <= 1 ? 0 : level <= 5 ? 1 : level == 6 ? 2 : 3;
+        int flags = levelFlags << 6;
+        flags += 31 - (0x78 * 256 + flags) % 31;
+        return (byte) flags;
+    }
+
+    /**
+     * @return The Adler-32 checksum of the concatenation of two sequences, as in zlib's adler32_combine.
+     */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum2 >= (ADLER_BASE << 1)) sum2 -= (ADLER_BASE << 1);
+        if (sum2 >= ADLER_BASE) sum2 -= ADLER_BASE;
+        return sum1 | (sum2 << 16);
+    }
+}
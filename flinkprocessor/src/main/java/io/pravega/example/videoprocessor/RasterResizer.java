@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resizes interleaved 8-bit pixels, such as those of a RawVideoFrame, without using AWT.
+ *
+ * Filters are applied separably, first horizontally and then vertically, with fixed-point weights.
+ * The weights depend only on the algorithm and the source and target sizes, so they are calculated once and cached.
+ * For large reductions, BILINEAR and LANCZOS first reduce the image by an integer factor with a box filter.
+ * This avoids aliasing with BILINEAR and limits the number of taps with LANCZOS.
+ *
+ * Intermediate buffers are reused across calls, so an instance must only be used by one thread at a time.
+ */
+final class RasterResizer {
+    private static final int PRECISION_BITS = 14;
+    private static final int ONE = 1 << PRECISION_BITS;
+    private static final int LANCZOS_LOBES = 3;
+    private static final int MAX_CACHED_KERNELS = 256;
+
+    private static final Map<Long, Kernel> kernelCache = new ConcurrentHashMap<>();
+
+    // Intermediate buffers. Each is grown as needed and may be longer than required.
+    private byte[] reduced = new byte[0];
+    private byte[] horizontal = new byte[0];
+    private int[] ints = new int[0];
+    private int[] indexes = new int[0];
+
+    /**
+     * @param src       Source pixels. Rows are srcWidth * channels bytes with no padding.
+     * @param channels  Bytes per pixel.
+     * @param algorithm Any algorithm except SMOOTH.
+     * @return Target pixels. This is src if the size is unchanged. Otherwise, this is a new array.
+     */
+    byte[] resize(byte[] src, int srcWidth, int srcHeight, int channels, int dstWidth, int dstHeight,
+                  ResizeAlgorithm algorithm) {
+        if (srcWidth == dstWidth && srcHeight == dstHeight) {
+            return src;
+        }
+        switch (algorithm) {
+            case NEAREST:
+                return nearest(src, srcWidth, srcHeight, channels, dstWidth, dstHeight);
+            case AREA_AVERAGE:
+                break;
+            case BILINEAR:
+            case LANCZOS: {
+                // The filter is applied to a reduction by less than 2.
+                int factorX = Math.max(1, srcWidth / dstWidth);
+                int factorY = Math.max(1, srcHeight / dstHeight);
+                if (factorX > 1 || factorY > 1) {
+                    src = reduce(src, srcWidth, srcHeight, channels, factorX, factorY);
+                    srcWidth = (srcWidth + factorX - 1) / factorX;
+                    srcHeight = (srcHeight + factorY - 1) / factorY;
+                    if (srcWidth == dstWidth && srcHeight == dstHeight) {
+                        return Arrays.copyOf(src, dstWidth * dstHeight * channels);
+                    }
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported algorithm " + algorithm);
+        }
+        byte[] dst = new byte[dstWidth * dstHeight * channels];
+        if (srcHeight == dstHeight) {
+            horizontal(src, srcWidth, srcHeight, channels, dst, dstWidth, kernel(algorithm, srcWidth, dstWidth));
+            return dst;
+        }
+        byte[] tmp = src;
+        if (srcWidth != dstWidth) {
+            horizontal = grow(horizontal, dstWidth * srcHeight * channels);
+            tmp = horizontal;
+            horizontal(src, srcWidth, srcHeight, channels, tmp, dstWidth, kernel(algorithm, srcWidth, dstWidth));
+        }
+        vertical(tmp, dstWidth * channels, dst, dstHeight, kernel(algorithm, srcHeight, dstHeight));
+        return dst;
+    }
+
+    private static byte[] grow(byte[] buffer, int length) {
+        return buffer.length >= length ? buffer : new byte[length];
+    }
+
+    private static int[] grow(int[] buffer, int length) {
+        return buffer.length >= length ? buffer : new int[length];
+    }
+
+    private byte[] nearest(byte[] src, int srcWidth, int srcHeight, int channels, int dstWidth, int dstHeight) {
+        indexes = grow(indexes, dstWidth);
+        int[] xOffsets = indexes;
+        for (int x = 0; x < dstWidth; x++) {
+            xOffsets[x] = (int) Math.min(srcWidth - 1, ((2L * x + 1) * srcWidth) / (2L * dstWidth)) * channels;
+        }
+        byte[] dst = new byte[dstWidth * dstHeight * channels];
+        int srcStride = srcWidth * channels;
+        int d = 0;
+        for (int y = 0; y < dstHeight; y++) {
+            int srcRow = (int) Math.min(srcHeight - 1, ((2L * y + 1) * srcHeight) / (2L * dstHeight)) * srcStride;
+            for (int x = 0; x < dstWidth; x++) {
+                int s = srcRow + xOffsets[x];
+                for (int c = 0; c < channels; c++) {
+                    dst[d++] = src[s + c];
+                }
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * Reduces the image by integer factors by averaging each block of pixels.
+     * Blocks at the right and bottom edges may be partial.
+     */
+    private byte[] reduce(byte[] src, int srcWidth, int srcHeight, int channels, int factorX, int factorY) {
+        int dstWidth = (srcWidth + factorX - 1) / factorX;
+        int dstHeight = (srcHeight + factorY - 1) / factorY;
+        int srcStride = srcWidth * channels;
+        int dstStride = dstWidth * channels;
+        reduced = grow(reduced, dstStride * dstHeight);
+        byte[] dst = reduced;
+        // The index in sums of each byte of a source row.
+        indexes = grow(indexes, srcStride);
+        int[] sumIndexes = indexes;
+        for (int i = 0; i < srcStride; i++) {
+            sumIndexes[i] = (i / channels / factorX) * channels + i % channels;
+        }
+        ints = grow(ints, dstStride);
+        int[] sums = ints;
+        for (int dy = 0; dy < dstHeight; dy++) {
+            Arrays.fill(sums, 0, dstStride, 0);
+            int rows = Math.min(factorY, srcHeight - dy * factorY);
+            for (int sy = dy * factorY; sy < dy * factorY + rows; sy++) {
+                int s = sy * srcStride;
+                for (int i = 0; i < srcStride; i++) {
+                    sums[sumIndexes[i]] += src[s + i] & 0xFF;
+                }
+            }
+            int d = dy * dstStride;
+            for (int x = 0; x < dstWidth; x++) {
+                int n = Math.min(factorX, srcWidth - x * factorX) * rows;
+                for (int c = 0; c < channels; c++) {
+                    dst[d++] = (byte) ((sums[x * channels + c] + n / 2) / n);
+                }
+            }
+        }
+        return dst;
+    }
+
+    private void horizontal(byte[] src, int srcWidth, int height, int channels, byte[] dst, int dstWidth, Kernel kernel) {
+        int srcStride = srcWidth * channels;
+        ints = grow(ints, channels);
+        int[] acc = ints;
+        int d = 0;
+        for (int y = 0; y < height; y++) {
+            int srcRow = y * srcStride;
+            for (int x = 0; x < dstWidth; x++) {
+                int s = srcRow + kernel.start[x] * channels;
+                int w = x * kernel.maxTaps;
+                int n = kernel.count[x];
+                if (channels == 3) {
+                    int acc0 = ONE / 2, acc1 = ONE / 2, acc2 = ONE / 2;
+                    for (int k = 0; k < n; k++, s += 3) {
+                        int weight = kernel.weights[w + k];
+                        acc0 += weight * (src[s] & 0xFF);
+                        acc1 += weight * (src[s + 1] & 0xFF);
+                        acc2 += weight * (src[s + 2] & 0xFF);
+                    }
+                    dst[d++] = clamp(acc0);
+                    dst[d++] = clamp(acc1);
+                    dst[d++] = clamp(acc2);
+                } else {
+                    Arrays.fill(acc, 0, channels, ONE / 2);
+                    for (int k = 0; k < n; k++) {
+                        int weight = kernel.weights[w + k];
+                        for (int c = 0; c < channels; c++) {
+                            acc[c] += weight * (src[s++] & 0xFF);
+                        }
+                    }
+                    for (int c = 0; c < channels; c++) {
+                        dst[d++] = clamp(acc[c]);
+                    }
+                }
+            }
+        }
+    }
+
+    private void vertical(byte[] src, int stride, byte[] dst, int dstHeight, Kernel kernel) {
+        ints = grow(ints, stride);
+        int[] acc = ints;
+        for (int y = 0; y < dstHeight; y++) {
+            Arrays.fill(acc, 0, stride, ONE / 2);
+            int w = y * kernel.maxTaps;
+            for (int k = 0; k < kernel.count[y]; k++) {
+                int weight = kernel.weights[w + k];
+                int s = (kernel.start[y] + k) * stride;
+                for (int i = 0; i < stride; i++) {
+                    acc[i] += weight * (src[s + i] & 0xFF);
+                }
+            }
+            int d = y * stride;
+            for (int i = 0; i < stride; i++) {
+                dst[d + i] = clamp(acc[i]);
+            }
+        }
+    }
+
+    private static byte clamp(int acc) {
+        int value = acc >> PRECISION_BITS;
+        return (byte) (value < 0 ? 0 : value > 255 ? 255 : value);
+    }
+
+    private static Kernel kernel(ResizeAlgorithm algorithm, int srcSize, int dstSize) {
+        long key = ((long) algorithm.ordinal() << 56) | ((long) srcSize << 28) | dstSize;
+        Kernel kernel = kernelCache.get(key);
+        if (kernel == null) {
+            if (kernelCache.size() >= MAX_CACHED_KERNELS) {
+                kernelCache.clear();
+            }
+            kernel = new Kernel(algorithm, srcSize, dstSize);
+            kernelCache.put(key, kernel);
+        }
+        return kernel;
+    }
+
+    private static double lanczos(double x) {
+        if (x == 0) {
+            return 1;
+        }
+        if (x <= -LANCZOS_LOBES || x >= LANCZOS_LOBES) {
+            return 0;
+        }
+        double px = Math.PI * x;
+        return LANCZOS_LOBES * Math.sin(px) * Math.sin(px / LANCZOS_LOBES) / (px * px);
+    }
+
+    /**
+     * The source pixels and fixed-point weights that contribute to each target pixel in one dimension.
+     */
+    private static final class Kernel {
+        // Index of the first source pixel for each target pixel.
+        final int[] start;
+        // Number of source pixels for each target pixel.
+        final int[] count;
+        final int maxTaps;
+        // count[i] weights for target pixel i, starting at i * maxTaps. The weights of each target pixel sum to ONE.
+        final int[] weights;
+
+        Kernel(ResizeAlgorithm algorithm, int srcSize, int dstSize) {
+            double scale = (double) srcSize / dstSize;
+            double support;
+            switch (algorithm) {
+                case BILINEAR:
+                    support = 1.0;
+                    break;
+                case AREA_AVERAGE:
+                    support = scale / 2 + 1;
+                    break;
+                case LANCZOS:
+                    support = LANCZOS_LOBES * Math.max(scale, 1.0);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported algorithm " + algorithm);
+            }
+            maxTaps = (int) Math.ceil(2 * support) + 3;
+            start = new int[dstSize];
+            count = new int[dstSize];
+            weights = new int[dstSize * maxTaps];
+            double[] w = new double[maxTaps];
+            for (int i = 0; i < dstSize; i++) {
+                double center = (i + 0.5) * scale;
+                int first = Math.max(0, (int) Math.floor(center - support));
+                int last = Math.min(srcSize - 1, (int) Math.ceil(center + support));
+                int n = 0;
+                double sum = 0;
+                for (int j = first; j <= last; j++, n++) {
+                    w[n] = weight(algorithm, scale, center, j);
+                    sum += w[n];
+                }
+                // Trim taps with zero weight so that the inner loops are short.
+                int lo = 0;
+                while (lo < n - 1 && w[lo] == 0) {
+                    lo++;
+                }
+                int hi = n;
+                while (hi > lo + 1 && w[hi - 1] == 0) {
+                    hi--;
+                }
+                start[i] = first + lo;
+                count[i] = hi - lo;
+                int fixedSum = 0;
+                int largest = i * maxTaps;
+                for (int k = lo; k < hi; k++) {
+                    int index = i * maxTaps + k - lo;
+                    weights[index] = (int) Math.round(w[k] / sum * ONE);
+                    fixedSum += weights[index];
+                    if (weights[index] > weights[largest]) {
+                        largest = index;
+                    }
+                }
+                // Make the weights sum to exactly ONE so that flat areas are unchanged.
+                weights[largest] += ONE - fixedSum;
+            }
+        }
+
+        /**
+         * @return The unnormalized weight of source pixel j for a target pixel centered at center.
+         */
+        private static double weight(ResizeAlgorithm algorithm, double scale, double center, int j) {
+            double x = j + 0.5 - center;
+            switch (algorithm) {
+                case BILINEAR:
+                    return Math.max(0, 1 - Math.abs(x));
+                case AREA_AVERAGE: {
+                    // The overlap of source pixel j with the area of the target pixel.
+                    double halfWidth = scale / 2;
+                    double overlap = Math.min(j + 1, center + halfWidth) - Math.max(j, center - halfWidth);
+                    return Math.max(0, overlap);
+                }
+                case LANCZOS:
+                    return lanczos(x / Math.max(scale, 1.0));
+                default:
+                    throw new IllegalArgumentException("Unsupported algorithm " + algorithm);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.PixelFormat;
+import io.pravega.example.video.RawVideoFrame;
+import io.pravega.example.video.VideoFrame;
+
+import java.awt.*;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * Converts between RawVideoFrame and BufferedImage, and crops RawVideoFrame.
+ * When the BufferedImage has the layout of a PixelFormat, the pixel buffer is shared instead of copied.
+ */
+final class RawImages {
+    private RawImages() {
+    }
+
+    /**
+     * @return A BufferedImage that shares the pixels of frame.
+     */
+    static BufferedImage toBufferedImage(RawVideoFrame frame) {
+        DataBufferByte buffer = new DataBufferByte(frame.pixels, frame.pixels.length);
+        switch (frame.pixelFormat) {
+            case BGR24: {
+                WritableRaster raster = Raster.createInterleavedRaster(
+                        buffer, frame.width, frame.height, frame.width * 3, 3, new int[]{2, 1, 0}, null);
+                ComponentColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
+                        new int[]{8, 8, 8}, false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+                return new BufferedImage(colorModel, raster, false, null);
+            }
+            case GRAY8: {
+                WritableRaster raster = Raster.createInterleavedRaster(
+                        buffer, frame.width, frame.height, frame.width, 1, new int[]{0}, null);
+                ComponentColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+                        new int[]{8}, false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+                return new BufferedImage(colorModel, raster, false, null);
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported pixel format " + frame.pixelFormat);
+        }
+    }
+
+    /**
+     * Creates a RawVideoFrame with the header fields of header and the pixels of image.
+     * Images of type TYPE_3BYTE_BGR and TYPE_BYTE_GRAY that are not subimages share their pixels.
+     * Other images are converted to BGR24.
+     */
+    static RawVideoFrame fromBufferedImage(VideoFrame header, BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (isCompact(image, BufferedImage.TYPE_3BYTE_BGR, 3)) {
+            return new RawVideoFrame(header, width, height, PixelFormat.BGR24, pixelsOf(image));
+        }
+        if (isCompact(image, BufferedImage.TYPE_BYTE_GRAY, 1)) {
+            return new RawVideoFrame(header, width, height, PixelFormat.GRAY8, pixelsOf(image));
+        }
+        BufferedImage bgrImage = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g2d = bgrImage.createGraphics();
+        g2d.drawImage(image, 0, 0, null);
+        g2d.dispose();
+        return new RawVideoFrame(header, width, height, PixelFormat.BGR24, pixelsOf(bgrImage));
+    }
+
+    /**
+     * @param region The region to keep, or null to keep the entire frame. The region is clipped to the frame.
+     * @return frame if the region covers the entire frame, or a copy of the pixels in the region otherwise.
+     */
+    static RawVideoFrame crop(RawVideoFrame frame, Rectangle region) {
+        if (region == null) {
+            return frame;
+        }
+        Rectangle clipped = new Rectangle(0, 0, frame.width, frame.height).intersection(region);
+        if (clipped.isEmpty()) {
+            throw new IllegalArgumentException("Region " + region + " is outside of the image; header=" + frame);
+        }
+        if (clipped.width == frame.width && clipped.height == frame.height) {
+            return frame;
+        }
+        int bytesPerPixel = frame.pixelFormat.getBytesPerPixel();
+        int rowLength = clipped.width * bytesPerPixel;
+        byte[] pixels = new byte[rowLength * clipped.height];
+        for (int row = 0; row < clipped.height; row++) {
+            System.arraycopy(frame.pixels, ((clipped.y + row) * frame.width + clipped.x) * bytesPerPixel,
+                    pixels, row * rowLength, rowLength);
+        }
+        return new RawVideoFrame(frame, clipped.width, clipped.height, frame.pixelFormat, pixels);
+    }
+
+    private static boolean isCompact(BufferedImage image, int type, int bytesPerPixel) {
+        return image.getType() == type
+                && image.getRaster().getParent() == null
+                && image.getRaster().getDataBuffer().getSize() == image.getWidth() * image.getHeight() * bytesPerPixel;
+    }
+
+    private static byte[] pixelsOf(BufferedImage image) {
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
+}
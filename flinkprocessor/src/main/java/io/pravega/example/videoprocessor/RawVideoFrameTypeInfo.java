@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.PixelFormat;
+import io.pravega.example.video.RawVideoFrame;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeinfo.TypeInfoFactory;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.TypeSerializerSingleton;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * TypeInformation for RawVideoFrame.
+ * As with VideoFrameTypeInfo, streams of RawVideoFrame must be keyed with a KeySelector.
+ */
+public class RawVideoFrameTypeInfo extends TypeInformation<RawVideoFrame> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public boolean isBasicType() {
+        return false;
+    }
+
+    @Override
+    public boolean isTupleType() {
+        return false;
+    }
+
+    @Override
+    public int getArity() {
+        return 1;
+    }
+
+    @Override
+    public int getTotalFields() {
+        return 1;
+    }
+
+    @Override
+    public Class<RawVideoFrame> getTypeClass() {
+        return RawVideoFrame.class;
+    }
+
+    @Override
+    public boolean isKeyType() {
+        return false;
+    }
+
+    @Override
+    public TypeSerializer<RawVideoFrame> createSerializer(ExecutionConfig config) {
+        return new Serializer();
+    }
+
+    @Override
+    public String toString() {
+        return "RawVideoFrameTypeInfo";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof RawVideoFrameTypeInfo && ((RawVideoFrameTypeInfo) obj).canEqual(this);
+    }
+
+    @Override
+    public int hashCode() {
+        return RawVideoFrameTypeInfo.class.hashCode();
+    }
+
+    @Override
+    public boolean canEqual(Object obj) {
+        return obj instanceof RawVideoFrameTypeInfo;
+    }
+
+    /**
+     * Registered with the TypeExtractor by AbstractJob.
+     */
+    public static class Factory extends TypeInfoFactory<RawVideoFrame> {
+        @Override
+        public TypeInformation<RawVideoFrame> createTypeInfo(Type t, Map<String, TypeInformation<?>> genericParameters) {
+            return new RawVideoFrameTypeInfo();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Serializer
+    // ------------------------------------------------------------------------
+
+    /**
+     * The serializer used to write the RawVideoFrame type.
+     * The VideoFrame fields are written as in VideoFrameTypeInfo.Serializer, followed by the pixel fields.
+     * Copies share the pixel array with the original because this project never modifies pixels in place.
+     */
+    public static class Serializer extends TypeSerializerSingleton<RawVideoFrame> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean isImmutableType() {
+            return false;
+        }
+
+        @Override
+        public RawVideoFrame createInstance() {
+            return new RawVideoFrame();
+        }
+
+        @Override
+        public RawVideoFrame copy(RawVideoFrame from) {
+            RawVideoFrame to = new RawVideoFrame();
+            VideoFrameTypeInfo.Serializer.copyFields(from, to);
+            to.width = from.width;
+            to.height = from.height;
+            to.pixelFormat = from.pixelFormat;
+            to.pixels = from.pixels;
+            return to;
+        }
+
+        @Override
+        public RawVideoFrame copy(RawVideoFrame from, RawVideoFrame reuse) {
+            return copy(from);
+        }
+
+        @Override
+        public int getLength() {
+            return -1;
+        }
+
+        @Override
+        public void serialize(RawVideoFrame record, DataOutputView target) throws IOException {
+            VideoFrameTypeInfo.Serializer.serializeFields(record, target);
+            target.writeInt(record.width);
+            target.writeInt(record.height);
+            target.writeByte(record.pixelFormat == null ? -1 : record.pixelFormat.getId());
+            VideoFrameTypeInfo.Serializer.writeBytes(record.pixels, target);
+        }
+
+        @Override
+        public RawVideoFrame deserialize(DataInputView source) throws IOException {
+            RawVideoFrame frame = new RawVideoFrame();
+            VideoFrameTypeInfo.Serializer.deserializeFields(frame, source);
+            frame.width = source.readInt();
+            frame.height = source.readInt();
+            byte pixelFormatId = source.readByte();
+            if (pixelFormatId >= 0) {
+                frame.pixelFormat = PixelFormat.fromId(pixelFormatId);
+            }
+            frame.pixels = VideoFrameTypeInfo.Serializer.readBytes(source);
+            return frame;
+        }
+
+        @Override
+        public RawVideoFrame deserialize(RawVideoFrame reuse, DataInputView source) throws IOException {
+            return deserialize(source);
+        }
+
+        @Override
+        public void copy(DataInputView source, DataOutputView target) throws IOException {
+            VideoFrameTypeInfo.Serializer.copyFields(source, target);
+            target.writeInt(source.readInt());
+            target.writeInt(source.readInt());
+            target.writeByte(source.readByte());
+            VideoFrameTypeInfo.Serializer.copyBytes(source, target);
+        }
+
+        @Override
+        public boolean canEqual(Object obj) {
+            return obj instanceof RawVideoFrameTypeInfo.Serializer;
+        }
+    }
+}
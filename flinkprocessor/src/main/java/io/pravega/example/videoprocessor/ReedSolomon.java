@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+/**
+ * A systematic Reed-Solomon erasure code over GF(2^8) using a Cauchy matrix.
+ * The k data chunks are unchanged and m parity chunks are added.
+ * The data can be recovered from any k of the k + m chunks. k + m must not exceed 256.
+ *
+ * Data chunks may be shorter than the parity chunks. They are treated as if they were padded with zeros.
+ */
+final class ReedSolomon {
+    static final int MAX_CHUNKS = 256;
+
+    private static final int[] EXP = new int[510];
+    private static final int[] LOG = new int[256];
+    // MUL[a][b] is the product of a and b.
+    private static final byte[][] MUL = new byte[256][256];
+
+    static {
+        int x = 1;
+        for (int i = 0; i < 255; i++) {
+            EXP[i] = x;
+            EXP[i + 255] = x;
+            LOG[x] = i;
+            x <<= 1;
+            if (x >= 256) {
+                x ^= 0x11D;
+            }
+        }
+        for (int a = 1; a < 256; a++) {
+            for (int b = 1; b < 256; b++) {
+                MUL[a][b] = (byte) EXP[LOG[a] + LOG[b]];
+            }
+        }
+    }
+
+    private ReedSolomon() {
+    }
+
+    private static int mul(int a, int b) {
+        return MUL[a][b] & 0xFF;
+    }
+
+    private static int inverse(int a) {
+        return EXP[255 - LOG[a]];
+    }
+
+    /**
+     * @return The coefficient of data chunk j in parity chunk i.
+     */
+    private static int parityCoefficient(int numDataChunks, int i, int j) {
+        return inverse((numDataChunks + i) ^ j);
+    }
+
+    /**
+     * Adds coefficient * source to target.
+     */
+    private static void mulAdd(int coefficient, byte[] source, int offset, int length, byte[] target) {
+        if (coefficient == 0) {
+            return;
+        }
+        final byte[] row = MUL[coefficient];
+        for (int p = 0; p < length; p++) {
+            target[p] ^= row[source[offset + p] & 0xFF];
+        }
+    }
+
+    /**
+     * Calculates a single parity chunk.
+     *
+     * @param data         The array that contains all data chunks.
+     * @param offsets      The offset of each data chunk in data.
+     * @param lengths      The length of each data chunk.
+     * @param parityIndex  The index of the parity chunk, from 0 to m - 1.
+     * @param parityLength The length of the parity chunk. This must be at least the length of each data chunk.
+     */
+    static byte[] encodeParity(byte[] data, int[] offsets, int[] lengths, int parityIndex, int parityLength) {
+        int numDataChunks = offsets.length;
+        byte[] parity = new byte[parityLength];
+        for (int j = 0; j < numDataChunks; j++) {
+            mulAdd(parityCoefficient(numDataChunks, parityIndex, j), data, offsets[j], lengths[j], parity);
+        }
+        return parity;
+    }
+
+    /**
+     * Recovers missing data chunks.
+     *
+     * @param chunks        The data chunks followed by the parity chunks. Missing chunks are null.
+     *                      Missing data chunks are set when this method returns.
+     * @param numDataChunks k
+     * @param dataLengths   The length of each data chunk.
+     * @throws IllegalArgumentException If fewer than k chunks are present.
+     */
+    static void decode(byte[][] chunks, int numDataChunks, int[] dataLengths) {
+        // Select the rows of the encoding matrix for k present chunks, preferring data chunks.
+        int[] rows = new int[numDataChunks];
+        int numRows = 0;
+        for (int r = 0; r < chunks.length && numRows < numDataChunks; r++) {
+            if (chunks[r] != null) {
+                rows[numRows++] = r;
+            }
+        }
+        if (numRows < numDataChunks) {
+            throw new IllegalArgumentException("Only " + numRows + " of " + numDataChunks + " required chunks are present");
+        }
+        if (rows[numDataChunks - 1] == numDataChunks - 1) {
+            // All data chunks are present.
+            return;
+        }
+
+        // Invert the k x k submatrix of the encoding matrix using Gauss-Jordan elimination.
+        int[][] matrix = new int[numDataChunks][numDataChunks];
+        int[][] inverse = new int[numDataChunks][numDataChunks];
+        for (int i = 0; i < numDataChunks; i++) {
+            int r = rows[i];
+            for (int j = 0; j < numDataChunks; j++) {
+                matrix[i][j] = r < numDataChunks ? (r == j ? 1 : 0) : parityCoefficient(numDataChunks, r - numDataChunks, j);
+            }
+            inverse[i][i] = 1;
+        }
+        for (int col = 0; col < numDataChunks; col++) {
+            int pivot = col;
+            while (matrix[pivot][col] == 0) {
+                pivot++;
+            }
+            int[] tmp = matrix[pivot]; matrix[pivot] = matrix[col]; matrix[col] = tmp;
+            tmp = inverse[pivot]; inverse[pivot] = inverse[col]; inverse[col] = tmp;
+            int scale = inverse(matrix[col][col]);
+            for (int j = 0; j < numDataChunks; j++) {
+                matrix[col][j] = mul(matrix[col][j], scale);
+                inverse[col][j] = mul(inverse[col][j], scale);
+            }
+            for (int i = 0; i < numDataChunks; i++) {
+                int factor = matrix[i][col];
+                if (i != col && factor != 0) {
+                    for (int j = 0; j < numDataChunks; j++) {
+                        matrix[i][j] ^= mul(factor, matrix[col][j]);
+                        inverse[i][j] ^= mul(factor, inverse[col][j]);
+                    }
+                }
+            }
+        }
+
+        // Data chunk j is the sum of inverse[j][i] * chunks[rows[i]].
+        for (int j = 0; j < numDataChunks; j++) {
+            if (chunks[j] == null) {
+                byte[] recovered = new byte[dataLengths[j]];
+                for (int i = 0; i < numDataChunks; i++) {
+                    byte[] source = chunks[rows[i]];
+                    mulAdd(inverse[j][i], source, 0, Math.min(source.length, recovered.length), recovered);
+                }
+                chunks[j] = recovered;
+            }
+        }
+    }
+}
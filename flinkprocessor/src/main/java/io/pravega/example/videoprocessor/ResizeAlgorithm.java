@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+/**
+ * Algorithms that can be used by ImageResizer.
+ */
+public enum ResizeAlgorithm {
+    // Nearest neighbor. Fastest but aliases when downscaling.
+    NEAREST,
+    // Bilinear interpolation. Large reductions are first reduced with a box filter.
+    BILINEAR,
+    // Area-average box filter. This gives nearly the same result as SMOOTH.
+    AREA_AVERAGE,
+    // Separable Lanczos filter with 3 lobes. Large reductions are first reduced with a box filter.
+    LANCZOS,
+    // Image.getScaledInstance with SCALE_SMOOTH. This is much slower than the other algorithms.
+    SMOOTH
+}
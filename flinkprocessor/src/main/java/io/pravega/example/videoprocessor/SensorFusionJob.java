@@ -12,7 +12,6 @@ package io.pravega.example.videoprocessor;
 
 import io.pravega.client.stream.StreamCut;
 import io.pravega.connectors.flink.FlinkPravegaReader;
-import io.pravega.example.flinkprocessor.AbstractJob;
 import io.pravega.example.flinkprocessor.JsonDeserializationSchema;
 import io.pravega.example.video.ChunkedVideoFrame;
 import io.pravega.example.video.SensorReading;
@@ -21,7 +20,6 @@ import org.apache.flink.api.common.functions.JoinFunction;
 import org.apache.flink.api.java.functions.KeySelector;
 import org.apache.flink.streaming.api.datastream.DataStream;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
-import org.apache.flink.streaming.api.functions.timestamps.BoundedOutOfOrdernessTimestampExtractor;
 import org.apache.flink.streaming.api.windowing.assigners.TumblingEventTimeWindows;
 import org.apache.flink.streaming.api.windowing.time.Time;
 import org.slf4j.Logger;
@@ -36,7 +34,7 @@ import java.io.InputStream;
 /**
  * This job demonstrates how to join different data types from different Pravega streams.
  */
-public class SensorFusionJob extends AbstractJob {
+public class SensorFusionJob extends AbstractVideoJob {
     private static Logger log = LoggerFactory.getLogger(SensorFusionJob.class);
 
     /**
@@ -55,11 +53,6 @@ public class SensorFusionJob extends AbstractJob {
         super(config);
     }
 
-    @Override
-    public VideoAppConfiguration getConfig() {
-        return (VideoAppConfiguration) super.getConfig();
-    }
-
     public void run() {
         try {
             final String jobName = SensorFusionJob.class.getName();
@@ -85,27 +78,8 @@ public class SensorFusionJob extends AbstractJob {
                     .uid("input-source")
                     .name("input-source");
 
-            // Assign timestamps and watermarks based on timestamp in each chunk.
-            DataStream<ChunkedVideoFrame> inChunkedVideoFramesWithTimestamps = inChunkedVideoFrames
-                    .assignTimestampsAndWatermarks(
-                            new BoundedOutOfOrdernessTimestampExtractor<ChunkedVideoFrame>(
-                                    Time.milliseconds(getConfig().getMaxOutOfOrdernessMs())) {
-                                @Override
-                                public long extractTimestamp(ChunkedVideoFrame element) {
-                                    return element.timestamp.getTime();
-                                }
-                            })
-                    .uid("assignTimestampsAndWatermarks")
-                    .name("assignTimestampsAndWatermarks");
-
-            // Reassemble whole video frames from chunks.
-            boolean failOnError = false;
-            DataStream<VideoFrame> videoFrames = inChunkedVideoFramesWithTimestamps
-                    .keyBy("camera")
-                    .window(new ChunkedVideoFrameWindowAssigner())
-                    .process(new ChunkedVideoFrameReassembler().withFailOnError(failOnError))
-                    .uid("ChunkedVideoFrameReassembler")
-                    .name("ChunkedVideoFrameReassembler");
+            // Assign timestamps and reassemble whole video frames from chunks.
+            DataStream<VideoFrame> videoFrames = reassembleVideoFrames(inChunkedVideoFrames);
             videoFrames.printToErr().uid("videoFrames-print").name("videoFrames-print");
 
             //
@@ -130,14 +104,19 @@ public class SensorFusionJob extends AbstractJob {
 
             // Assign timestamps and watermarks based on timestamp in each chunk.
             DataStream<SensorReading> inSensorReadingsWithTimestamps = inSensorReadings
-                    .assignTimestampsAndWatermarks(
-                            new BoundedOutOfOrdernessTimestampExtractor<SensorReading>(
-                                    Time.milliseconds(getConfig().getMaxOutOfOrdernessMs())) {
+                    .assignTimestampsAndWatermarks(withWatermarkDelay(
+                            new IdleAwareWatermarkAssigner<SensorReading>(
+                                    getConfig().getMaxOutOfOrdernessMs(), getConfig().getIdleTimeoutMs()) {
                                 @Override
                                 public long extractTimestamp(SensorReading element) {
                                     return element.timestamp.getTime();
                                 }
-                            })
+
+                                @Override
+                                public int extractCamera(SensorReading element) {
+                                    return element.camera;
+                                }
+                            }))
                     .uid("assignTimestampsAndWatermarksSensor")
                     .name("assignTimestampsAndWatermarksSensor");
             inSensorReadingsWithTimestamps.printToErr().uid("inSensorReadingsWithTimestamps-print").name("inSensorReadingsWithTimestamps-print");
@@ -11,9 +11,17 @@
 package io.pravega.example.videoprocessor;
 
 import io.pravega.example.flinkprocessor.AppConfiguration;
+import io.pravega.example.video.HashAlgorithm;
+import io.pravega.example.video.ImageFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * A configuration class used for all video jobs in this project.
  * This class can be extended for job-specific configuration parameters.
@@ -28,6 +36,26 @@ public class VideoAppConfiguration extends AppConfiguration {
     private final double framesPerSec;
     private final boolean writeToPravega;
     private final boolean useCachedFrame;
+    private final boolean useFastGenerator;
+    private final long generatorSeed;
+    private final int generatorPoolSize;
+    private final boolean useBinaryEncoding;
+    private final ReassemblyMode reassemblyMode;
+    private final HashAlgorithm hashAlgorithm;
+    private final boolean useChunkHash;
+    private final int parityChunks;
+    private final long maxInFlightBytesPerCamera;
+    private final long maxInFlightBytes;
+    private final ResizeAlgorithm resizeAlgorithm;
+    private final boolean decodeSubsampling;
+    private final Map<Integer, Rectangle> cameraRegions;
+    private final int gridThreads;
+    private final int gridPartitions;
+    private final int gridEncoderParallelism;
+    private final List<Integer> gridCameras;
+    private final long maxTileAgeMs;
+    private final ImageCodecOptions imageCodecOptions;
+    private final ImageFormat outputImageFormat;
     private final StreamConfig sensorStreamConfig;
 
     public VideoAppConfiguration(String[] args) {
@@ -39,6 +67,30 @@ public class VideoAppConfiguration extends AppConfiguration {
         framesPerSec = getParams().getDouble("framesPerSec", 1.0);
         writeToPravega = getParams().getBoolean("writeToPravega", true);
         useCachedFrame = getParams().getBoolean("useCachedFrame", false);
+        useFastGenerator = getParams().getBoolean("useFastGenerator", false);
+        generatorSeed = getParams().getLong("generatorSeed", 0);
+        generatorPoolSize = getParams().getInt("generatorPoolSize", 8);
+        useBinaryEncoding = getParams().getBoolean("useBinaryEncoding", false);
+        reassemblyMode = ReassemblyMode.valueOf(getParams().get("reassemblyMode", ReassemblyMode.WINDOW.name()).toUpperCase());
+        hashAlgorithm = HashAlgorithm.valueOf(getParams().get("hashAlgorithm", HashAlgorithm.XXHASH64.name()).toUpperCase());
+        useChunkHash = getParams().getBoolean("useChunkHash", true);
+        parityChunks = getParams().getInt("parityChunks", 0);
+        maxInFlightBytesPerCamera = getParams().getLong("maxInFlightBytesPerCamera", 64*1024*1024);
+        maxInFlightBytes = getParams().getLong("maxInFlightBytes", 256*1024*1024);
+        resizeAlgorithm = ResizeAlgorithm.valueOf(getParams().get("resizeAlgorithm", ResizeAlgorithm.AREA_AVERAGE.name()).toUpperCase());
+        decodeSubsampling = getParams().getBoolean("decodeSubsampling", true);
+        cameraRegions = parseCameraRegions(getParams().get("cameraRegions", ""));
+        gridThreads = getParams().getInt("gridThreads", 1);
+        gridPartitions = getParams().getInt("gridPartitions", getParallelism());
+        gridEncoderParallelism = getParams().getInt("gridEncoderParallelism", getParallelism());
+        gridCameras = parseCameras(getParams().get("gridCameras", ""));
+        maxTileAgeMs = getParams().getLong("maxTileAgeMs", 0);
+        imageCodecOptions = new ImageCodecOptions()
+                .withBackend(ImageCodecOptions.Backend.valueOf(getParams().get("imageCodec", ImageCodecOptions.Backend.IMAGEIO.name()).toUpperCase()))
+                .withPngCompressionLevel(getParams().getInt("pngCompressionLevel", 1))
+                .withPngFilter(PngEncoder.Filter.valueOf(getParams().get("pngFilter", PngEncoder.Filter.UP.name()).toUpperCase()))
+                .withJpegQuality(getParams().getInt("jpegQuality", 90));
+        outputImageFormat = ImageFormat.valueOf(getParams().get("outputImageFormat", ImageFormat.PNG.name()).toUpperCase());
         sensorStreamConfig = new StreamConfig(getPravegaConfig(),"sensor-",  getParams());
     }
 
@@ -53,6 +105,26 @@ public class VideoAppConfiguration extends AppConfiguration {
                 ", framesPerSec=" + framesPerSec +
                 ", writeToPravega=" + writeToPravega +
                 ", useCachedFrame=" + useCachedFrame +
+                ", useFastGenerator=" + useFastGenerator +
+                ", generatorSeed=" + generatorSeed +
+                ", generatorPoolSize=" + generatorPoolSize +
+                ", useBinaryEncoding=" + useBinaryEncoding +
+                ", reassemblyMode=" + reassemblyMode +
+                ", hashAlgorithm=" + hashAlgorithm +
+                ", useChunkHash=" + useChunkHash +
+                ", parityChunks=" + parityChunks +
+                ", maxInFlightBytesPerCamera=" + maxInFlightBytesPerCamera +
+                ", maxInFlightBytes=" + maxInFlightBytes +
+                ", resizeAlgorithm=" + resizeAlgorithm +
+                ", decodeSubsampling=" + decodeSubsampling +
+                ", cameraRegions=" + cameraRegions +
+                ", gridThreads=" + gridThreads +
+                ", gridPartitions=" + gridPartitions +
+                ", gridEncoderParallelism=" + gridEncoderParallelism +
+                ", gridCameras=" + gridCameras +
+                ", maxTileAgeMs=" + maxTileAgeMs +
+                ", imageCodecOptions=" + imageCodecOptions +
+                ", outputImageFormat=" + outputImageFormat +
                 ", sensorStreamConfig=" + sensorStreamConfig +
                 '}';
     }
@@ -85,7 +157,139 @@ public class VideoAppConfiguration extends AppConfiguration {
         return useCachedFrame;
     }
 
+    public boolean isUseFastGenerator() {
+        return useFastGenerator;
+    }
+
+    public long getGeneratorSeed() {
+        return generatorSeed;
+    }
+
+    public int getGeneratorPoolSize() {
+        return generatorPoolSize;
+    }
+
+    public boolean isUseBinaryEncoding() {
+        return useBinaryEncoding;
+    }
+
+    public ReassemblyMode getReassemblyMode() {
+        return reassemblyMode;
+    }
+
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public boolean isUseChunkHash() {
+        return useChunkHash;
+    }
+
+    public int getParityChunks() {
+        return parityChunks;
+    }
+
+    public long getMaxInFlightBytesPerCamera() {
+        return maxInFlightBytesPerCamera;
+    }
+
+    public long getMaxInFlightBytes() {
+        return maxInFlightBytes;
+    }
+
+    public ResizeAlgorithm getResizeAlgorithm() {
+        return resizeAlgorithm;
+    }
+
+    public boolean isDecodeSubsampling() {
+        return decodeSubsampling;
+    }
+
+    public Map<Integer, Rectangle> getCameraRegions() {
+        return cameraRegions;
+    }
+
+    public int getGridThreads() {
+        return gridThreads;
+    }
+
+    public int getGridPartitions() {
+        return gridPartitions;
+    }
+
+    public int getGridEncoderParallelism() {
+        return gridEncoderParallelism;
+    }
+
+    public List<Integer> getGridCameras() {
+        return gridCameras;
+    }
+
+    public long getMaxTileAgeMs() {
+        return maxTileAgeMs;
+    }
+
+    public ImageCodecOptions getImageCodecOptions() {
+        return imageCodecOptions;
+    }
+
+    public ImageFormat getOutputImageFormat() {
+        return outputImageFormat;
+    }
+
     public StreamConfig getSensorStreamConfig() {
         return sensorStreamConfig;
     }
+
+    /**
+     * Parses a list of camera regions such as "0:100,50,640,480;3:0,0,320,240".
+     * Each region is camera:x,y,width,height in source pixels.
+     */
+    static Map<Integer, Rectangle> parseCameraRegions(String spec) {
+        Map<Integer, Rectangle> regions = new HashMap<>();
+        for (String item : spec.split(";")) {
+            if (item.trim().isEmpty()) {
+                continue;
+            }
+            String[] cameraAndRegion = item.split(":");
+            String[] values = cameraAndRegion.length == 2 ? cameraAndRegion[1].split(",") : new String[0];
+            if (values.length != 4) {
+                throw new IllegalArgumentException("Invalid camera region '" + item + "'; expected camera:x,y,width,height");
+            }
+            regions.put(Integer.parseInt(cameraAndRegion[0].trim()), new Rectangle(
+                    Integer.parseInt(values[0].trim()), Integer.parseInt(values[1].trim()),
+                    Integer.parseInt(values[2].trim()), Integer.parseInt(values[3].trim())));
+        }
+        return regions;
+    }
+
+    /**
+     * Parses a list of cameras such as "0,1,2,5".
+     */
+    static List<Integer> parseCameras(String spec) {
+        List<Integer> cameras = new ArrayList<>();
+        for (String item : spec.split(",")) {
+            if (item.trim().isEmpty()) {
+                continue;
+            }
+            int camera = Integer.parseInt(item.trim());
+            if (cameras.contains(camera)) {
+                throw new IllegalArgumentException("Duplicate camera " + camera + " in '" + spec + "'");
+            }
+            cameras.add(camera);
+        }
+        return cameras;
+    }
+
+    /**
+     * Determines how chunks are reassembled into video frames.
+     */
+    public enum ReassemblyMode {
+        // Shuffle chunks by camera and use a window per frame. This is compatible with savepoints from earlier versions.
+        WINDOW,
+        // Reassemble in the source task without a shuffle. This requires the writer to route events by camera.
+        SOURCE,
+        // Shuffle chunks by camera and reassemble with a KeyedProcessFunction. This avoids a window for each frame.
+        KEYED,
+    }
 }
@@ -96,33 +96,23 @@ public class VideoDataGeneratorJob extends AbstractJob {
             // Generate images in parallel.
             final int width = getConfig().getImageWidth();
             final int height = width;
-            final boolean isUseCachedFrame = getConfig().isUseCachedFrame();
-            VideoFrame cachedFrame = new VideoFrame();
-            if (isUseCachedFrame) {
-                cachedFrame.data = new ImageGenerator(width, height).generate(0, 0);
-                cachedFrame.hash = cachedFrame.calculateHash();
-            }
-            final byte[] cachedFrameData = cachedFrame.data;
-            final byte[] cachedFrameHash = cachedFrame.hash;
             DataStream<VideoFrame> videoFrames = emptyVideoFrames
-                    .keyBy("camera")
-                    .map((frame) -> {
-                        if (isUseCachedFrame) {
-                            frame.data = cachedFrameData;
-                            frame.hash = cachedFrameHash;
-                        } else {
-                            frame.data = new ImageGenerator(width, height).generate(frame.camera, frame.frameNumber);
-                            frame.hash = frame.calculateHash();
-                        }
-                        return frame;
-                    })
+                    .keyBy(frame -> frame.camera)
+                    .map(new VideoFrameGenerator(width, height, getConfig().getHashAlgorithm())
+                            .withCodec(getConfig().getImageCodecOptions())
+                            .withImageFormat(getConfig().getOutputImageFormat())
+                            .withCachedFrame(getConfig().isUseCachedFrame())
+                            .withFastGenerator(getConfig().isUseFastGenerator(), getConfig().getGeneratorSeed(),
+                                    getConfig().getGeneratorPoolSize()))
                     .uid("videoFrames")
                     .name("videoFrames");
 //            videoFrames.printToErr().uid("videoFrames-print").name("videoFrames-print");
 
             // Split video frames into chunks of 1 MB or less. We must account for base-64 encoding, header fields, and JSON. Use 0.5 MB to be safe.
             DataStream<ChunkedVideoFrame> chunkedVideoFrames = videoFrames
-                    .flatMap(new VideoFrameChunker(getConfig().getChunkSizeBytes()))
+                    .flatMap(new VideoFrameChunker(getConfig().getChunkSizeBytes())
+                            .withChunkHash(getConfig().isUseChunkHash())
+                            .withParityChunks(getConfig().getParityChunks()))
                     .uid("VideoFrameChunker")
                     .name("VideoFrameChunker");
 
@@ -136,12 +126,12 @@ public class VideoDataGeneratorJob extends AbstractJob {
                     .filter(f -> f.camera == 0 && f.frameNumber % 10 == 0)
                     .printToErr().uid("chunkedVideoFrames-print").name("chunkedVideoFrames-print");
 
-            // Write chunks to Pravega encoded as JSON.
+            // Write chunks to Pravega encoded as JSON or binary.
             if (getConfig().isWriteToPravega()) {
                 FlinkPravegaWriter<ChunkedVideoFrame> sink = FlinkPravegaWriter.<ChunkedVideoFrame>builder()
                         .withPravegaConfig(getConfig().getPravegaConfig())
                         .forStream(getConfig().getOutputStreamConfig().getStream())
-                        .withSerializationSchema(new ChunkedVideoFrameSerializationSchema())
+                        .withSerializationSchema(new ChunkedVideoFrameSerializationSchema(getConfig().isUseBinaryEncoding()))
                         .withEventRouter(frame -> String.format("%d", frame.camera))
                         .withWriterMode(PravegaWriterMode.ATLEAST_ONCE)
                         .build();
@@ -15,16 +15,21 @@ import io.pravega.example.video.VideoFrame;
 import org.apache.flink.api.common.functions.FlatMapFunction;
 import org.apache.flink.util.Collector;
 
-import java.util.Arrays;
-
 import static java.lang.Math.min;
 
 /**
  * A FlatMapFunction to create ChunkedVideoFrame instances from a VideoFrame.
  * The chunk size must account for base-64 encoding, header fields, and JSON.
+ * Chunks are slices of the input frame data and are not copied.
+ * If enabled, each chunk of a frame with more than one chunk includes a chunk hash so that it can be
+ * validated as it arrives. A frame with a single chunk is validated with the frame hash.
+ * If parity chunks are enabled, each frame is followed by Reed-Solomon parity chunks so that
+ * the frame can be reassembled even if up to that many of its chunks are lost.
  */
 class VideoFrameChunker implements FlatMapFunction<VideoFrame, ChunkedVideoFrame> {
     private final int chunkSizeBytes;
+    private boolean chunkHash = false;
+    private int numParityChunks = 0;
 
     public VideoFrameChunker() {
         this.chunkSizeBytes = 512*1024;
@@ -34,15 +39,55 @@ class VideoFrameChunker implements FlatMapFunction<VideoFrame, ChunkedVideoFrame
         this.chunkSizeBytes = chunkSizeBytes;
     }
 
+    /**
+     * @param chunkHash If true, calculate ChunkedVideoFrame.chunkHash for frames with more than one chunk.
+     */
+    public VideoFrameChunker withChunkHash(boolean chunkHash) {
+        this.chunkHash = chunkHash;
+        return this;
+    }
+
+    /**
+     * @param numParityChunks The number of parity chunks to add to each frame.
+     *                        The storage overhead is this many chunks per frame.
+     */
+    public VideoFrameChunker withParityChunks(int numParityChunks) {
+        this.numParityChunks = numParityChunks;
+        return this;
+    }
+
     @Override
     public void flatMap(VideoFrame in, Collector<ChunkedVideoFrame> out) {
         int numChunks = (in.data.length - 1) / chunkSizeBytes + 1;
+        // Frames with too many chunks for the Reed-Solomon code are written without parity chunks.
+        int numParity = numChunks + numParityChunks <= ReedSolomon.MAX_CHUNKS ? numParityChunks : 0;
+        int[] offsets = new int[numChunks];
+        int[] lengths = new int[numChunks];
         for (int chunkIndex = 0 ; chunkIndex < numChunks ; chunkIndex++) {
             ChunkedVideoFrame frame = new ChunkedVideoFrame(in);
-            frame.data = Arrays.copyOfRange(frame.data, chunkIndex * chunkSizeBytes, min((chunkIndex + 1) * chunkSizeBytes, in.data.length));
-            frame.chunkIndex = (short) chunkIndex;
-            frame.finalChunkIndex = (short) (numChunks - 1);
-        out.collect(frame);
+            offsets[chunkIndex] = chunkIndex * chunkSizeBytes;
+            lengths[chunkIndex] = min(chunkSizeBytes, in.data.length - offsets[chunkIndex]);
+            frame.setDataSlice(in.data, offsets[chunkIndex], lengths[chunkIndex]);
+            collectChunk(frame, chunkIndex, numChunks, numParity, in.data.length, out);
         }
+        for (int parityIndex = 0; parityIndex < numParity; parityIndex++) {
+            ChunkedVideoFrame frame = new ChunkedVideoFrame(in);
+            frame.data = ReedSolomon.encodeParity(in.data, offsets, lengths, parityIndex, lengths[0]);
+            collectChunk(frame, numChunks + parityIndex, numChunks, numParity, in.data.length, out);
+        }
+    }
+
+    private void collectChunk(ChunkedVideoFrame frame, int chunkIndex, int numChunks, int numParity, int frameSize,
+                              Collector<ChunkedVideoFrame> out) {
+        frame.chunkIndex = (short) chunkIndex;
+        frame.finalChunkIndex = (short) (numChunks - 1);
+        if (numParity > 0) {
+            frame.numParityChunks = (short) numParity;
+            frame.frameSize = frameSize;
+        }
+        if (chunkHash && numChunks + numParity > 1) {
+            frame.chunkHash = frame.calculateChunkHash();
+        }
+        out.collect(frame);
     }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.HashAlgorithm;
+import io.pravega.example.video.ImageFormat;
+import io.pravega.example.video.RawVideoFrame;
+import io.pravega.example.video.VideoFrame;
+import org.apache.flink.api.common.functions.RichMapFunction;
+import org.apache.flink.configuration.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A MapFunction that encodes raw video frames and calculates their hash.
+ * This allows frames from an operator with a parallelism of 1 to be encoded in parallel.
+ * The order of the output frames can then be restored with VideoFrameReorderer.
+ */
+public class VideoFrameEncoder extends RichMapFunction<RawVideoFrame, VideoFrame> {
+    private final HashAlgorithm hashAlgorithm;
+    private ImageCodecOptions codecOptions = new ImageCodecOptions();
+    private ImageFormat imageFormat = ImageFormat.PNG;
+    private int numThreads = 1;
+
+    private transient ExecutorService executor;
+    private transient ImageCodec codec;
+
+    public VideoFrameEncoder(HashAlgorithm hashAlgorithm) {
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
+    public VideoFrameEncoder withCodec(ImageCodecOptions codecOptions) {
+        this.codecOptions = codecOptions;
+        return this;
+    }
+
+    public VideoFrameEncoder withImageFormat(ImageFormat imageFormat) {
+        this.imageFormat = imageFormat;
+        return this;
+    }
+
+    /**
+     * @param numThreads The number of threads used to compress stripes of each PNG image.
+     *                   If 1, images are compressed by the task thread.
+     */
+    public VideoFrameEncoder withThreads(int numThreads) {
+        this.numThreads = numThreads;
+        return this;
+    }
+
+    @Override
+    public void open(Configuration parameters) {
+        if (numThreads > 1) {
+            executor = Executors.newFixedThreadPool(numThreads);
+        }
+        codec = codecOptions.createCodec(executor);
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    @Override
+    public VideoFrame map(RawVideoFrame image) {
+        VideoFrame frame = new VideoFrame(image);
+        frame.data = codec.encode(image, imageFormat.getFormatName());
+        frame.imageFormat = imageFormat;
+        frame.updateHash(hashAlgorithm);
+        return frame;
+    }
+}
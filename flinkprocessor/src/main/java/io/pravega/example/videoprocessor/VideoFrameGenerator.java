@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.HashAlgorithm;
+import io.pravega.example.video.ImageFormat;
+import io.pravega.example.video.VideoFrame;
+import org.apache.flink.api.common.functions.RichMapFunction;
+import org.apache.flink.configuration.Configuration;
+
+/**
+ * A MapFunction that sets the image of empty video frames.
+ * The generator is created once for each parallel instance.
+ */
+public class VideoFrameGenerator extends RichMapFunction<VideoFrame, VideoFrame> {
+    private final int width;
+    private final int height;
+    private final HashAlgorithm hashAlgorithm;
+    private ImageCodecOptions codecOptions = new ImageCodecOptions();
+    private ImageFormat imageFormat = ImageFormat.PNG;
+    private boolean cachedFrame = false;
+    private boolean fastGenerator = false;
+    private long seed = 0;
+    private int poolSize = 8;
+
+    private transient ImageGenerator generator;
+    private transient byte[] cachedData;
+    private transient byte[] cachedHash;
+
+    public VideoFrameGenerator(int width, int height, HashAlgorithm hashAlgorithm) {
+        this.width = width;
+        this.height = height;
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
+    public VideoFrameGenerator withCodec(ImageCodecOptions codecOptions) {
+        this.codecOptions = codecOptions;
+        return this;
+    }
+
+    public VideoFrameGenerator withImageFormat(ImageFormat imageFormat) {
+        this.imageFormat = imageFormat;
+        return this;
+    }
+
+    /**
+     * @param cachedFrame If true, every frame has the same image, which is generated once.
+     */
+    public VideoFrameGenerator withCachedFrame(boolean cachedFrame) {
+        this.cachedFrame = cachedFrame;
+        return this;
+    }
+
+    /**
+     * @param fastGenerator If true, use FastImageGenerator instead of ImageGenerator.
+     * @param seed          The seed of FastImageGenerator.
+     * @param poolSize      The number of backgrounds of FastImageGenerator.
+     */
+    public VideoFrameGenerator withFastGenerator(boolean fastGenerator, long seed, int poolSize) {
+        this.fastGenerator = fastGenerator;
+        this.seed = seed;
+        this.poolSize = poolSize;
+        return this;
+    }
+
+    @Override
+    public void open(Configuration parameters) {
+        if (fastGenerator) {
+            generator = new FastImageGenerator(width, height)
+                    .withSeed(seed)
+                    .withPoolSize(poolSize)
+                    .withCodec(codecOptions.createCodec())
+                    .withImageFormat(imageFormat);
+        } else {
+            generator = new ImageGenerator(width, height)
+                    .withCodec(codecOptions.createCodec())
+                    .withImageFormat(imageFormat);
+        }
+        if (cachedFrame) {
+            VideoFrame frame = new VideoFrame();
+            frame.data = generator.generate(0, 0);
+            frame.updateHash(hashAlgorithm);
+            cachedData = frame.data;
+            cachedHash = frame.hash;
+        }
+    }
+
+    @Override
+    public VideoFrame map(VideoFrame frame) {
+        if (cachedFrame) {
+            frame.data = cachedData;
+            frame.hash = cachedHash;
+            frame.hashAlgorithm = hashAlgorithm;
+        } else {
+            frame.data = generator.generate(frame.camera, frame.frameNumber);
+            frame.updateHash(hashAlgorithm);
+        }
+        frame.imageFormat = imageFormat;
+        return frame;
+    }
+}
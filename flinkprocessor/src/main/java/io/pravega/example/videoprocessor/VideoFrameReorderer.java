@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.VideoFrame;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.streaming.api.functions.KeyedProcessFunction;
+import org.apache.flink.util.Collector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A KeyedProcessFunction that restores the order of video frames that were processed in parallel,
+ * such as the grid frames encoded by VideoFrameEncoder.
+ * Frames are buffered in map state by frameNumber until the watermark passes their timestamp.
+ * Because the watermark of this operator is the minimum of the watermarks of all parallel input tasks,
+ * all earlier frames have then been received, and the buffered frames are emitted in timestamp order.
+ * Frames with the same timestamp are emitted in frameNumber order. The timestamp comes first because
+ * frame numbers are not monotonic; for example, the grid renderer restarts them at 0 when it restarts.
+ * The buffer holds about one frame for each parallel input task.
+ *
+ * Frame numbers do not need to be contiguous, so this does not wait for a frame that will never arrive.
+ * To order all frames, the input must be keyed by a constant and this operator must have a parallelism of 1.
+ */
+public class VideoFrameReorderer extends KeyedProcessFunction<Integer, VideoFrame, VideoFrame> {
+    private static Logger log = LoggerFactory.getLogger(VideoFrameReorderer.class);
+
+    private transient MapState<Integer, VideoFrame> bufferedFrames;
+
+    @Override
+    public void open(Configuration parameters) {
+        bufferedFrames = getRuntimeContext().getMapState(new MapStateDescriptor<>(
+                "bufferedFrames", IntSerializer.INSTANCE, new VideoFrameTypeInfo.Serializer()));
+    }
+
+    @Override
+    public void processElement(VideoFrame frame, Context ctx, Collector<VideoFrame> out) throws Exception {
+        bufferedFrames.put(frame.frameNumber, frame);
+        ctx.timerService().registerEventTimeTimer(frame.timestamp.getTime());
+    }
+
+    /**
+     * Emits all frames that the watermark has passed.
+     */
+    @Override
+    public void onTimer(long timestamp, OnTimerContext ctx, Collector<VideoFrame> out) throws Exception {
+        List<VideoFrame> frames = release(bufferedFrames.values(), timestamp);
+        for (VideoFrame frame : frames) {
+            log.trace("onTimer: frame={}", frame);
+            bufferedFrames.remove(frame.frameNumber);
+            out.collect(frame);
+        }
+    }
+
+    /**
+     * @return The frames with a timestamp at or before timestamp, in timestamp and then frameNumber order.
+     */
+    static List<VideoFrame> release(Iterable<VideoFrame> frames, long timestamp) {
+        List<VideoFrame> released = new ArrayList<>();
+        for (VideoFrame frame : frames) {
+            if (frame.timestamp.getTime() <= timestamp) {
+                released.add(frame);
+            }
+        }
+        released.sort(Comparator.<VideoFrame>comparingLong(frame -> frame.timestamp.getTime())
+                .thenComparingInt(frame -> frame.frameNumber));
+        return released;
+    }
+}
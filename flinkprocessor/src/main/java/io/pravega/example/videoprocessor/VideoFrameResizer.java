@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.RawVideoFrame;
+import io.pravega.example.video.VideoFrame;
+import org.apache.flink.api.common.functions.RichMapFunction;
+import org.apache.flink.configuration.Configuration;
+
+import java.awt.*;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A MapFunction that decodes and resizes video frames.
+ * The ImageResizer is created once for each parallel instance so that its reader and buffers are reused.
+ */
+public class VideoFrameResizer extends RichMapFunction<VideoFrame, RawVideoFrame> {
+    private final int outputWidth;
+    private final int outputHeight;
+    private final ResizeAlgorithm algorithm;
+    private boolean decodeSubsampling = false;
+    private Map<Integer, Rectangle> cameraRegions = Collections.emptyMap();
+    private ImageCodecOptions codecOptions = new ImageCodecOptions();
+
+    private transient ImageResizer resizer;
+
+    public VideoFrameResizer(int outputWidth, int outputHeight, ResizeAlgorithm algorithm) {
+        this.outputWidth = outputWidth;
+        this.outputHeight = outputHeight;
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * @see ImageResizer#withDecodeSubsampling(boolean)
+     */
+    public VideoFrameResizer withDecodeSubsampling(boolean decodeSubsampling) {
+        this.decodeSubsampling = decodeSubsampling;
+        return this;
+    }
+
+    /**
+     * @see ImageResizer#withCameraRegions(Map)
+     */
+    public VideoFrameResizer withCameraRegions(Map<Integer, Rectangle> cameraRegions) {
+        this.cameraRegions = cameraRegions;
+        return this;
+    }
+
+    public VideoFrameResizer withCodec(ImageCodecOptions codecOptions) {
+        this.codecOptions = codecOptions;
+        return this;
+    }
+
+    @Override
+    public void open(Configuration parameters) {
+        resizer = new ImageResizer(outputWidth, outputHeight)
+                .withAlgorithm(algorithm)
+                .withCodec(codecOptions.createCodec())
+                .withDecodeSubsampling(decodeSubsampling)
+                .withCameraRegions(cameraRegions);
+    }
+
+    @Override
+    public RawVideoFrame map(VideoFrame frame) {
+        return resizer.decodeAndResize(frame);
+    }
+}
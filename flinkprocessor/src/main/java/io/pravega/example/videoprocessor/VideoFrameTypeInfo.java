@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.HashAlgorithm;
+import io.pravega.example.video.ImageFormat;
+import io.pravega.example.video.VideoFrame;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeinfo.TypeInfoFactory;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.TypeSerializerSingleton;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TypeInformation for VideoFrame.
+ * Without this, Flink would use the POJO serializer with Kryo for the tags field.
+ * Because this is not a composite type, streams of VideoFrame must be keyed with a KeySelector
+ * instead of a field expression.
+ */
+public class VideoFrameTypeInfo extends TypeInformation<VideoFrame> {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public boolean isBasicType() {
+        return false;
+    }
+
+    @Override
+    public boolean isTupleType() {
+        return false;
+    }
+
+    @Override
+    public int getArity() {
+        return 1;
+    }
+
+    @Override
+    public int getTotalFields() {
+        return 1;
+    }
+
+    @Override
+    public Class<VideoFrame> getTypeClass() {
+        return VideoFrame.class;
+    }
+
+    @Override
+    public boolean isKeyType() {
+        return false;
+    }
+
+    @Override
+    public TypeSerializer<VideoFrame> createSerializer(ExecutionConfig config) {
+        return new Serializer();
+    }
+
+    @Override
+    public String toString() {
+        return "VideoFrameTypeInfo";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof VideoFrameTypeInfo && ((VideoFrameTypeInfo) obj).canEqual(this);
+    }
+
+    @Override
+    public int hashCode() {
+        return VideoFrameTypeInfo.class.hashCode();
+    }
+
+    @Override
+    public boolean canEqual(Object obj) {
+        return obj instanceof VideoFrameTypeInfo;
+    }
+
+    /**
+     * Registered with the TypeExtractor by AbstractJob.
+     */
+    public static class Factory extends TypeInfoFactory<VideoFrame> {
+        @Override
+        public TypeInformation<VideoFrame> createTypeInfo(Type t, Map<String, TypeInformation<?>> genericParameters) {
+            return new VideoFrameTypeInfo();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Serializer
+    // ------------------------------------------------------------------------
+
+    /**
+     * The serializer used to write the VideoFrame type.
+     * Copies share the data array with the original because this project never modifies frame data in place.
+     * This avoids copying entire images between chained operators.
+     */
+    public static class Serializer extends TypeSerializerSingleton<VideoFrame> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean isImmutableType() {
+            return false;
+        }
+
+        @Override
+        public VideoFrame createInstance() {
+            return new VideoFrame();
+        }
+
+        @Override
+        public VideoFrame copy(VideoFrame from) {
+            VideoFrame to = new VideoFrame();
+            copyFields(from, to);
+            return to;
+        }
+
+        @Override
+        public VideoFrame copy(VideoFrame from, VideoFrame reuse) {
+            return copy(from);
+        }
+
+        @Override
+        public int getLength() {
+            return -1;
+        }
+
+        @Override
+        public void serialize(VideoFrame record, DataOutputView target) throws IOException {
+            serializeFields(record, target);
+        }
+
+        @Override
+        public VideoFrame deserialize(DataInputView source) throws IOException {
+            VideoFrame frame = new VideoFrame();
+            deserializeFields(frame, source);
+            return frame;
+        }
+
+        @Override
+        public VideoFrame deserialize(VideoFrame reuse, DataInputView source) throws IOException {
+            return deserialize(source);
+        }
+
+        @Override
+        public void copy(DataInputView source, DataOutputView target) throws IOException {
+            copyFields(source, target);
+        }
+
+        @Override
+        public boolean canEqual(Object obj) {
+            return obj instanceof VideoFrameTypeInfo.Serializer;
+        }
+
+        // The methods below are shared with ChunkedVideoFrameTypeInfo.Serializer.
+
+        static void copyFields(VideoFrame from, VideoFrame to) {
+            to.camera = from.camera;
+            to.ssrc = from.ssrc;
+            to.timestamp = from.timestamp == null ? null : (Timestamp) from.timestamp.clone();
+            to.frameNumber = from.frameNumber;
+            to.data = from.data;
+            to.imageFormat = from.imageFormat;
+            to.hash = from.hash == null ? null : from.hash.clone();
+            to.hashAlgorithm = from.hashAlgorithm;
+            to.tags = from.tags == null ? null : new HashMap<>(from.tags);
+        }
+
+        static void serializeFields(VideoFrame record, DataOutputView target) throws IOException {
+            serializeFields(record, record.data, 0, record.data == null ? 0 : record.data.length, target);
+        }
+
+        /**
+         * Writes the fields of record, except that the data is written from the specified range of dataArray.
+         */
+        static void serializeFields(VideoFrame record, byte[] dataArray, int dataOffset, int dataLength, DataOutputView target) throws IOException {
+            target.writeInt(record.camera);
+            target.writeInt(record.ssrc);
+            if (record.timestamp == null) {
+                target.writeLong(0);
+                target.writeInt(-1);
+            } else {
+                target.writeLong(record.timestamp.getTime());
+                target.writeInt(record.timestamp.getNanos());
+            }
+            target.writeInt(record.frameNumber);
+            if (dataArray == null) {
+                target.writeInt(-1);
+            } else {
+                target.writeInt(dataLength);
+                target.write(dataArray, dataOffset, dataLength);
+            }
+            writeBytes(record.hash, target);
+            target.writeByte(record.hashAlgorithm == null ? -1 : record.hashAlgorithm.getId());
+            target.writeByte(record.imageFormat == null ? -1 : record.imageFormat.getId());
+            if (record.tags == null) {
+                target.writeInt(-1);
+            } else {
+                target.writeInt(record.tags.size());
+                for (Map.Entry<String, String> entry : record.tags.entrySet()) {
+                    target.writeUTF(entry.getKey());
+                    target.writeUTF(entry.getValue());
+                }
+            }
+        }
+
+        static void deserializeFields(VideoFrame frame, DataInputView source) throws IOException {
+            frame.camera = source.readInt();
+            frame.ssrc = source.readInt();
+            long time = source.readLong();
+            int nanos = source.readInt();
+            if (nanos >= 0) {
+                frame.timestamp = new Timestamp(time);
+                frame.timestamp.setNanos(nanos);
+            }
+            frame.frameNumber = source.readInt();
+            frame.data = readBytes(source);
+            frame.hash = readBytes(source);
+            byte hashAlgorithmId = source.readByte();
+            if (hashAlgorithmId >= 0) {
+                frame.hashAlgorithm = HashAlgorithm.fromId(hashAlgorithmId);
+            }
+            byte imageFormatId = source.readByte();
+            if (imageFormatId >= 0) {
+                frame.imageFormat = ImageFormat.fromId(imageFormatId);
+            }
+            int numTags = source.readInt();
+            if (numTags >= 0) {
+                frame.tags = new HashMap<>();
+                for (int i = 0; i < numTags; i++) {
+                    String key = source.readUTF();
+                    frame.tags.put(key, source.readUTF());
+                }
+            }
+        }
+
+        static void copyFields(DataInputView source, DataOutputView target) throws IOException {
+            target.writeInt(source.readInt());
+            target.writeInt(source.readInt());
+            target.writeLong(source.readLong());
+            target.writeInt(source.readInt());
+            target.writeInt(source.readInt());
+            copyBytes(source, target);
+            copyBytes(source, target);
+            target.writeByte(source.readByte());
+            target.writeByte(source.readByte());
+            int numTags = source.readInt();
+            target.writeInt(numTags);
+            for (int i = 0; i < 2 * numTags; i++) {
+                target.writeUTF(source.readUTF());
+            }
+        }
+
+        static void writeBytes(byte[] bytes, DataOutputView target) throws IOException {
+            if (bytes == null) {
+                target.writeInt(-1);
+            } else {
+                target.writeInt(bytes.length);
+                target.write(bytes);
+            }
+        }
+
+        static byte[] readBytes(DataInputView source) throws IOException {
+            int length = source.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            source.readFully(bytes);
+            return bytes;
+        }
+
+        static void copyBytes(DataInputView source, DataOutputView target) throws IOException {
+            int length = source.readInt();
+            target.writeInt(length);
+            if (length > 0) {
+                target.write(source, length);
+            }
+        }
+    }
+}
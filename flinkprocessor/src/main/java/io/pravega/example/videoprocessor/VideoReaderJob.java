@@ -12,26 +12,19 @@ package io.pravega.example.videoprocessor;
 
 import io.pravega.client.stream.StreamCut;
 import io.pravega.connectors.flink.FlinkPravegaReader;
-import io.pravega.example.flinkprocessor.AbstractJob;
 import io.pravega.example.video.ChunkedVideoFrame;
 import io.pravega.example.video.VideoFrame;
 import org.apache.flink.streaming.api.datastream.DataStream;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
-import org.apache.flink.streaming.api.functions.timestamps.BoundedOutOfOrdernessTimestampExtractor;
-import org.apache.flink.streaming.api.windowing.time.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.FileOutputStream;
-import java.io.InputStream;
 
 /**
  * This job reads a video stream from Pravega and writes frame metadata to the console.
  */
-public class VideoReaderJob extends AbstractJob {
+public class VideoReaderJob extends AbstractVideoJob {
     private static Logger log = LoggerFactory.getLogger(VideoReaderJob.class);
 
     /**
@@ -50,11 +43,6 @@ public class VideoReaderJob extends AbstractJob {
         super(config);
     }
 
-    @Override
-    public VideoAppConfiguration getConfig() {
-        return (VideoAppConfiguration) super.getConfig();
-    }
-
     public void run() {
         try {
             final String jobName = VideoReaderJob.class.getName();
@@ -77,28 +65,8 @@ public class VideoReaderJob extends AbstractJob {
                     .name("input-source");
 //            inChunkedVideoFrames.printToErr().uid("inChunkedVideoFrames-print").name("inChunkedVideoFrames-print");
 
-            // Assign timestamps and watermarks based on timestamp in each chunk.
-            DataStream<ChunkedVideoFrame> inChunkedVideoFramesWithTimestamps = inChunkedVideoFrames
-                    .assignTimestampsAndWatermarks(
-                            new BoundedOutOfOrdernessTimestampExtractor<ChunkedVideoFrame>(
-                                    Time.milliseconds(getConfig().getMaxOutOfOrdernessMs())) {
-                                @Override
-                                public long extractTimestamp(ChunkedVideoFrame element) {
-                                    return element.timestamp.getTime();
-                                }
-                            })
-                    .uid("assignTimestampsAndWatermarks")
-                    .name("assignTimestampsAndWatermarks");
-//            inChunkedVideoFramesWithTimestamps.printToErr().uid("inChunkedVideoFramesWithTimestamps-print").name("inChunkedVideoFramesWithTimestamps-print");
-
-            // Reassemble whole video frames from chunks.
-            boolean failOnError = false;
-            DataStream<VideoFrame> videoFrames = inChunkedVideoFramesWithTimestamps
-                    .keyBy("camera")
-                    .window(new ChunkedVideoFrameWindowAssigner())
-                    .process(new ChunkedVideoFrameReassembler().withFailOnError(failOnError))
-                    .uid("ChunkedVideoFrameReassembler")
-                    .name("ChunkedVideoFrameReassembler");
+            // Assign timestamps and reassemble whole video frames from chunks.
+            DataStream<VideoFrame> videoFrames = reassembleVideoFrames(inChunkedVideoFrames);
             videoFrames.printToErr().uid("videoFrames-print").name("videoFrames-print");
 
             // Write some frames to files for viewing.
@@ -106,7 +74,8 @@ public class VideoReaderJob extends AbstractJob {
                     .filter(frame -> frame.frameNumber < 20)
                     .uid("write-file-filter")
                     .map(frame -> {
-                        String fileName = String.format("/tmp/camera%d-frame%05d.png", frame.camera, frame.frameNumber);
+                        String fileName = String.format("/tmp/camera%d-frame%05d.%s",
+                                frame.camera, frame.frameNumber, frame.effectiveImageFormat().getFormatName());
                         log.info("Writing frame to {}", fileName);
                         try (FileOutputStream fos = new FileOutputStream(fileName)) {
                             fos.write(frame.data);
@@ -116,19 +85,18 @@ public class VideoReaderJob extends AbstractJob {
                     .uid("write-file-map")
                     .name("write-file-map");
 
-            // Parse image file and obtain metadata.
+            // Parse image file header and obtain metadata. The pixels are not decoded.
             DataStream<String> frameInfo = videoFrames
                     .map(frame -> {
-                        InputStream inStream = new ByteArrayInputStream(frame.data);
-                        BufferedImage inImage = ImageIO.read(inStream);
+                        ImageDecoder.Header header = ImageDecoder.readHeader(frame.data);
                         return String.format("camera %d, frame %d, %dx%dx%d, %d bytes, %s",
                                 frame.camera,
                                 frame.frameNumber,
-                                inImage.getWidth(),
-                                inImage.getHeight(),
-                                inImage.getColorModel().getNumColorComponents(),
+                                header.width,
+                                header.height,
+                                header.numColorComponents,
                                 frame.data.length,
-                                inImage.toString());
+                                header.formatName);
                     })
                     .uid("frameInfo")
                     .name("frameInfo");
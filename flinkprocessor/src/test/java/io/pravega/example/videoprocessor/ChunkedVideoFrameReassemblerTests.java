@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.ChunkedVideoFrame;
+import io.pravega.example.video.VideoFrame;
+import org.apache.flink.api.common.functions.util.ListCollector;
+import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
+import org.apache.flink.streaming.api.operators.KeyedProcessOperator;
+import org.apache.flink.streaming.api.operators.ProcessOperator;
+import org.apache.flink.streaming.util.AbstractStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.KeyedOneInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of ChunkedVideoFrameKeyedReassembler and ChunkedVideoFrameLocalReassembler in the Flink operator test harnesses.
+ */
+public class ChunkedVideoFrameReassemblerTests {
+    private static final int MAX_PARALLELISM = 128;
+
+    private static VideoFrame createFrame(int camera, long timestamp, int dataSize) {
+        VideoFrame frame = new VideoFrame();
+        frame.camera = camera;
+        frame.ssrc = 2;
+        frame.timestamp = new Timestamp(timestamp);
+        frame.frameNumber = (int) (timestamp / 100);
+        frame.data = new byte[dataSize];
+        new Random(timestamp).nextBytes(frame.data);
+        frame.hash = frame.calculateHash();
+        return frame;
+    }
+
+    private static List<ChunkedVideoFrame> chunk(VideoFrame frame, int chunkSizeBytes, int numParityChunks) {
+        List<ChunkedVideoFrame> chunks = new ArrayList<>();
+        new VideoFrameChunker(chunkSizeBytes).withParityChunks(numParityChunks).flatMap(frame, new ListCollector<>(chunks));
+        return chunks;
+    }
+
+    private static KeyedOneInputStreamOperatorTestHarness<Integer, ChunkedVideoFrame, VideoFrame> createKeyedHarness(
+            ChunkedVideoFrameKeyedReassembler reassembler) throws Exception {
+        KeyedOneInputStreamOperatorTestHarness<Integer, ChunkedVideoFrame, VideoFrame> harness =
+                new KeyedOneInputStreamOperatorTestHarness<>(
+                        new KeyedProcessOperator<>(reassembler), chunk -> chunk.camera, BasicTypeInfo.INT_TYPE_INFO);
+        harness.open();
+        return harness;
+    }
+
+    private static OneInputStreamOperatorTestHarness<ChunkedVideoFrame, VideoFrame> createLocalHarness(
+            ChunkedVideoFrameLocalReassembler reassembler) throws Exception {
+        return createLocalHarness(reassembler, 1, 0, null);
+    }
+
+    private static OneInputStreamOperatorTestHarness<ChunkedVideoFrame, VideoFrame> createLocalHarness(
+            ChunkedVideoFrameLocalReassembler reassembler, int parallelism, int subtaskIndex,
+            OperatorSubtaskState restoredState) throws Exception {
+        OneInputStreamOperatorTestHarness<ChunkedVideoFrame, VideoFrame> harness =
+                new OneInputStreamOperatorTestHarness<>(new ProcessOperator<>(reassembler), MAX_PARALLELISM, parallelism, subtaskIndex);
+        if (restoredState != null) {
+            harness.initializeState(restoredState);
+        }
+        harness.open();
+        return harness;
+    }
+
+    private static void processElement(OneInputStreamOperatorTestHarness<ChunkedVideoFrame, VideoFrame> harness,
+                                       ChunkedVideoFrame chunk) throws Exception {
+        harness.processElement(chunk, chunk.timestamp.getTime());
+    }
+
+    private static long getKeyedBufferedBytes(KeyedOneInputStreamOperatorTestHarness<Integer, ChunkedVideoFrame, VideoFrame> harness,
+                                              ChunkedVideoFrameKeyedReassembler reassembler, int camera) throws Exception {
+        harness.getOperator().setCurrentKey(camera);
+        return reassembler.getBufferedBytes();
+    }
+
+    @Test
+    public void testKeyedEvictsOldestIncompleteFrame() throws Exception {
+        ChunkedVideoFrameKeyedReassembler reassembler = new ChunkedVideoFrameKeyedReassembler()
+                .withMaxBufferedBytesPerCamera(1000);
+        KeyedOneInputStreamOperatorTestHarness<Integer, ChunkedVideoFrame, VideoFrame> harness = createKeyedHarness(reassembler);
+        VideoFrame oldFrame = createFrame(1, 1000, 1000);
+        VideoFrame newFrame = createFrame(1, 1100, 1000);
+        VideoFrame otherCameraFrame = createFrame(2, 1000, 1000);
+        List<ChunkedVideoFrame> oldChunks = chunk(oldFrame, 300, 0);
+        List<ChunkedVideoFrame> newChunks = chunk(newFrame, 300, 0);
+        List<ChunkedVideoFrame> otherCameraChunks = chunk(otherCameraFrame, 300, 0);
+
+        processElement(harness, oldChunks.get(0));
+        processElement(harness, oldChunks.get(1));
+        processElement(harness, otherCameraChunks.get(0));
+        processElement(harness, otherCameraChunks.get(1));
+        assertEquals(600, getKeyedBufferedBytes(harness, reassembler, 1));
+        // The limit applies to each camera, so this evicts the old frame of camera 1 only.
+        processElement(harness, newChunks.get(0));
+        assertEquals(0, reassembler.evictedFrames.getCount());
+        processElement(harness, newChunks.get(1));
+        assertEquals(1, reassembler.evictedFrames.getCount());
+        assertEquals(600, reassembler.evictedBytes.getCount());
+        assertEquals(600, getKeyedBufferedBytes(harness, reassembler, 1));
+        assertEquals(600, getKeyedBufferedBytes(harness, reassembler, 2));
+
+        // Later chunks of the evicted frame are dropped.
+        processElement(harness, oldChunks.get(2));
+        processElement(harness, oldChunks.get(3));
+        assertEquals(600, getKeyedBufferedBytes(harness, reassembler, 1));
+        for (int i = 2; i < newChunks.size(); i++) {
+            processElement(harness, newChunks.get(i));
+        }
+        List<VideoFrame> output = harness.extractOutputValues();
+        assertEquals(1, output.size());
+        assertArrayEquals(newFrame.data, output.get(0).data);
+        assertEquals(0, getKeyedBufferedBytes(harness, reassembler, 1));
+
+        // The incomplete frame of camera 2 is purged when the watermark passes it.
+        harness.processWatermark(1100);
+        assertEquals(0, getKeyedBufferedBytes(harness, reassembler, 2));
+        assertEquals(1, reassembler.evictedFrames.getCount());
+        harness.close();
+    }
+
+    @Test
+    public void testKeyedBufferedBytesAfterParityRecovery() throws Exception {
+        ChunkedVideoFrameKeyedReassembler reassembler = new ChunkedVideoFrameKeyedReassembler()
+                .withMaxBufferedBytesPerCamera(1000);
+        KeyedOneInputStreamOperatorTestHarness<Integer, ChunkedVideoFrame, VideoFrame> harness = createKeyedHarness(reassembler);
+        for (int n = 0; n < 3; n++) {
+            VideoFrame frame = createFrame(1, 1000 + 100 * n, 1000);
+            List<ChunkedVideoFrame> chunks = chunk(frame, 300, 1);
+            for (int i = 0; i < chunks.size(); i++) {
+                if (i != 1) {
+                    processElement(harness, chunks.get(i));
+                }
+            }
+            List<VideoFrame> output = harness.extractOutputValues();
+            assertEquals(n + 1, output.size());
+            assertArrayEquals(frame.data, output.get(n).data);
+            assertEquals(0, getKeyedBufferedBytes(harness, reassembler, 1));
+        }
+        assertEquals(0, reassembler.evictedFrames.getCount());
+        harness.close();
+    }
+
+    @Test
+    public void testKeyedEmitsSingleChunkFrameWithoutState() throws Exception {
+        ChunkedVideoFrameKeyedReassembler reassembler = new ChunkedVideoFrameKeyedReassembler().withFailOnError();
+        KeyedOneInputStreamOperatorTestHarness<Integer, ChunkedVideoFrame, VideoFrame> harness = createKeyedHarness(reassembler);
+        VideoFrame frame = createFrame(1, 1000, 500);
+        List<ChunkedVideoFrame> chunks = chunk(frame, 1000, 0);
+        assertEquals(1, chunks.size());
+
+        processElement(harness, chunks.get(0));
+        List<VideoFrame> output = harness.extractOutputValues();
+        assertEquals(1, output.size());
+        assertSame(chunks.get(0).data, output.get(0).data);
+        assertArrayEquals(frame.data, output.get(0).data);
+        assertEquals(0, harness.numKeyedStateEntries());
+        assertEquals(0, harness.numEventTimeTimers());
+
+        // Duplicates of single-chunk frames are not dropped because they are not kept in state.
+        processElement(harness, chunks.get(0));
+        assertEquals(2, harness.extractOutputValues().size());
+
+        // A frame with a single data chunk and a parity chunk is kept in state so that duplicates are dropped.
+        VideoFrame parityFrame = createFrame(1, 1100, 500);
+        List<ChunkedVideoFrame> parityChunks = chunk(parityFrame, 1000, 1);
+        assertEquals(2, parityChunks.size());
+        processElement(harness, parityChunks.get(0));
+        processElement(harness, parityChunks.get(1));
+        processElement(harness, parityChunks.get(0));
+        output = harness.extractOutputValues();
+        assertEquals(3, output.size());
+        assertArrayEquals(parityFrame.data, output.get(2).data);
+        assertEquals(1, harness.numEventTimeTimers());
+        harness.close();
+    }
+
+    @Test
+    public void testKeyedPurgesFramesWithRoundedTimer() throws Exception {
+        ChunkedVideoFrameKeyedReassembler reassembler = new ChunkedVideoFrameKeyedReassembler()
+                .withTimerResolutionMs(100);
+        KeyedOneInputStreamOperatorTestHarness<Integer, ChunkedVideoFrame, VideoFrame> harness = createKeyedHarness(reassembler);
+        List<ChunkedVideoFrame> incompleteChunks = chunk(createFrame(1, 1010, 1000), 300, 0);
+        VideoFrame completeFrame = createFrame(1, 1050, 1000);
+        List<ChunkedVideoFrame> completeChunks = chunk(completeFrame, 300, 0);
+        List<ChunkedVideoFrame> laterChunks = chunk(createFrame(1, 1150, 1000), 300, 0);
+
+        processElement(harness, incompleteChunks.get(0));
+        processElement(harness, incompleteChunks.get(1));
+        for (ChunkedVideoFrame chunk : completeChunks) {
+            processElement(harness, chunk);
+        }
+        processElement(harness, laterChunks.get(0));
+        processElement(harness, laterChunks.get(1));
+        // Both frames before 1100 share the timer at 1100.
+        assertEquals(2, harness.numEventTimeTimers());
+        assertEquals(1200, getKeyedBufferedBytes(harness, reassembler, 1));
+
+        harness.processWatermark(1099);
+        assertEquals(2, harness.numEventTimeTimers());
+        processElement(harness, completeChunks.get(0));
+        assertEquals(1, harness.extractOutputValues().size());
+
+        harness.processWatermark(1100);
+        assertEquals(1, harness.numEventTimeTimers());
+        assertEquals(600, getKeyedBufferedBytes(harness, reassembler, 1));
+        // Chunks of purged frames are late and are dropped.
+        processElement(harness, incompleteChunks.get(2));
+        processElement(harness, completeChunks.get(0));
+        assertEquals(600, getKeyedBufferedBytes(harness, reassembler, 1));
+
+        harness.processWatermark(1200);
+        assertEquals(0, harness.numEventTimeTimers());
+        // Only the buffered byte count of the camera remains in state.
+        assertEquals(1, harness.numKeyedStateEntries());
+        assertEquals(0, getKeyedBufferedBytes(harness, reassembler, 1));
+        List<VideoFrame> output = harness.extractOutputValues();
+        assertEquals(1, output.size());
+        assertArrayEquals(completeFrame.data, output.get(0).data);
+        harness.close();
+    }
+
+    @Test
+    public void testLocalEvictsOldestIncompleteFrameOfCamera() throws Exception {
+        ChunkedVideoFrameLocalReassembler reassembler = new ChunkedVideoFrameLocalReassembler()
+                .withMaxBufferedBytes(1000, Long.MAX_VALUE);
+        OneInputStreamOperatorTestHarness<ChunkedVideoFrame, VideoFrame> harness = createLocalHarness(reassembler);
+        VideoFrame otherCameraFrame = createFrame(2, 900, 1000);
+        VideoFrame oldFrame = createFrame(1, 1000, 1000);
+        VideoFrame newFrame = createFrame(1, 1100, 1000);
+        List<ChunkedVideoFrame> otherCameraChunks = chunk(otherCameraFrame, 300, 0);
+        List<ChunkedVideoFrame> oldChunks = chunk(oldFrame, 300, 0);
+        List<ChunkedVideoFrame> newChunks = chunk(newFrame, 300, 0);
+
+        processElement(harness, otherCameraChunks.get(0));
+        processElement(harness, oldChunks.get(0));
+        processElement(harness, oldChunks.get(1));
+        assertEquals(900, reassembler.getBufferedBytes());
+        // The older frame of camera 2 is not evicted because only camera 1 exceeds its limit.
+        processElement(harness, newChunks.get(0));
+        processElement(harness, newChunks.get(1));
+        assertEquals(1, reassembler.evictedFrames.getCount());
+        assertEquals(600, reassembler.evictedBytes.getCount());
+        assertEquals(900, reassembler.getBufferedBytes());
+
+        // Later chunks of the evicted frame are dropped.
+        processElement(harness, oldChunks.get(2));
+        processElement(harness, oldChunks.get(3));
+        assertEquals(900, reassembler.getBufferedBytes());
+        for (int i = 2; i < newChunks.size(); i++) {
+            processElement(harness, newChunks.get(i));
+        }
+        List<VideoFrame> output = harness.extractOutputValues();
+        assertEquals(1, output.size());
+        assertArrayEquals(newFrame.data, output.get(0).data);
+        assertEquals(300, reassembler.getBufferedBytes());
+        harness.close();
+    }
+
+    @Test
+    public void testLocalEvictsOldestIncompleteFrameOfAnyCamera() throws Exception {
+        ChunkedVideoFrameLocalReassembler reassembler = new ChunkedVideoFrameLocalReassembler()
+                .withMaxBufferedBytes(Long.MAX_VALUE, 700);
+        OneInputStreamOperatorTestHarness<ChunkedVideoFrame, VideoFrame> harness = createLocalHarness(reassembler);
+        List<ChunkedVideoFrame> camera1Chunks = chunk(createFrame(1, 1000, 1000), 300, 0);
+        List<ChunkedVideoFrame> camera2Chunks = chunk(createFrame(2, 1000, 1000), 300, 0);
+
+        processElement(harness, camera1Chunks.get(0));
+        processElement(harness, camera1Chunks.get(1));
+        processElement(harness, camera2Chunks.get(0));
+        assertEquals(1, reassembler.evictedFrames.getCount());
+        assertEquals(600, reassembler.evictedBytes.getCount());
+        assertEquals(300, reassembler.getBufferedBytes());
+        harness.close();
+    }
+
+    @Test
+    public void testLocalBufferedBytesAfterParityRecovery() throws Exception {
+        ChunkedVideoFrameLocalReassembler reassembler = new ChunkedVideoFrameLocalReassembler()
+                .withMaxBufferedBytes(1000, 1000);
+        OneInputStreamOperatorTestHarness<ChunkedVideoFrame, VideoFrame> harness = createLocalHarness(reassembler);
+        for (int n = 0; n < 3; n++) {
+            VideoFrame frame = createFrame(1, 1000 + 100 * n, 1000);
+            List<ChunkedVideoFrame> chunks = chunk(frame, 300, 1);
+            for (int i = 0; i < chunks.size(); i++) {
+                if (i != 1) {
+                    processElement(harness, chunks.get(i));
+                }
+            }
+            List<VideoFrame> output = harness.extractOutputValues();
+            assertEquals(n + 1, output.size());
+            assertArrayEquals(frame.data, output.get(n).data);
+            assertEquals(0, reassembler.getBufferedBytes());
+        }
+        harness.processWatermark(1200);
+        assertEquals(0, reassembler.getBufferedBytes());
+        assertEquals(0, reassembler.evictedFrames.getCount());
+        harness.close();
+    }
+
+    @Test
+    public void testLocalPurgesFramesWhenWatermarkPasses() throws Exception {
+        ChunkedVideoFrameLocalReassembler reassembler = new ChunkedVideoFrameLocalReassembler();
+        OneInputStreamOperatorTestHarness<ChunkedVideoFrame, VideoFrame> harness = createLocalHarness(reassembler);
+        VideoFrame frame = createFrame(1, 1000, 1000);
+        List<ChunkedVideoFrame> chunks = chunk(frame, 300, 0);
+        List<ChunkedVideoFrame> incompleteChunks = chunk(createFrame(1, 1100, 1000), 300, 0);
+        for (ChunkedVideoFrame chunk : chunks) {
+            processElement(harness, chunk);
+        }
+        // Duplicates of an emitted frame are dropped until the watermark passes it.
+        processElement(harness, chunks.get(1));
+        processElement(harness, incompleteChunks.get(0));
+        processElement(harness, incompleteChunks.get(1));
+        assertEquals(1, harness.extractOutputValues().size());
+        assertEquals(600, reassembler.getBufferedBytes());
+
+        // Frames are purged by the next chunk after the watermark passes them, and their chunks are then late.
+        harness.processWatermark(1000);
+        processElement(harness, chunks.get(1));
+        assertEquals(1, harness.extractOutputValues().size());
+        harness.processWatermark(1100);
+        assertEquals(600, reassembler.getBufferedBytes());
+        processElement(harness, incompleteChunks.get(2));
+        assertEquals(0, reassembler.getBufferedBytes());
+        List<VideoFrame> output = harness.extractOutputValues();
+        assertEquals(1, output.size());
+        assertArrayEquals(frame.data, output.get(0).data);
+        harness.close();
+    }
+
+    @Test
+    public void testLocalReportsPurgedIncompleteFrame() throws Exception {
+        ChunkedVideoFrameLocalReassembler reassembler = new ChunkedVideoFrameLocalReassembler().withFailOnError();
+        OneInputStreamOperatorTestHarness<ChunkedVideoFrame, VideoFrame> harness = createLocalHarness(reassembler);
+        List<ChunkedVideoFrame> incompleteChunks = chunk(createFrame(1, 1000, 1000), 300, 0);
+        processElement(harness, incompleteChunks.get(0));
+        harness.processWatermark(1000);
+        try {
+            processElement(harness, chunk(createFrame(1, 1100, 1000), 300, 0).get(0));
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof ChunkSequenceException);
+        }
+        harness.close();
+    }
+
+    @Test
+    public void testLocalRestoresPartialFramesAfterRescale() throws Exception {
+        VideoFrame camera1Frame = createFrame(1, 1000, 1000);
+        VideoFrame camera2Frame = createFrame(2, 1000, 1000);
+        List<ChunkedVideoFrame> camera1Chunks = chunk(camera1Frame, 300, 0);
+        List<ChunkedVideoFrame> camera2Chunks = chunk(camera2Frame, 300, 0);
+        List<ChunkedVideoFrame> camera2IncompleteChunks = chunk(createFrame(2, 1100, 1000), 300, 0);
+
+        // Before the rescale, each camera is read by a different subtask.
+        OneInputStreamOperatorTestHarness<ChunkedVideoFrame, VideoFrame> oldHarness0 =
+                createLocalHarness(new ChunkedVideoFrameLocalReassembler(), 2, 0, null);
+        OneInputStreamOperatorTestHarness<ChunkedVideoFrame, VideoFrame> oldHarness1 =
+                createLocalHarness(new ChunkedVideoFrameLocalReassembler(), 2, 1, null);
+        processElement(oldHarness0, camera1Chunks.get(0));
+        processElement(oldHarness0, camera1Chunks.get(1));
+        for (ChunkedVideoFrame chunk : camera2Chunks) {
+            processElement(oldHarness1, chunk);
+        }
+        processElement(oldHarness1, camera2IncompleteChunks.get(0));
+        assertEquals(1, oldHarness1.extractOutputValues().size());
+        OperatorSubtaskState snapshot = AbstractStreamOperatorTestHarness.repackageState(
+                oldHarness0.snapshot(1, 0), oldHarness1.snapshot(1, 0));
+        oldHarness0.close();
+        oldHarness1.close();
+
+        // After the rescale, every subtask receives the partial frames of all subtasks.
+        ChunkedVideoFrameLocalReassembler reassembler = new ChunkedVideoFrameLocalReassembler().withFailOnError();
+        OneInputStreamOperatorTestHarness<ChunkedVideoFrame, VideoFrame> harness = createLocalHarness(reassembler, 1, 0,
+                AbstractStreamOperatorTestHarness.repartitionOperatorState(snapshot, MAX_PARALLELISM, 2, 1, 0));
+        assertEquals(900, reassembler.getBufferedBytes());
+        processElement(harness, camera1Chunks.get(2));
+        processElement(harness, camera1Chunks.get(3));
+        // The frame emitted before the rescale is not emitted again.
+        processElement(harness, camera2Chunks.get(0));
+        List<VideoFrame> output = harness.extractOutputValues();
+        assertEquals(1, output.size());
+        assertArrayEquals(camera1Frame.data, output.get(0).data);
+        assertEquals(300, reassembler.getBufferedBytes());
+
+        // A restored frame that is not completed is discarded without an error when the watermark passes it.
+        harness.processWatermark(1100);
+        processElement(harness, chunk(createFrame(2, 1200, 500), 1000, 0).get(0));
+        assertEquals(2, harness.extractOutputValues().size());
+        assertEquals(0, reassembler.getBufferedBytes());
+        harness.close();
+    }
+}
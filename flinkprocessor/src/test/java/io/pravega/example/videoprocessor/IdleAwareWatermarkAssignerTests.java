@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.ChunkedVideoFrame;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+
+import static org.junit.Assert.*;
+
+public class IdleAwareWatermarkAssignerTests {
+
+    private static IdleAwareWatermarkAssigner<ChunkedVideoFrame> createAssigner(long idleTimeoutMs) {
+        return new IdleAwareWatermarkAssigner<ChunkedVideoFrame>(1000, idleTimeoutMs) {
+            @Override
+            public long extractTimestamp(ChunkedVideoFrame element) {
+                return element.timestamp.getTime();
+            }
+
+            @Override
+            public int extractCamera(ChunkedVideoFrame element) {
+                return element.camera;
+            }
+        };
+    }
+
+    private static ChunkedVideoFrame createChunk(int camera, long timestamp) {
+        ChunkedVideoFrame chunk = new ChunkedVideoFrame();
+        chunk.camera = camera;
+        chunk.timestamp = new Timestamp(timestamp);
+        return chunk;
+    }
+
+    @Test
+    public void testActiveInput() {
+        IdleAwareWatermarkAssigner<ChunkedVideoFrame> assigner = createAssigner(5000);
+        assertEquals(20000, assigner.extractTimestamp(createChunk(0, 20000), 0, 100000));
+        assigner.extractTimestamp(createChunk(1, 19000), 0, 101000);
+        assertEquals(19000, assigner.getCurrentWatermark(102000).getTimestamp());
+        assertFalse(assigner.isIdle());
+        // Camera 0 has stalled but camera 1 has not. The subtask is not idle.
+        assigner.extractTimestamp(createChunk(1, 24000), 0, 105500);
+        assertEquals(23000, assigner.getCurrentWatermark(106000).getTimestamp());
+        assertFalse(assigner.isIdle());
+        assertTrue(assigner.isCameraIdle(0, 106000));
+        assertFalse(assigner.isCameraIdle(1, 106000));
+        assertEquals(1, assigner.countIdleCameras(106000));
+    }
+
+    @Test
+    public void testIdleInput() {
+        IdleAwareWatermarkAssigner<ChunkedVideoFrame> assigner = createAssigner(5000);
+        assigner.extractTimestamp(createChunk(0, 20000), 0, 100000);
+        assertEquals(19000, assigner.getCurrentWatermark(104000).getTimestamp());
+        assertFalse(assigner.isIdle());
+        // The watermark advances with processing time once the input is idle.
+        assertEquals(24000, assigner.getCurrentWatermark(105000).getTimestamp());
+        assertTrue(assigner.isIdle());
+        assertEquals(27000, assigner.getCurrentWatermark(108000).getTimestamp());
+        assertEquals(1, assigner.countIdleCameras(108000));
+        // A late element does not move the watermark back.
+        assigner.extractTimestamp(createChunk(0, 21000), 0, 108500);
+        assertEquals(27000, assigner.getCurrentWatermark(109000).getTimestamp());
+        assertFalse(assigner.isIdle());
+        assertEquals(0, assigner.countIdleCameras(109000));
+    }
+
+    @Test
+    public void testNoInput() {
+        IdleAwareWatermarkAssigner<ChunkedVideoFrame> assigner = createAssigner(5000);
+        long now = System.currentTimeMillis();
+        assertEquals(Long.MIN_VALUE, assigner.getCurrentWatermark(now).getTimestamp());
+        assertEquals(now + 10000 - 1000, assigner.getCurrentWatermark(now + 10000).getTimestamp());
+        assertTrue(assigner.isIdle());
+    }
+
+    @Test
+    public void testIdleTimeoutDisabled() {
+        IdleAwareWatermarkAssigner<ChunkedVideoFrame> assigner = createAssigner(0);
+        assigner.extractTimestamp(createChunk(0, 20000), 0, 100000);
+        assertEquals(19000, assigner.getCurrentWatermark(1000000).getTimestamp());
+        assertFalse(assigner.isIdle());
+        assertEquals(0, assigner.countIdleCameras(1000000));
+    }
+
+    @Test
+    public void testLatenessHistogram() {
+        for (long value : new long[]{0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456, Integer.MAX_VALUE}) {
+            int bucket = LatenessHistogram.bucketOf(value);
+            long upperBound = LatenessHistogram.upperBoundOf(bucket);
+            assertTrue(value + " <= " + upperBound, value <= upperBound);
+            assertTrue(value + " > " + upperBound + " / 1.125", value >= upperBound / 1.125);
+            assertEquals(bucket, LatenessHistogram.bucketOf(upperBound));
+        }
+        LatenessHistogram histogram = new LatenessHistogram(1000);
+        assertEquals(-1, histogram.getQuantile(0.99));
+        for (int i = 0; i < 990; i++) {
+            histogram.update(i % 5);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.update(500);
+        }
+        assertEquals(4, histogram.getQuantile(0.99));
+        assertEquals(4, (long) histogram.getStatistics().getQuantile(0.99));
+        assertTrue(histogram.getQuantile(1.0) >= 500);
+        assertEquals(1000, histogram.getCount());
+        // The counts were halved after 1000 updates, so later values soon dominate.
+        for (int i = 0; i < 500; i++) {
+            histogram.update(100);
+        }
+        assertEquals(103, histogram.getQuantile(0.5));
+        assertEquals(1000, histogram.getStatistics().size());
+    }
+
+    @Test
+    public void testAdaptiveDelay() {
+        IdleAwareWatermarkAssigner<ChunkedVideoFrame> assigner = createAssigner(0).withAdaptiveDelay(99.0, 10, 1000);
+        assertEquals(1000, assigner.getDelayMs());
+        long timestamp = 1000000;
+        // Elements in order are never late, so the delay is the minimum.
+        for (int i = 0; i < 1000; i++) {
+            assigner.extractTimestamp(createChunk(0, timestamp + i * 10), 0, 100000 + i);
+        }
+        long maxTimestamp = timestamp + 999 * 10;
+        assertEquals(maxTimestamp - 10, assigner.getCurrentWatermark(101000).getTimestamp());
+        assertEquals(10, assigner.getDelayMs());
+        // Every fourth element is 200 ms behind the maximum timestamp. The delay is the 99th percentile of lateness,
+        // which is 200 ms rounded up to the upper bound of its histogram bucket.
+        for (int i = 1; i <= 2000; i++) {
+            if (i % 4 == 0) {
+                assigner.extractTimestamp(createChunk(0, maxTimestamp - 200), 0, 101000 + i);
+            } else {
+                maxTimestamp += 10;
+                assigner.extractTimestamp(createChunk(0, maxTimestamp), 0, 101000 + i);
+            }
+        }
+        long watermark = assigner.getCurrentWatermark(103000).getTimestamp();
+        long delayMs = assigner.getDelayMs();
+        assertTrue("delayMs=" + delayMs, delayMs > 10 && delayMs < 1000);
+        assertTrue("delayMs=" + delayMs, delayMs >= 200 && delayMs <= 200 * 9 / 8);
+        assertEquals(maxTimestamp - delayMs, watermark);
+        // Disorder increases and the delay follows, up to the maximum.
+        for (int i = 0; i < 2000; i++) {
+            assigner.extractTimestamp(createChunk(0, maxTimestamp + i * 10 - (i % 2) * 5000), 0, 104000 + i);
+        }
+        assigner.getCurrentWatermark(106000);
+        assertEquals(1000, assigner.getDelayMs());
+    }
+}
@@ -10,6 +10,16 @@
  */
 package io.pravega.example.videoprocessor;
 
+import io.pravega.example.video.HashAlgorithm;
+import io.pravega.example.video.ImageFormat;
+import io.pravega.example.video.PixelFormat;
+import io.pravega.example.video.RawVideoFrame;
+import io.pravega.example.video.VideoFrame;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.configuration.Configuration;
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_imgcodecs;
+import org.junit.Assume;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -26,13 +36,26 @@ import java.awt.image.DataBufferByte;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
 
 import static java.awt.image.BufferedImage.TYPE_3BYTE_BGR;
 import static java.lang.Math.min;
+import static org.junit.Assert.*;
 
 public class ImageProcessingTests {
     private static Logger log = LoggerFactory.getLogger(ImageProcessingTests.class);
@@ -130,4 +153,1032 @@ public class ImageProcessingTests {
         byte[] outBytes = generator.generate(20, 1000);
         Files.write((new File("/tmp/test5.png")).toPath(), outBytes);
     }
+
+    @Test
+    public void testDecodeAndResize() throws Exception {
+        VideoFrame frame = new VideoFrame();
+        frame.camera = 2;
+        frame.data = new ImageGenerator(200, 150).generate(2, 7);
+        RawVideoFrame rawFrame = new ImageResizer(50, 40).decodeAndResize(frame);
+        assertEquals(2, rawFrame.camera);
+        assertEquals(50, rawFrame.width);
+        assertEquals(40, rawFrame.height);
+        assertEquals(PixelFormat.BGR24, rawFrame.pixelFormat);
+        assertEquals(50 * 40 * 3, rawFrame.pixels.length);
+        assertNull(rawFrame.data);
+    }
+
+    /**
+     * The grid built from raw images must match the grid built from encoded images.
+     */
+    @Test
+    public void testRawGridMatchesEncodedGrid() throws Exception {
+        ImageResizer resizer = new ImageResizer(40, 30);
+        ImageGridBuilder encodedBuilder = new ImageGridBuilder(40, 30, 3);
+        ImageGridBuilder rawBuilder = new ImageGridBuilder(40, 30, 3);
+        for (int camera = 0; camera < 3; camera++) {
+            VideoFrame frame = new VideoFrame();
+            frame.data = new ImageGenerator(120, 90).generate(camera, 0);
+            encodedBuilder.addImage(camera, resizer.resize(frame.data));
+            rawBuilder.addImage(camera, resizer.decodeAndResize(frame));
+        }
+        BufferedImage expected = ImageIO.read(new ByteArrayInputStream(encodedBuilder.getOutputImageBytes("png")));
+        BufferedImage actual = ImageIO.read(new ByteArrayInputStream(rawBuilder.getOutputImageBytes("png")));
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    /**
+     * Replacing some tiles of a reused grid must give the same image as building the grid from scratch.
+     */
+    @Test
+    public void testIncrementalGrid() throws Exception {
+        ImageGridBuilder incrementalBuilder = new ImageGridBuilder(40, 30, 3);
+        for (int camera = 0; camera < 3; camera++) {
+            incrementalBuilder.addImage(camera, randomFrame(40, 30, camera));
+        }
+        incrementalBuilder.getOutputImageBytes("png");
+        incrementalBuilder.addImage(1, randomFrame(40, 30, 10));
+        assertTrue(incrementalBuilder.hasLayoutFor(4));
+        assertFalse(incrementalBuilder.hasLayoutFor(5));
+        ImageGridBuilder fullBuilder = new ImageGridBuilder(40, 30, 3);
+        fullBuilder.addImage(0, randomFrame(40, 30, 0));
+        fullBuilder.addImage(1, randomFrame(40, 30, 10));
+        fullBuilder.addImage(2, randomFrame(40, 30, 2));
+        assertArrayEquals(fullBuilder.getOutputImageBytes("png"), incrementalBuilder.getOutputImageBytes("png"));
+
+        // A cleared tile matches a tile that was never drawn.
+        incrementalBuilder.clearImage(2);
+        ImageGridBuilder partialBuilder = new ImageGridBuilder(40, 30, 3);
+        partialBuilder.addImage(0, randomFrame(40, 30, 0));
+        partialBuilder.addImage(1, randomFrame(40, 30, 10));
+        assertArrayEquals(partialBuilder.getOutputImageBytes("png"), incrementalBuilder.getOutputImageBytes("png"));
+    }
+
+    private static RawVideoFrame tile(int camera, long time, int frameNumber) {
+        RawVideoFrame frame = randomFrame(4, 3, frameNumber);
+        frame.camera = camera;
+        frame.timestamp = new Timestamp(time);
+        frame.frameNumber = frameNumber;
+        return frame;
+    }
+
+    @Test
+    public void testImageAggregatorMerge() {
+        MultiVideoGridJob.ImageAggregator aggregator = new MultiVideoGridJob.ImageAggregator();
+        MultiVideoGridJob.ImageAggregatorAccum a = aggregator.createAccumulator();
+        aggregator.add(tile(0, 1000, 10), a);
+        aggregator.add(tile(1, 1000, 20), a);
+        // A late frame does not replace a later one.
+        aggregator.add(tile(0, 900, 9), a);
+        MultiVideoGridJob.ImageAggregatorAccum b = aggregator.createAccumulator();
+        aggregator.add(tile(0, 800, 8), b);
+        aggregator.add(tile(1, 1500, 21), b);
+        aggregator.add(tile(2, 1200, 30), b);
+
+        MultiVideoGridJob.ImageAggregatorAccum merged = aggregator.merge(a, b);
+        assertEquals(3, merged.images.size());
+        assertEquals(10, merged.images.get(0).frameNumber);
+        assertEquals(21, merged.images.get(1).frameNumber);
+        assertEquals(30, merged.images.get(2).frameNumber);
+        assertEquals(1500, merged.timestamp.getTime());
+
+        // Merging partial grids gives the same result as aggregating all frames in one accumulator.
+        MultiVideoGridJob.PartialGridMerger merger = new MultiVideoGridJob.PartialGridMerger();
+        MultiVideoGridJob.ImageAggregatorAccum all = aggregator.createAccumulator();
+        MultiVideoGridJob.ImageAggregatorAccum[] partials = new MultiVideoGridJob.ImageAggregatorAccum[3];
+        for (int i = 0; i < partials.length; i++) {
+            partials[i] = aggregator.createAccumulator();
+        }
+        Random random = new Random(0);
+        for (int i = 0; i < 100; i++) {
+            RawVideoFrame frame = tile(random.nextInt(10), 1000 + random.nextInt(50), i);
+            aggregator.add(frame, all);
+            aggregator.add(frame, partials[frame.camera % partials.length]);
+        }
+        MultiVideoGridJob.ImageAggregatorAccum grid = merger.createAccumulator();
+        for (MultiVideoGridJob.ImageAggregatorAccum partial : partials) {
+            grid = merger.add(partial, grid);
+        }
+        assertEquals(all.images, grid.images);
+        assertEquals(all.timestamp, grid.timestamp);
+    }
+
+    /**
+     * A MapState backed by a HashMap, for testing functions that use keyed or global state.
+     */
+    private static class HeapMapState<K, V> implements MapState<K, V> {
+        private final Map<K, V> map = new HashMap<>();
+
+        @Override
+        public V get(K key) {
+            return map.get(key);
+        }
+
+        @Override
+        public void put(K key, V value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public void putAll(Map<K, V> map) {
+            this.map.putAll(map);
+        }
+
+        @Override
+        public void remove(K key) {
+            map.remove(key);
+        }
+
+        @Override
+        public boolean contains(K key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public Iterable<Map.Entry<K, V>> entries() {
+            return map.entrySet();
+        }
+
+        @Override
+        public Iterable<K> keys() {
+            return map.keySet();
+        }
+
+        @Override
+        public Iterable<V> values() {
+            return map.values();
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return map.entrySet().iterator();
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+    }
+
+    private static MultiVideoGridJob.ImageAggregatorAccum accum(RawVideoFrame... images) {
+        MultiVideoGridJob.ImageAggregatorAccum accum = new MultiVideoGridJob.ImageAggregatorAccum();
+        for (RawVideoFrame image : images) {
+            accum.addLatest(image);
+        }
+        return accum;
+    }
+
+    private static byte[] gridPixels(int numImages, Map<Integer, RawVideoFrame> images) {
+        ImageGridBuilder builder = new ImageGridBuilder(4, 3, numImages);
+        builder.addRawImages(images);
+        return builder.getOutputImage(new VideoFrame()).pixels;
+    }
+
+    @Test
+    public void testGridRendererClearsStaleTiles() throws Exception {
+        MultiVideoGridJob.ImageGridRenderer renderer = new MultiVideoGridJob.ImageGridRenderer(4, 3, 1000, 0)
+                .withMaxTileAgeMs(1000);
+        MapState<Integer, RawVideoFrame> tiles = new HeapMapState<>();
+        RawVideoFrame[] first = {tile(0, 900, 1), tile(1, 900, 2), tile(2, 900, 3)};
+        RawVideoFrame grid = renderer.render(accum(first), 999, tiles);
+        Map<Integer, RawVideoFrame> expected = new HashMap<>();
+        for (RawVideoFrame image : first) {
+            expected.put(image.camera, image);
+        }
+        assertArrayEquals(gridPixels(3, expected), grid.pixels);
+        assertEquals("3", grid.tags.get("numCameras"));
+
+        // Camera 2 has no new image and its last image is more than 1000 ms older than the end of the window.
+        RawVideoFrame[] second = {tile(0, 1900, 4), tile(1, 1900, 5)};
+        grid = renderer.render(accum(second), 1999, tiles);
+        expected.clear();
+        for (RawVideoFrame image : second) {
+            expected.put(image.camera, image);
+        }
+        assertArrayEquals(gridPixels(3, expected), grid.pixels);
+        assertEquals("2", grid.tags.get("numCameras"));
+        assertFalse(tiles.contains(2));
+        assertEquals(1, grid.frameNumber);
+    }
+
+    @Test
+    public void testGridRendererFixedLayout() throws Exception {
+        MultiVideoGridJob.ImageGridRenderer renderer = new MultiVideoGridJob.ImageGridRenderer(4, 3, 1000, 0)
+                .withCameras(Arrays.asList(5, 3));
+        MapState<Integer, RawVideoFrame> tiles = new HeapMapState<>();
+        RawVideoFrame camera3 = tile(3, 900, 1);
+        RawVideoFrame grid = renderer.render(accum(camera3), 999, tiles);
+        // The layout is sized for both cameras although only one has an image.
+        assertArrayEquals(gridPixels(2, Collections.singletonMap(1, camera3)), grid.pixels);
+
+        // Camera 7 is not in the grid, so its image is ignored and the layout does not change.
+        RawVideoFrame camera5 = tile(5, 1900, 2);
+        grid = renderer.render(accum(camera5, tile(7, 1900, 3)), 1999, tiles);
+        Map<Integer, RawVideoFrame> expected = new HashMap<>();
+        expected.put(0, camera5);
+        expected.put(1, camera3);
+        assertArrayEquals(gridPixels(2, expected), grid.pixels);
+        assertFalse(tiles.contains(7));
+        assertEquals("2", grid.tags.get("numCameras"));
+    }
+
+    @Test
+    public void testGridRendererSparseCameraIds() throws Exception {
+        // Without a camera list, the position of a tile is its camera ID, which may be outside of the grid.
+        MultiVideoGridJob.ImageGridRenderer renderer = new MultiVideoGridJob.ImageGridRenderer(4, 3, 1000, 0)
+                .withMaxTileAgeMs(1000);
+        MapState<Integer, RawVideoFrame> tiles = new HeapMapState<>();
+        RawVideoFrame grid = renderer.render(accum(tile(3, 900, 1)), 999, tiles);
+        assertArrayEquals(gridPixels(1, Collections.emptyMap()), grid.pixels);
+        assertEquals("1", grid.tags.get("numCameras"));
+
+        RawVideoFrame camera0 = tile(0, 1900, 2);
+        RawVideoFrame camera3 = tile(3, 1900, 3);
+        grid = renderer.render(accum(camera0, camera3, tile(9, 1900, 4)), 1999, tiles);
+        Map<Integer, RawVideoFrame> expected = new HashMap<>();
+        expected.put(0, camera0);
+        expected.put(3, camera3);
+        assertArrayEquals(gridPixels(3, expected), grid.pixels);
+
+        // The stale tile of camera 9 is cleared without changing the layout.
+        grid = renderer.render(accum(tile(0, 2500, 5), tile(3, 2500, 6)), 2999, tiles);
+        assertFalse(tiles.contains(9));
+        assertEquals("2", grid.tags.get("numCameras"));
+    }
+
+    @Test
+    public void testGridBuilderIgnoresPositionsOutsideOfGrid() {
+        RawVideoFrame image = randomFrame(4, 3, 1);
+        ImageGridBuilder builder = new ImageGridBuilder(4, 3, 2);
+        builder.addImage(0, image);
+        byte[] expected = builder.getOutputImage(new VideoFrame()).pixels;
+        builder.addImage(4, randomFrame(4, 3, 2));
+        builder.addImage(-1, randomFrame(4, 3, 3));
+        builder.clearImage(7);
+        assertArrayEquals(expected, builder.getOutputImage(new VideoFrame()).pixels);
+    }
+
+    @Test
+    public void testGridRendererIgnoresRestoredTilesOfOtherCameras() throws Exception {
+        // The state was written by a job without a camera list or with a different one.
+        MapState<Integer, RawVideoFrame> tiles = new HeapMapState<>();
+        RawVideoFrame camera3 = tile(3, 900, 1);
+        tiles.put(3, camera3);
+        tiles.put(9, tile(9, 900, 2));
+        MultiVideoGridJob.ImageGridRenderer renderer = new MultiVideoGridJob.ImageGridRenderer(4, 3, 1000, 0)
+                .withCameras(Arrays.asList(3, 5));
+        RawVideoFrame grid = renderer.render(accum(), 999, tiles);
+        assertArrayEquals(gridPixels(2, Collections.singletonMap(0, camera3)), grid.pixels);
+        assertFalse(tiles.contains(9));
+        assertEquals("1", grid.tags.get("numCameras"));
+    }
+
+    @Test
+    public void testEncodedGridImages() throws Exception {
+        ImageGridBuilder builder = new ImageGridBuilder(100, 100, 4);
+        for (int camera = 0; camera < 4; camera++) {
+            builder.addImage(camera, new ImageGenerator(100, 100).generate(camera, 0));
+        }
+        VideoFrame header = new VideoFrame();
+        header.camera = 1000;
+        header.frameNumber = 7;
+        header.timestamp = new Timestamp(1000);
+        RawVideoFrame gridImage = builder.getOutputImage(header);
+        byte[] expected = builder.getOutputImageBytes("png");
+        // The output image is a copy, so it is not changed by later tiles.
+        builder.addImage(0, new ImageGenerator(100, 100).generate(0, 1));
+
+        VideoFrameEncoder encoder = new VideoFrameEncoder(HashAlgorithm.XXHASH64);
+        encoder.open(new Configuration());
+        VideoFrame frame = encoder.map(gridImage);
+        encoder.close();
+        assertArrayEquals(expected, frame.data);
+        assertEquals(ImageFormat.PNG, frame.imageFormat);
+        assertEquals(1000, frame.camera);
+        assertEquals(7, frame.frameNumber);
+        frame.validateHash();
+
+        // Frames encoded in parallel are released in frameNumber order once the watermark passes them.
+        List<VideoFrame> buffered = new ArrayList<>();
+        for (int frameNumber : new int[]{12, 10, 13, 11}) {
+            VideoFrame encoded = new VideoFrame();
+            encoded.frameNumber = frameNumber;
+            encoded.timestamp = new Timestamp(frameNumber * 100);
+            buffered.add(encoded);
+        }
+        List<VideoFrame> released = VideoFrameReorderer.release(buffered, 1250);
+        assertEquals(3, released.size());
+        for (int i = 0; i < released.size(); i++) {
+            assertEquals(10 + i, released.get(i).frameNumber);
+        }
+
+        // After the renderer restarts, frame numbers start again at 0 and the timestamp determines the order.
+        buffered.clear();
+        long[] timestamps = {2000, 1900, 1900, 2100};
+        int[] frameNumbers = {1, 20, 19, 2};
+        for (int i = 0; i < timestamps.length; i++) {
+            VideoFrame encoded = new VideoFrame();
+            encoded.frameNumber = frameNumbers[i];
+            encoded.timestamp = new Timestamp(timestamps[i]);
+            buffered.add(encoded);
+        }
+        released = VideoFrameReorderer.release(buffered, 2100);
+        assertEquals(4, released.size());
+        int[] expectedFrameNumbers = {19, 20, 1, 2};
+        for (int i = 0; i < released.size(); i++) {
+            assertEquals(expectedFrameNumbers[i], released.get(i).frameNumber);
+        }
+    }
+
+    @Test
+    public void testParallelGridMatchesSequentialGrid() throws Exception {
+        Map<Integer, byte[]> encodedImages = new HashMap<>();
+        Map<Integer, RawVideoFrame> rawImages = new HashMap<>();
+        for (int camera = 0; camera < 9; camera++) {
+            encodedImages.put(camera, new ImageGenerator(120, 90).generate(camera, 0));
+            rawImages.put(camera, randomFrame(40, 30, camera));
+        }
+        rawImages.put(4, new RawVideoFrame(new VideoFrame(), 40, 30, PixelFormat.GRAY8, new byte[40 * 30]));
+        ImageGridBuilder sequentialBuilder = new ImageGridBuilder(40, 30, 9);
+        sequentialBuilder.addImages(encodedImages);
+        byte[] expectedEncoded = sequentialBuilder.getOutputImageBytes("png");
+        sequentialBuilder.addRawImages(rawImages);
+        byte[] expectedRaw = sequentialBuilder.getOutputImageBytes("png");
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            ImageGridBuilder parallelBuilder = new ImageGridBuilder(40, 30, 9).withExecutor(executor);
+            parallelBuilder.addImages(encodedImages);
+            assertArrayEquals(expectedEncoded, parallelBuilder.getOutputImageBytes("png"));
+            parallelBuilder.addRawImages(rawImages);
+            assertArrayEquals(expectedRaw, parallelBuilder.getOutputImageBytes("png"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testGrayRawImage() throws Exception {
+        VideoFrame header = new VideoFrame();
+        byte[] pixels = new byte[4 * 3];
+        pixels[5] = (byte) 200;
+        ImageGridBuilder builder = new ImageGridBuilder(4, 3, 1);
+        builder.addImage(0, new RawVideoFrame(header, 4, 3, PixelFormat.GRAY8, pixels));
+        BufferedImage actual = ImageIO.read(new ByteArrayInputStream(builder.getOutputImageBytes("png")));
+        assertEquals(0xFF000000, actual.getRGB(0, 0));
+        assertEquals(200, actual.getRGB(1, 1) & 0xFF);
+    }
+
+    private static RawVideoFrame randomFrame(int width, int height, long seed) {
+        byte[] pixels = new byte[width * height * 3];
+        new Random(seed).nextBytes(pixels);
+        return new RawVideoFrame(new VideoFrame(), width, height, PixelFormat.BGR24, pixels);
+    }
+
+    @Test
+    public void testFlatImageIsUnchanged() {
+        RawVideoFrame frame = new RawVideoFrame(new VideoFrame(), 97, 61, PixelFormat.BGR24, new byte[97 * 61 * 3]);
+        Arrays.fill(frame.pixels, (byte) 201);
+        for (ResizeAlgorithm algorithm : ResizeAlgorithm.values()) {
+            for (int[] size : new int[][]{{20, 13}, {300, 200}, {97, 30}}) {
+                RawVideoFrame result = new ImageResizer(size[0], size[1]).withAlgorithm(algorithm).resize(frame);
+                for (int i = 0; i < size[0] * size[1] * 3; i++) {
+                    assertEquals(algorithm.name(), 201, result.pixels[i] & 0xFF);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNearest() {
+        byte[] pixels = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15};
+        RawVideoFrame frame = new RawVideoFrame(new VideoFrame(), 4, 4, PixelFormat.GRAY8, pixels);
+        RawVideoFrame result = new ImageResizer(2, 2).withAlgorithm(ResizeAlgorithm.NEAREST).resize(frame);
+        assertArrayEquals(new byte[]{5, 7, 13, 15}, result.pixels);
+    }
+
+    @Test
+    public void testAreaAverageOfIntegerReduction() {
+        byte[] pixels = {0, 2, 10, 20, 4, 6, 30, 40};
+        RawVideoFrame frame = new RawVideoFrame(new VideoFrame(), 4, 2, PixelFormat.GRAY8, pixels);
+        RawVideoFrame result = new ImageResizer(2, 1).withAlgorithm(ResizeAlgorithm.AREA_AVERAGE).resize(frame);
+        assertArrayEquals(new byte[]{3, 25}, result.pixels);
+    }
+
+    /**
+     * AREA_AVERAGE replaces SMOOTH so it must give nearly the same result.
+     */
+    @Test
+    public void testAreaAverageMatchesSmooth() {
+        for (int[] size : new int[][]{{450, 450, 100, 100}, {200, 150, 53, 41}, {40, 30, 100, 70}}) {
+            RawVideoFrame frame = randomFrame(size[0], size[1], 1);
+            ImageResizer resizer = new ImageResizer(size[2], size[3]);
+            byte[] expected = resizer.withAlgorithm(ResizeAlgorithm.SMOOTH).resize(frame).pixels;
+            byte[] actual = resizer.withAlgorithm(ResizeAlgorithm.AREA_AVERAGE).resize(frame).pixels;
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals((double) (expected[i] & 0xFF), (double) (actual[i] & 0xFF), 2.0);
+            }
+        }
+    }
+
+    @Test
+    public void testLargeReduction() {
+        RawVideoFrame frame = randomFrame(1920, 1080, 2);
+        for (ResizeAlgorithm algorithm : ResizeAlgorithm.values()) {
+            RawVideoFrame result = new ImageResizer(450, 253).withAlgorithm(algorithm).resize(frame);
+            assertEquals(450, result.width);
+            assertEquals(253, result.height);
+            assertEquals(450 * 253 * 3, result.pixels.length);
+        }
+    }
+
+    private static VideoFrame pngFrame(BufferedImage image) throws Exception {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outStream);
+        VideoFrame frame = new VideoFrame();
+        frame.data = outStream.toByteArray();
+        return frame;
+    }
+
+    /**
+     * Output of a reused resizer must not share the reused buffers, even when the size is unchanged.
+     */
+    @Test
+    public void testReusedResizer() throws Exception {
+        ImageResizer resizer = new ImageResizer(40, 30);
+        VideoFrame first = new VideoFrame();
+        first.data = new ImageGenerator(40, 30).generate(1, 0);
+        VideoFrame second = new VideoFrame();
+        second.data = new ImageGenerator(40, 30).generate(2, 1);
+        RawVideoFrame firstResult = resizer.decodeAndResize(first);
+        byte[] expected = firstResult.pixels.clone();
+        RawVideoFrame secondResult = resizer.decodeAndResize(second);
+        assertArrayEquals(expected, firstResult.pixels);
+        assertFalse(Arrays.equals(expected, secondResult.pixels));
+        assertArrayEquals(expected, new ImageResizer(40, 30).decodeAndResize(first).pixels);
+
+        // Images of other types and sizes.
+        BufferedImage grayImage = new BufferedImage(80, 60, BufferedImage.TYPE_BYTE_GRAY);
+        grayImage.getRaster().setSample(2, 2, 0, 100);
+        RawVideoFrame grayResult = resizer.decodeAndResize(pngFrame(grayImage));
+        assertEquals(PixelFormat.GRAY8, grayResult.pixelFormat);
+        assertEquals(25, grayResult.pixels[1 * 40 + 1] & 0xFF);
+        BufferedImage alphaImage = new BufferedImage(40, 30, BufferedImage.TYPE_INT_ARGB);
+        alphaImage.setRGB(3, 4, 0xFF102030);
+        RawVideoFrame alphaResult = resizer.decodeAndResize(pngFrame(alphaImage));
+        assertEquals(PixelFormat.BGR24, alphaResult.pixelFormat);
+        assertEquals(0x30, alphaResult.pixels[(4 * 40 + 3) * 3] & 0xFF);
+        assertArrayEquals(expected, resizer.decodeAndResize(first).pixels);
+    }
+
+    /**
+     * Compares the time and allocated bytes of creating an ImageResizer for each frame with reusing one.
+     */
+    @Test
+    @Ignore
+    public void benchmarkReusedResizer() throws Exception {
+        VideoFrame frame = new VideoFrame();
+        frame.data = new ImageGenerator(450, 450).generate(1, 0);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int iterations = 500;
+        for (int pass = 0; pass < 2; pass++) {
+            long startNanos = System.nanoTime();
+            long startBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < iterations; i++) {
+                new ImageResizer(100, 100).decodeAndResize(frame);
+            }
+            log.info("new resizer per frame: {} us, {} KB allocated per frame",
+                    String.format("%.1f", (System.nanoTime() - startNanos) / 1000.0 / iterations),
+                    (threadMXBean.getThreadAllocatedBytes(threadId) - startBytes) / 1024 / iterations);
+            ImageResizer resizer = new ImageResizer(100, 100);
+            startNanos = System.nanoTime();
+            startBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < iterations; i++) {
+                resizer.decodeAndResize(frame);
+            }
+            log.info("reused resizer: {} us, {} KB allocated per frame",
+                    String.format("%.1f", (System.nanoTime() - startNanos) / 1000.0 / iterations),
+                    (threadMXBean.getThreadAllocatedBytes(threadId) - startBytes) / 1024 / iterations);
+        }
+    }
+
+    @Test
+    public void testDecodeRegion() throws Exception {
+        BufferedImage image = new BufferedImage(80, 60, BufferedImage.TYPE_3BYTE_BGR);
+        image.setRGB(30, 20, 0xFF102030);
+        image.setRGB(79, 59, 0xFF405060);
+        VideoFrame frame = pngFrame(image);
+        frame.camera = 2;
+        ImageDecoder decoder = new ImageDecoder();
+        RawVideoFrame result = decoder.decode(new ByteArrayImageInputStream(frame.data), frame,
+                new Rectangle(30, 20, 10, 5), 0, 0);
+        assertEquals(10, result.width);
+        assertEquals(5, result.height);
+        assertEquals(2, result.camera);
+        assertEquals(0x30, result.pixels[0] & 0xFF);
+        assertEquals(0x10, result.pixels[2] & 0xFF);
+        // The region is clipped to the image.
+        result = decoder.decode(new ByteArrayImageInputStream(frame.data), frame,
+                new Rectangle(70, 50, 100, 100), 0, 0);
+        assertEquals(10, result.width);
+        assertEquals(10, result.height);
+        assertEquals(0x60, result.pixels[(9 * 10 + 9) * 3] & 0xFF);
+
+        ImageResizer resizer = new ImageResizer(10, 5)
+                .withAlgorithm(ResizeAlgorithm.NEAREST)
+                .withCameraRegions(Collections.singletonMap(2, new Rectangle(30, 20, 10, 5)));
+        assertEquals(0x30, resizer.decodeAndResize(frame).pixels[0] & 0xFF);
+    }
+
+    @Test
+    public void testDecodeSubsampling() throws Exception {
+        BufferedImage image = new BufferedImage(100, 60, BufferedImage.TYPE_3BYTE_BGR);
+        image.setRGB(0, 0, 0xFF102030);
+        image.setRGB(3, 0, 0xFF405060);
+        image.setRGB(4, 0, 0xFF708090);
+        VideoFrame frame = pngFrame(image);
+        ImageDecoder decoder = new ImageDecoder();
+        // Keep at least 20x20 pixels: every 5th column and every 3rd row.
+        RawVideoFrame result = decoder.decode(new ByteArrayImageInputStream(frame.data), frame, null, 20, 20);
+        assertEquals(20, result.width);
+        assertEquals(20, result.height);
+        assertEquals(0x30, result.pixels[0] & 0xFF);
+        assertEquals(0, result.pixels[3] & 0xFF);
+        // Subsampling applies to the region, which starts at the first pixel of the region.
+        result = decoder.decode(new ByteArrayImageInputStream(frame.data), frame, new Rectangle(3, 0, 90, 60), 40, 0);
+        assertEquals(45, result.width);
+        assertEquals(60, result.height);
+        assertEquals(0x60, result.pixels[0] & 0xFF);
+        assertEquals(0, result.pixels[3] & 0xFF);
+
+        // The resized image is the same size with or without subsampling.
+        RawVideoFrame subsampled = new ImageResizer(10, 10).withDecodeSubsampling(true).decodeAndResize(frame);
+        assertEquals(10, subsampled.width);
+        assertEquals(10, subsampled.height);
+    }
+
+    @Test
+    public void testReadHeader() throws Exception {
+        ImageDecoder.Header header = ImageDecoder.readHeader(new ImageGenerator(40, 30).generate(1, 0));
+        assertEquals(40, header.width);
+        assertEquals(30, header.height);
+        assertEquals(3, header.numColorComponents);
+        assertEquals("png", header.formatName);
+    }
+
+    @Test
+    public void testParseCameraRegions() {
+        Map<Integer, Rectangle> regions = VideoAppConfiguration.parseCameraRegions(" 0:100,50,640,480; 3:0,0,320,240;");
+        assertEquals(2, regions.size());
+        assertEquals(new Rectangle(100, 50, 640, 480), regions.get(0));
+        assertEquals(new Rectangle(0, 0, 320, 240), regions.get(3));
+        assertTrue(VideoAppConfiguration.parseCameraRegions("").isEmpty());
+        try {
+            VideoAppConfiguration.parseCameraRegions("1:0,0,10");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testParseCameras() {
+        assertEquals(Arrays.asList(3, 0, 7), VideoAppConfiguration.parseCameras(" 3, 0,7,"));
+        assertTrue(VideoAppConfiguration.parseCameras("").isEmpty());
+        try {
+            VideoAppConfiguration.parseCameras("1,2,1");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Compares the cost of decoding and resizing a large image with and without decode subsampling.
+     */
+    @Test
+    @Ignore
+    public void benchmarkDecodeSubsampling() throws Exception {
+        VideoFrame frame = new VideoFrame();
+        frame.data = new ImageGenerator(1920, 1080).generate(1, 0);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int iterations = 20;
+        for (int pass = 0; pass < 2; pass++) {
+            for (boolean decodeSubsampling : new boolean[]{false, true}) {
+                ImageResizer resizer = new ImageResizer(100, 100).withDecodeSubsampling(decodeSubsampling);
+                resizer.decodeAndResize(frame);
+                long startNanos = System.nanoTime();
+                long startBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+                for (int i = 0; i < iterations; i++) {
+                    resizer.decodeAndResize(frame);
+                }
+                log.info("decodeSubsampling={}: {} us, {} KB allocated per frame", decodeSubsampling,
+                        String.format("%.1f", (System.nanoTime() - startNanos) / 1000.0 / iterations),
+                        (threadMXBean.getThreadAllocatedBytes(threadId) - startBytes) / 1024 / iterations);
+            }
+        }
+    }
+
+    /**
+     * Images with smooth areas and noise, so that each filter is chosen by ADAPTIVE for some rows.
+     */
+    private static RawVideoFrame pngTestFrame(int width, int height, PixelFormat pixelFormat) {
+        int bytesPerPixel = pixelFormat.getBytesPerPixel();
+        byte[] pixels = new byte[width * height * bytesPerPixel];
+        Random random = new Random(0);
+        for (int y = 0; y < height; y++) {
+            for (int i = 0; i < width * bytesPerPixel; i++) {
+                pixels[y * width * bytesPerPixel + i] = (byte) (y % 7 == 0 ? random.nextInt() : (i * 3 + y * 5 + i / bytesPerPixel % 3));
+            }
+        }
+        return new RawVideoFrame(new VideoFrame(), width, height, pixelFormat, pixels);
+    }
+
+    @Test
+    public void testPngEncoderRoundTrip() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (PixelFormat pixelFormat : PixelFormat.values()) {
+                RawVideoFrame frame = pngTestFrame(61, 47, pixelFormat);
+                for (PngEncoder.Filter filter : PngEncoder.Filter.values()) {
+                    for (int stripeSize : new int[]{100, 1000, 1 << 20}) {
+                        PngEncoder encoder = new PngEncoder(stripeSize == 1000 ? executor : null)
+                                .withFilter(filter)
+                                .withStripeSize(stripeSize)
+                                .withCompressionLevel(stripeSize == 100 ? 1 : 9);
+                        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(encoder.encode(frame)));
+                        RawVideoFrame actual = RawImages.fromBufferedImage(new VideoFrame(), decoded);
+                        String message = pixelFormat + " " + filter + " " + stripeSize;
+                        assertEquals(message, pixelFormat, actual.pixelFormat);
+                        assertArrayEquals(message, frame.pixels, actual.pixels);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCombineAdler32() {
+        byte[] data = new byte[100000];
+        new Random(0).nextBytes(data);
+        Adler32 whole = new Adler32();
+        whole.update(data);
+        Adler32 first = new Adler32();
+        first.update(data, 0, 70000);
+        Adler32 second = new Adler32();
+        second.update(data, 70000, 30000);
+        assertEquals(whole.getValue(), PngEncoder.combineAdler32(first.getValue(), second.getValue(), 30000));
+        assertEquals(first.getValue(), PngEncoder.combineAdler32(1, first.getValue(), 70000));
+    }
+
+    /**
+     * A 1600x1600 image with gradients, shapes and mild noise, which compresses more like camera images
+     * than the noise backgrounds of generated images.
+     */
+    private static BufferedImage smoothImage() {
+        BufferedImage image = new BufferedImage(1600, 1600, TYPE_3BYTE_BGR);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setPaint(new GradientPaint(0, 0, new Color(30, 60, 120), 1600, 1600, new Color(220, 200, 150)));
+        graphics.fillRect(0, 0, 1600, 1600);
+        Random random = new Random(0);
+        for (int i = 0; i < 200; i++) {
+            graphics.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            graphics.fillOval(random.nextInt(1600), random.nextInt(1600), 20 + random.nextInt(200), 20 + random.nextInt(200));
+        }
+        graphics.dispose();
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) Math.max(0, Math.min(255, (pixels[i] & 0xff) + random.nextInt(5) - 2));
+        }
+        return image;
+    }
+
+    /**
+     * Compares the ImageIO PNG writer with PngEncoder for a large grid of generated images, whose backgrounds are noise,
+     * and for a large smooth image.
+     */
+    @Test
+    @Ignore
+    public void benchmarkPngEncoder() throws Exception {
+        ImageGridBuilder builder = new ImageGridBuilder(200, 200, 64);
+        for (int camera = 0; camera < 64; camera++) {
+            builder.addImage(camera, new ImageGenerator(200, 200).generate(camera, 0));
+        }
+        BufferedImage noisyImage = ImageIO.read(new ByteArrayInputStream(builder.getOutputImageBytes("png")));
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        int iterations = 5;
+        try {
+            for (int pass = 0; pass < 4; pass++) {
+                BufferedImage image = pass % 2 == 0 ? noisyImage : smoothImage();
+                log.info("{} image", pass % 2 == 0 ? "Noisy" : "Smooth");
+                long startNanos = System.nanoTime();
+                int size = 0;
+                for (int i = 0; i < iterations; i++) {
+                    ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+                    ImageIO.write(image, "png", outStream);
+                    size = outStream.size();
+                }
+                log.info("ImageIO: {} ms, {} bytes", (System.nanoTime() - startNanos) / 1000000 / iterations, size);
+                for (int level : new int[]{1, 6}) {
+                    for (PngEncoder.Filter filter : new PngEncoder.Filter[]{PngEncoder.Filter.UP, PngEncoder.Filter.ADAPTIVE}) {
+                        for (ExecutorService encoderExecutor : new ExecutorService[]{null, executor}) {
+                            PngEncoder encoder = new PngEncoder(encoderExecutor).withCompressionLevel(level).withFilter(filter);
+                            startNanos = System.nanoTime();
+                            for (int i = 0; i < iterations; i++) {
+                                size = encoder.encode(image).length;
+                            }
+                            log.info("PngEncoder level {} {} with {} threads: {} ms, {} bytes",
+                                    level, filter, encoderExecutor == null ? 1 : threads,
+                                    (System.nanoTime() - startNanos) / 1000000 / iterations, size);
+                        }
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testImageIoCodec() {
+        ImageCodec codec = new ImageCodecOptions().withJpegQuality(100).createCodec();
+        RawVideoFrame frame = pngTestFrame(64, 48, PixelFormat.BGR24);
+        frame.camera = 3;
+        byte[] png = codec.encode(frame, "png");
+        RawVideoFrame decoded = codec.decode(png, frame);
+        assertEquals(3, decoded.camera);
+        assertArrayEquals(frame.pixels, decoded.pixels);
+        RawVideoFrame region = codec.decode(png, frame, new Rectangle(10, 20, 5, 4), 0, 0);
+        assertEquals(5, region.width);
+        assertEquals(4, region.height);
+        assertEquals(frame.pixels[(20 * 64 + 10) * 3], region.pixels[0]);
+
+        BufferedImage flat = new BufferedImage(64, 48, TYPE_3BYTE_BGR);
+        Graphics2D g2d = flat.createGraphics();
+        g2d.setColor(new Color(10, 100, 200));
+        g2d.fillRect(0, 0, 64, 48);
+        g2d.dispose();
+        byte[] jpeg = codec.encode(RawImages.fromBufferedImage(new VideoFrame(), flat), "jpeg");
+        RawVideoFrame decodedJpeg = codec.decode(jpeg, new VideoFrame());
+        assertEquals(64, decodedJpeg.width);
+        assertEquals(200, decodedJpeg.pixels[0] & 0xFF, 3);
+    }
+
+    /**
+     * Skipped when the OpenCV native libraries are not available for this platform.
+     */
+    @Test
+    public void testOpenCvCodec() throws Exception {
+        Assume.assumeTrue("OpenCV native libraries are not available", openCvAvailable());
+        ImageCodec codec = new ImageCodecOptions().withBackend(ImageCodecOptions.Backend.OPENCV).withJpegQuality(100).createCodec();
+        ImageCodec imageIoCodec = new ImageCodecOptions().createCodec();
+        RawVideoFrame frame = pngTestFrame(64, 48, PixelFormat.BGR24);
+        frame.camera = 3;
+        byte[] png = codec.encode(frame, "png");
+        assertEquals("png", ImageDecoder.readHeader(png).formatName);
+        RawVideoFrame decoded = codec.decode(png, frame);
+        assertEquals(3, decoded.camera);
+        assertEquals(64, decoded.width);
+        assertEquals(48, decoded.height);
+        assertArrayEquals(frame.pixels, decoded.pixels);
+        assertArrayEquals(frame.pixels, imageIoCodec.decode(png, frame).pixels);
+        assertArrayEquals(frame.pixels, codec.decode(imageIoCodec.encode(frame, "png"), frame).pixels);
+        RawVideoFrame region = codec.decode(png, frame, new Rectangle(10, 20, 5, 4), 0, 0);
+        assertEquals(5, region.width);
+        assertEquals(4, region.height);
+        assertEquals(frame.pixels[(20 * 64 + 10) * 3], region.pixels[0]);
+        RawVideoFrame reduced = codec.decode(png, frame, null, 16, 12);
+        assertEquals(16, reduced.width);
+        assertEquals(12, reduced.height);
+
+        BufferedImage flat = new BufferedImage(64, 48, TYPE_3BYTE_BGR);
+        Graphics2D g2d = flat.createGraphics();
+        g2d.setColor(new Color(10, 100, 200));
+        g2d.fillRect(0, 0, 64, 48);
+        g2d.dispose();
+        byte[] jpeg = codec.encode(RawImages.fromBufferedImage(new VideoFrame(), flat), "jpeg");
+        assertEquals("JPEG", ImageDecoder.readHeader(jpeg).formatName);
+        RawVideoFrame decodedJpeg = codec.decode(jpeg, new VideoFrame());
+        assertEquals(64, decodedJpeg.width);
+        assertEquals(200, decodedJpeg.pixels[0] & 0xFF, 3);
+        RawVideoFrame reducedJpeg = codec.decode(jpeg, new VideoFrame(), null, 8, 6);
+        assertEquals(8, reducedJpeg.width);
+        assertEquals(6, reducedJpeg.height);
+        assertEquals(200, reducedJpeg.pixels[0] & 0xFF, 3);
+    }
+
+    private static boolean openCvAvailable() {
+        try {
+            Loader.load(opencv_imgcodecs.class);
+            return true;
+        } catch (LinkageError e) {
+            log.warn("OpenCV native libraries are not available: {}", e.toString());
+            return false;
+        }
+    }
+
+    @Test
+    public void testQoiCodec() throws Exception {
+        for (ImageCodecOptions.Backend backend : ImageCodecOptions.Backend.values()) {
+            // QOI does not use the OpenCV native libraries.
+            ImageCodec codec = new ImageCodecOptions().withBackend(backend).createCodec();
+            RawVideoFrame frame = pngTestFrame(64, 48, PixelFormat.BGR24);
+            byte[] qoi = codec.encode(frame, ImageFormat.QOI.getFormatName());
+            ImageDecoder.Header header = ImageDecoder.readHeader(qoi);
+            assertEquals("qoi", header.formatName);
+            assertEquals(64, header.width);
+            assertEquals(48, header.height);
+            assertArrayEquals(frame.pixels, codec.decode(qoi, frame).pixels);
+            RawVideoFrame region = codec.decode(qoi, frame, new Rectangle(10, 20, 100, 4), 8, 2);
+            assertEquals(54, region.width);
+            assertEquals(4, region.height);
+            assertEquals(frame.pixels[(20 * 64 + 10) * 3], region.pixels[0]);
+        }
+    }
+
+    @Test
+    public void testGridOutputImageFormats() throws Exception {
+        ImageCodec codec = new ImageCodecOptions().createCodec();
+        ImageGridBuilder builder = new ImageGridBuilder(200, 200, 4);
+        Map<Integer, RawVideoFrame> images = new HashMap<>();
+        for (int camera = 0; camera < 4; camera++) {
+            VideoFrame header = new VideoFrame();
+            header.camera = camera;
+            images.put(camera, codec.decode(new ImageGenerator(200, 200).generate(camera, 0), header));
+        }
+        builder.addRawImages(images);
+        byte[] png = builder.getOutputImageBytes(ImageFormat.PNG.getFormatName());
+        byte[] qoi = builder.getOutputImageBytes(ImageFormat.QOI.getFormatName());
+        byte[] jpeg = builder.getOutputImageBytes(ImageFormat.JPEG.getFormatName());
+        assertEquals("png", ImageDecoder.readHeader(png).formatName);
+        assertEquals("JPEG", ImageDecoder.readHeader(jpeg).formatName);
+        assertArrayEquals(codec.decode(png, new VideoFrame()).pixels, codec.decode(qoi, new VideoFrame()).pixels);
+        assertTrue(jpeg.length < png.length);
+    }
+
+    @Test
+    public void testFastImageGenerator() throws Exception {
+        FastImageGenerator generator = new FastImageGenerator(150, 150).withSeed(5).withPoolSize(3);
+        byte[] png = generator.generate(12, 345);
+        assertArrayEquals(png, new FastImageGenerator(150, 150).withSeed(5).withPoolSize(3).generate(12, 345));
+        assertFalse(Arrays.equals(png, generator.generate(12, 348)));
+        assertFalse(Arrays.equals(png, new FastImageGenerator(150, 150).withSeed(6).generate(12, 345)));
+
+        // Check the CRC-32 of each chunk. The Adler-32 of the image data is checked by the decoder.
+        ByteBuffer buf = ByteBuffer.wrap(png, 8, png.length - 8);
+        while (buf.hasRemaining()) {
+            int length = buf.getInt();
+            CRC32 crc = new CRC32();
+            crc.update(png, buf.position(), 4 + length);
+            buf.position(buf.position() + 4 + length);
+            assertEquals((int) crc.getValue(), buf.getInt());
+        }
+
+        // The pre-encoded PNG must have the same pixels as an image stamped from the decoded background.
+        RawVideoFrame fromPng = RawImages.fromBufferedImage(new VideoFrame(), ImageIO.read(new ByteArrayInputStream(png)));
+        FastImageGenerator qoiGenerator = new FastImageGenerator(150, 150).withSeed(5).withPoolSize(3);
+        qoiGenerator.withImageFormat(ImageFormat.QOI);
+        RawVideoFrame fromQoi = new ImageCodecOptions().createCodec().decode(qoiGenerator.generate(12, 345), new VideoFrame());
+        assertArrayEquals(fromPng.pixels, fromQoi.pixels);
+
+        // The text must be drawn in white.
+        int white = 0;
+        for (int i = 0; i < fromPng.pixels.length; i += 3) {
+            if (fromPng.pixels[i] == -1 && fromPng.pixels[i + 1] == -1 && fromPng.pixels[i + 2] == -1) {
+                white++;
+            }
+        }
+        assertTrue(white > 200);
+    }
+
+    /**
+     * Compares the cost of ImageGenerator and FastImageGenerator.
+     */
+    @Test
+    @Ignore
+    public void benchmarkImageGenerators() {
+        for (int size : new int[]{450, 1080}) {
+            for (ImageFormat imageFormat : new ImageFormat[]{ImageFormat.PNG, ImageFormat.JPEG}) {
+                ImageGenerator slow = new ImageGenerator(size, size).withImageFormat(imageFormat);
+                FastImageGenerator fast = new FastImageGenerator(size, size);
+                fast.withImageFormat(imageFormat);
+                for (int pass = 0; pass < 2; pass++) {
+                    int iterations = (int) Math.max(5, 20000000L / (size * size));
+                    long startNanos = System.nanoTime();
+                    for (int i = 0; i < iterations / 10 + 1; i++) {
+                        slow.generate(1, i);
+                    }
+                    long slowNanos = (System.nanoTime() - startNanos) / (iterations / 10 + 1);
+                    startNanos = System.nanoTime();
+                    int bytes = 0;
+                    for (int i = 0; i < iterations; i++) {
+                        bytes = fast.generate(1, i).length;
+                    }
+                    long fastNanos = (System.nanoTime() - startNanos) / iterations;
+                    log.info("{}x{} {}: ImageGenerator {} us, FastImageGenerator {} us ({} bytes)",
+                            size, size, imageFormat, slowNanos / 1000, fastNanos / 1000, bytes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the ImageIO and OpenCV codecs on the frame sizes used by the jobs.
+     * OpenCV requires the native libraries of javacv for this platform.
+     */
+    @Test
+    @Ignore
+    public void benchmarkImageCodecs() {
+        boolean openCvAvailable = openCvAvailable();
+        for (int size : new int[]{100, 450, 1080}) {
+            byte[] png = new ImageGenerator(size, size).generate(1, 0);
+            RawVideoFrame frame = new ImageCodecOptions().createCodec().decode(png, new VideoFrame());
+            frame.pixels = frame.pixels.clone();
+            int iterations = (int) Math.max(10, 2000000L / (size * size));
+            for (int pass = 0; pass < 2; pass++) {
+                for (ImageCodecOptions.Backend backend : ImageCodecOptions.Backend.values()) {
+                    if (backend == ImageCodecOptions.Backend.OPENCV && !openCvAvailable) {
+                        continue;
+                    }
+                    ImageCodec codec = new ImageCodecOptions().withBackend(backend).createCodec();
+                    byte[] jpeg = codec.encode(frame, "jpeg");
+                    byte[] qoi = codec.encode(frame, "qoi");
+                    long startNanos = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) {
+                        codec.decode(png, frame);
+                    }
+                    long decodePngNanos = (System.nanoTime() - startNanos) / iterations;
+                    startNanos = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) {
+                        codec.decode(jpeg, frame);
+                    }
+                    long decodeJpegNanos = (System.nanoTime() - startNanos) / iterations;
+                    startNanos = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) {
+                        codec.decode(qoi, frame);
+                    }
+                    long decodeQoiNanos = (System.nanoTime() - startNanos) / iterations;
+                    startNanos = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) {
+                        codec.encode(frame, "png");
+                    }
+                    long encodePngNanos = (System.nanoTime() - startNanos) / iterations;
+                    startNanos = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) {
+                        codec.encode(frame, "jpeg");
+                    }
+                    long encodeJpegNanos = (System.nanoTime() - startNanos) / iterations;
+                    startNanos = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) {
+                        codec.encode(frame, "qoi");
+                    }
+                    long encodeQoiNanos = (System.nanoTime() - startNanos) / iterations;
+                    log.info("{} {}x{}: decode PNG {} us, decode JPEG {} us, decode QOI {} us, "
+                                    + "encode PNG {} us, encode JPEG {} us, encode QOI {} us; "
+                                    + "PNG {} bytes, JPEG {} bytes, QOI {} bytes",
+                            backend, size, size, decodePngNanos / 1000, decodeJpegNanos / 1000, decodeQoiNanos / 1000,
+                            encodePngNanos / 1000, encodeJpegNanos / 1000, encodeQoiNanos / 1000,
+                            png.length, jpeg.length, qoi.length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the cost of each resize algorithm.
+     */
+    @Test
+    @Ignore
+    public void benchmarkResizeAlgorithms() {
+        for (int[] size : new int[][]{{1920, 1080, 450, 450}, {450, 450, 100, 100}}) {
+            RawVideoFrame frame = randomFrame(size[0], size[1], 0);
+            double frameMB = frame.pixels.length / (1024.0 * 1024.0);
+            for (int pass = 0; pass < 2; pass++) {
+                log.info("{}x{} to {}x{}, pass={}", size[0], size[1], size[2], size[3], pass);
+                for (ResizeAlgorithm algorithm : ResizeAlgorithm.values()) {
+                    ImageResizer resizer = new ImageResizer(size[2], size[3]).withAlgorithm(algorithm);
+                    int iterations = (int) Math.max(10, 200 / frameMB / (algorithm == ResizeAlgorithm.SMOOTH ? 20 : 1));
+                    long startNanos = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) {
+                        resizer.resize(frame);
+                    }
+                    double nanosPerFrame = (System.nanoTime() - startNanos) / (double) iterations;
+                    log.info("{}: {} us per frame, {} us per MB of frame data", algorithm,
+                            String.format("%.1f", nanosPerFrame / 1000.0), String.format("%.1f", nanosPerFrame / frameMB / 1000.0));
+                }
+            }
+        }
+    }
 }
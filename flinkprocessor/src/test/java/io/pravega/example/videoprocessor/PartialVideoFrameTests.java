@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.ChunkedVideoFrame;
+import io.pravega.example.video.VideoFrame;
+import org.apache.flink.api.common.functions.util.ListCollector;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.junit.Test;
+
+import java.security.DigestException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PartialVideoFrameTests {
+
+    private static VideoFrame createFrame(int dataSize) {
+        VideoFrame frame = new VideoFrame();
+        frame.camera = 1;
+        frame.ssrc = 2;
+        frame.timestamp = new Timestamp(1561000000000L);
+        frame.frameNumber = 3;
+        frame.data = new byte[dataSize];
+        new Random(0).nextBytes(frame.data);
+        frame.hash = frame.calculateHash();
+        return frame;
+    }
+
+    private static List<ChunkedVideoFrame> chunk(VideoFrame frame, int chunkSizeBytes) {
+        List<ChunkedVideoFrame> chunks = new ArrayList<>();
+        new VideoFrameChunker(chunkSizeBytes).flatMap(frame, new ListCollector<>(chunks));
+        return chunks;
+    }
+
+    private static List<ChunkedVideoFrame> chunkWithChunkHash(VideoFrame frame, int chunkSizeBytes) {
+        List<ChunkedVideoFrame> chunks = new ArrayList<>();
+        new VideoFrameChunker(chunkSizeBytes).withChunkHash(true).flatMap(frame, new ListCollector<>(chunks));
+        return chunks;
+    }
+
+    private static List<ChunkedVideoFrame> chunkWithParity(VideoFrame frame, int chunkSizeBytes, int numParityChunks) {
+        List<ChunkedVideoFrame> chunks = new ArrayList<>();
+        new VideoFrameChunker(chunkSizeBytes).withChunkHash(true).withParityChunks(numParityChunks)
+                .flatMap(frame, new ListCollector<>(chunks));
+        return chunks;
+    }
+
+    @Test
+    public void testInOrder() throws Exception {
+        VideoFrame frame = createFrame(1000);
+        List<ChunkedVideoFrame> chunks = chunk(frame, 300);
+        PartialVideoFrame partialFrame = new PartialVideoFrame(chunks.get(0));
+        for (ChunkedVideoFrame chunk : chunks) {
+            assertFalse(partialFrame.isComplete());
+            partialFrame.add(chunk);
+        }
+        assertTrue(partialFrame.isComplete());
+        assertArrayEquals(frame.data, partialFrame.toVideoFrame().data);
+    }
+
+    @Test
+    public void testOutOfOrder() throws Exception {
+        VideoFrame frame = createFrame(1000);
+        List<ChunkedVideoFrame> chunks = chunk(frame, 300);
+        PartialVideoFrame partialFrame = new PartialVideoFrame(chunks.get(3));
+        for (int i = chunks.size() - 1; i >= 0; i--) {
+            partialFrame.add(chunks.get(i));
+        }
+        VideoFrame result = partialFrame.toVideoFrame();
+        assertArrayEquals(frame.data, result.data);
+        assertEquals(frame.frameNumber, result.frameNumber);
+    }
+
+    @Test
+    public void testSingleChunkIsNotCopied() throws Exception {
+        VideoFrame frame = createFrame(1000);
+        List<ChunkedVideoFrame> chunks = chunk(frame, 1000);
+        assertEquals(1, chunks.size());
+        PartialVideoFrame partialFrame = new PartialVideoFrame(chunks.get(0));
+        partialFrame.add(chunks.get(0));
+        assertSame(chunks.get(0).data, partialFrame.toVideoFrame().data);
+    }
+
+    @Test(expected = ChunkSequenceException.class)
+    public void testIncomplete() throws Exception {
+        List<ChunkedVideoFrame> chunks = chunk(createFrame(1000), 300);
+        PartialVideoFrame partialFrame = new PartialVideoFrame(chunks.get(0));
+        partialFrame.add(chunks.get(0));
+        partialFrame.toVideoFrame();
+    }
+
+    @Test
+    public void testSerializerRoundTrip() throws Exception {
+        VideoFrame frame = createFrame(1000);
+        List<ChunkedVideoFrame> chunks = chunk(frame, 300);
+        PartialVideoFrame partialFrame = new PartialVideoFrame(chunks.get(0));
+        partialFrame.add(chunks.get(0));
+        partialFrame.add(chunks.get(2));
+
+        PartialVideoFrame.Serializer serializer = new PartialVideoFrame.Serializer();
+        DataOutputSerializer out = new DataOutputSerializer(2048);
+        serializer.serialize(partialFrame, out);
+        DataInputDeserializer in = new DataInputDeserializer();
+        in.setBuffer(out.getSharedBuffer(), 0, out.length());
+        PartialVideoFrame result = serializer.deserialize(in);
+        assertEquals(2, result.numChunksReceived);
+        assertNull(result.chunks[1]);
+
+        result.add(chunks.get(1));
+        result.add(chunks.get(3));
+        assertArrayEquals(frame.data, result.toVideoFrame().data);
+    }
+
+    @Test
+    public void testDuplicatesAreIgnored() throws Exception {
+        VideoFrame frame = createFrame(1000);
+        List<ChunkedVideoFrame> chunks = chunk(frame, 300);
+        PartialVideoFrame partialFrame = new PartialVideoFrame(chunks.get(1));
+        assertTrue(partialFrame.add(chunks.get(1)));
+        assertFalse(partialFrame.add(chunks.get(1)));
+        assertTrue(partialFrame.add(chunks.get(0)));
+        assertTrue(partialFrame.add(chunks.get(3)));
+        assertTrue(partialFrame.add(chunks.get(2)));
+        assertTrue(partialFrame.isComplete());
+        assertArrayEquals(frame.data, partialFrame.toVideoFrame().data);
+
+        partialFrame.releaseChunks();
+        assertFalse(partialFrame.add(chunks.get(2)));
+    }
+
+    @Test
+    public void testBufferedBytes() throws Exception {
+        VideoFrame frame = createFrame(1000);
+        List<ChunkedVideoFrame> chunks = chunk(frame, 300);
+        PartialVideoFrame partialFrame = new PartialVideoFrame(chunks.get(0));
+        assertEquals(0, partialFrame.getBufferedBytes());
+        partialFrame.add(chunks.get(3));
+        assertEquals(100, partialFrame.getBufferedBytes());
+        partialFrame.add(chunks.get(0));
+        assertEquals(400, partialFrame.getBufferedBytes());
+        partialFrame.releaseChunks();
+        assertEquals(0, partialFrame.getBufferedBytes());
+    }
+
+    @Test
+    public void testReleasedSerializerRoundTrip() throws Exception {
+        List<ChunkedVideoFrame> chunks = chunk(createFrame(1000), 300);
+        PartialVideoFrame partialFrame = new PartialVideoFrame(chunks.get(0));
+        for (ChunkedVideoFrame chunk : chunks) {
+            partialFrame.add(chunk);
+        }
+        partialFrame.releaseChunks();
+
+        PartialVideoFrame.Serializer serializer = new PartialVideoFrame.Serializer();
+        DataOutputSerializer out = new DataOutputSerializer(2048);
+        serializer.serialize(partialFrame, out);
+        DataInputDeserializer in = new DataInputDeserializer();
+        in.setBuffer(out.getSharedBuffer(), 0, out.length());
+        PartialVideoFrame result = serializer.deserialize(in);
+        assertTrue(result.isReleased());
+        assertTrue(result.isComplete());
+        assertFalse(result.add(chunks.get(0)));
+    }
+
+    @Test
+    public void testReassembleOutOfOrderWithDuplicates() throws Exception {
+        VideoFrame frame = createFrame(1000);
+        List<ChunkedVideoFrame> chunks = chunk(frame, 300);
+        List<ChunkedVideoFrame> elements = new ArrayList<>();
+        elements.add(chunks.get(2));
+        elements.add(chunks.get(0));
+        elements.add(chunks.get(2));
+        elements.add(chunks.get(3));
+        elements.add(chunks.get(1));
+        VideoFrameWindow window = new VideoFrameWindow(chunks.get(0));
+        assertArrayEquals(frame.data, ChunkedVideoFrameReassembler.reassemble(window, elements).data);
+    }
+
+    @Test
+    public void testChunkHashReplacesFrameHash() throws Exception {
+        VideoFrame frame = createFrame(1000);
+        List<ChunkedVideoFrame> chunks = chunkWithChunkHash(frame, 300);
+        PartialVideoFrame partialFrame = new PartialVideoFrame(chunks.get(0));
+        for (ChunkedVideoFrame chunk : chunks) {
+            assertNotNull(chunk.chunkHash);
+            partialFrame.add(chunk);
+        }
+        assertTrue(partialFrame.chunksValidated);
+        // The frame hash is not checked when all chunks have been validated.
+        partialFrame.header.hash = new byte[6];
+        assertArrayEquals(frame.data, partialFrame.toVideoFrame().data);
+    }
+
+    @Test
+    public void testSingleChunkHasNoChunkHash() throws Exception {
+        List<ChunkedVideoFrame> chunks = chunkWithChunkHash(createFrame(1000), 1000);
+        assertEquals(1, chunks.size());
+        assertNull(chunks.get(0).chunkHash);
+    }
+
+    @Test
+    public void testCorruptChunkIsRejected() throws Exception {
+        VideoFrame frame = createFrame(1000);
+        List<ChunkedVideoFrame> chunks = chunkWithChunkHash(frame, 300);
+        PartialVideoFrame partialFrame = new PartialVideoFrame(chunks.get(0));
+        ChunkedVideoFrame corruptChunk = new ChunkedVideoFrame(chunks.get(1));
+        corruptChunk.data = corruptChunk.materializeData().clone();
+        corruptChunk.data[0]++;
+        try {
+            partialFrame.add(corruptChunk);
+            fail();
+        } catch (DigestException e) {
+            // expected
+        }
+        assertEquals(0, partialFrame.numChunksReceived);
+        for (ChunkedVideoFrame chunk : chunks) {
+            assertTrue(partialFrame.add(chunk));
+        }
+        assertArrayEquals(frame.data, partialFrame.toVideoFrame().data);
+    }
+
+    @Test
+    public void testFrameHashIsCheckedWithoutChunkHash() throws Exception {
+        List<ChunkedVideoFrame> chunks = chunk(createFrame(1000), 300);
+        PartialVideoFrame partialFrame = new PartialVideoFrame(chunks.get(0));
+        for (ChunkedVideoFrame chunk : chunks) {
+            partialFrame.add(chunk);
+        }
+        assertFalse(partialFrame.chunksValidated);
+        partialFrame.header.hash = new byte[6];
+        try {
+            partialFrame.toVideoFrame();
+            fail();
+        } catch (DigestException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testParityRecoversAnyLostChunks() throws Exception {
+        VideoFrame frame = createFrame(1000);
+        List<ChunkedVideoFrame> chunks = chunkWithParity(frame, 300, 2);
+        assertEquals(6, chunks.size());
+        for (int lost1 = 0; lost1 < chunks.size(); lost1++) {
+            for (int lost2 = lost1 + 1; lost2 < chunks.size(); lost2++) {
+                PartialVideoFrame partialFrame = null;
+                for (int i = chunks.size() - 1; i >= 0; i--) {
+                    if (i == lost1 || i == lost2) {
+                        continue;
+                    }
+                    if (partialFrame == null) {
+                        partialFrame = new PartialVideoFrame(chunks.get(i));
+                    }
+                    assertFalse(partialFrame.isComplete());
+                    partialFrame.add(chunks.get(i));
+                }
+                assertTrue(partialFrame.isComplete());
+                assertArrayEquals("lost " + lost1 + ", " + lost2, frame.data, partialFrame.toVideoFrame().data);
+            }
+        }
+    }
+
+    @Test
+    public void testParityRecoveryDoesNotChangeBufferedBytes() throws Exception {
+        VideoFrame frame = createFrame(1000);
+        List<ChunkedVideoFrame> chunks = chunkWithParity(frame, 300, 1);
+        PartialVideoFrame partialFrame = new PartialVideoFrame(chunks.get(0));
+        for (int i = 0; i < chunks.size(); i++) {
+            if (i != 1) {
+                partialFrame.add(chunks.get(i));
+            }
+        }
+        assertEquals(1000, partialFrame.getBufferedBytes());
+        assertArrayEquals(frame.data, partialFrame.toVideoFrame().data);
+        assertEquals(1000, partialFrame.getBufferedBytes());
+        assertNull(partialFrame.chunks[1]);
+    }
+
+    @Test
+    public void testParityWithSingleDataChunk() throws Exception {
+        VideoFrame frame = createFrame(1000);
+        List<ChunkedVideoFrame> chunks = chunkWithParity(frame, 1000, 1);
+        assertEquals(2, chunks.size());
+        PartialVideoFrame partialFrame = new PartialVideoFrame(chunks.get(1));
+        partialFrame.add(chunks.get(1));
+        assertArrayEquals(frame.data, partialFrame.toVideoFrame().data);
+    }
+
+    @Test
+    public void testParityChunkAfterReleaseIsIgnored() throws Exception {
+        List<ChunkedVideoFrame> chunks = chunkWithParity(createFrame(1000), 300, 2);
+        PartialVideoFrame partialFrame = new PartialVideoFrame(chunks.get(0));
+        for (int i = 0; i < 4; i++) {
+            partialFrame.add(chunks.get(i));
+        }
+        assertTrue(partialFrame.isComplete());
+        partialFrame.releaseChunks();
+        assertFalse(partialFrame.add(chunks.get(4)));
+    }
+
+    @Test
+    public void testParitySerializerRoundTrip() throws Exception {
+        VideoFrame frame = createFrame(1000);
+        List<ChunkedVideoFrame> chunks = chunkWithParity(frame, 300, 1);
+        PartialVideoFrame partialFrame = new PartialVideoFrame(chunks.get(4));
+        partialFrame.add(chunks.get(4));
+        partialFrame.add(chunks.get(0));
+
+        PartialVideoFrame.Serializer serializer = new PartialVideoFrame.Serializer();
+        DataOutputSerializer out = new DataOutputSerializer(2048);
+        serializer.serialize(partialFrame, out);
+        DataInputDeserializer in = new DataInputDeserializer();
+        in.setBuffer(out.getSharedBuffer(), 0, out.length());
+        PartialVideoFrame result = serializer.deserialize(in);
+        assertEquals(1, result.numParityChunks);
+        assertEquals(1000, result.frameSize);
+
+        result.add(chunks.get(1));
+        result.add(chunks.get(2));
+        assertArrayEquals(frame.data, result.toVideoFrame().data);
+    }
+
+    @Test
+    public void testReassembleWithParity() throws Exception {
+        VideoFrame frame = createFrame(1000);
+        List<ChunkedVideoFrame> chunks = chunkWithParity(frame, 300, 1);
+        List<ChunkedVideoFrame> elements = new ArrayList<>(chunks);
+        elements.remove(3);
+        VideoFrameWindow window = new VideoFrameWindow(chunks.get(0));
+        assertArrayEquals(frame.data, ChunkedVideoFrameReassembler.reassemble(window, elements).data);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2019 Dell Inc., or its subsidiaries. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+package io.pravega.example.videoprocessor;
+
+import io.pravega.example.video.ChunkedVideoFrame;
+import io.pravega.example.video.HashAlgorithm;
+import io.pravega.example.video.ImageFormat;
+import io.pravega.example.video.PixelFormat;
+import io.pravega.example.video.RawVideoFrame;
+import io.pravega.example.video.VideoFrame;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.functions.util.ListCollector;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.java.typeutils.TypeExtractor;
+import org.apache.flink.api.java.typeutils.runtime.kryo.KryoSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class VideoFrameSerializerTests {
+    private static Logger log = LoggerFactory.getLogger(VideoFrameSerializerTests.class);
+
+    private static ChunkedVideoFrame createFrame(int dataSize) {
+        ChunkedVideoFrame frame = new ChunkedVideoFrame();
+        frame.camera = 3;
+        frame.ssrc = 12345;
+        frame.timestamp = new Timestamp(1561000000123L);
+        frame.timestamp.setNanos(123456789);
+        frame.frameNumber = 99;
+        frame.chunkIndex = 2;
+        frame.finalChunkIndex = 4;
+        frame.data = new byte[dataSize];
+        new Random(0).nextBytes(frame.data);
+        frame.imageFormat = ImageFormat.JPEG;
+        frame.hashAlgorithm = HashAlgorithm.XXHASH64;
+        frame.hash = frame.calculateHash();
+        frame.chunkHash = frame.calculateChunkHash();
+        frame.tags = new HashMap<>();
+        frame.tags.put("numCameras", "4");
+        return frame;
+    }
+
+    private static <T> T roundTrip(TypeSerializer<T> serializer, T record) throws Exception {
+        DataOutputSerializer out = new DataOutputSerializer(1024);
+        serializer.serialize(record, out);
+        DataInputDeserializer in = new DataInputDeserializer();
+        in.setBuffer(out.getSharedBuffer(), 0, out.length());
+        return serializer.deserialize(in);
+    }
+
+    private static void assertFramesEqual(VideoFrame expected, VideoFrame actual) {
+        assertEquals(expected.camera, actual.camera);
+        assertEquals(expected.ssrc, actual.ssrc);
+        assertEquals(expected.timestamp, actual.timestamp);
+        assertEquals(expected.frameNumber, actual.frameNumber);
+        assertArrayEquals(expected.data, actual.data);
+        assertEquals(expected.imageFormat, actual.imageFormat);
+        assertArrayEquals(expected.hash, actual.hash);
+        assertEquals(expected.hashAlgorithm, actual.hashAlgorithm);
+        assertEquals(expected.tags, actual.tags);
+    }
+
+    @Test
+    public void testVideoFrameRoundTrip() throws Exception {
+        VideoFrame frame = new VideoFrame(createFrame(1000));
+        TypeSerializer<VideoFrame> serializer = new VideoFrameTypeInfo().createSerializer(new ExecutionConfig());
+        assertFramesEqual(frame, roundTrip(serializer, frame));
+        assertFramesEqual(new VideoFrame(), roundTrip(serializer, new VideoFrame()));
+    }
+
+    @Test
+    public void testChunkedVideoFrameRoundTrip() throws Exception {
+        ChunkedVideoFrame frame = createFrame(1000);
+        TypeSerializer<ChunkedVideoFrame> serializer = new ChunkedVideoFrameTypeInfo().createSerializer(new ExecutionConfig());
+        ChunkedVideoFrame result = roundTrip(serializer, frame);
+        assertFramesEqual(frame, result);
+        assertEquals(frame.chunkIndex, result.chunkIndex);
+        assertEquals(frame.finalChunkIndex, result.finalChunkIndex);
+        assertArrayEquals(frame.chunkHash, result.chunkHash);
+    }
+
+    @Test
+    public void testChunkedVideoFrameCopy() throws Exception {
+        ChunkedVideoFrame frame = createFrame(1000);
+        TypeSerializer<ChunkedVideoFrame> serializer = new ChunkedVideoFrameTypeInfo().createSerializer(new ExecutionConfig());
+
+        ChunkedVideoFrame copy = serializer.copy(frame);
+        assertFramesEqual(frame, copy);
+        assertEquals(frame.chunkIndex, copy.chunkIndex);
+        assertSame(frame.data, copy.data);
+        copy.tags.put("other", "value");
+        assertFalse(frame.tags.containsKey("other"));
+
+        DataOutputSerializer out = new DataOutputSerializer(1024);
+        serializer.serialize(frame, out);
+        DataInputDeserializer in = new DataInputDeserializer();
+        in.setBuffer(out.getSharedBuffer(), 0, out.length());
+        DataOutputSerializer copiedOut = new DataOutputSerializer(1024);
+        serializer.copy(in, copiedOut);
+        in.setBuffer(copiedOut.getSharedBuffer(), 0, copiedOut.length());
+        assertFramesEqual(frame, serializer.deserialize(in));
+    }
+
+    @Test
+    public void testChunkedVideoFrameDataSlice() throws Exception {
+        ChunkedVideoFrame frame = createFrame(1000);
+        byte[] expectedData = frame.data;
+        byte[] buffer = new byte[3000];
+        System.arraycopy(expectedData, 0, buffer, 500, expectedData.length);
+        frame.setDataSlice(buffer, 500, expectedData.length);
+        TypeSerializer<ChunkedVideoFrame> serializer = new ChunkedVideoFrameTypeInfo().createSerializer(new ExecutionConfig());
+
+        ChunkedVideoFrame copy = serializer.copy(frame);
+        assertTrue(copy.hasDataSlice());
+        assertSame(buffer, copy.dataArray());
+
+        ChunkedVideoFrame result = roundTrip(serializer, frame);
+        assertFalse(result.hasDataSlice());
+        assertArrayEquals(expectedData, result.data);
+    }
+
+    @Test
+    public void testJsonDataSliceRoundTrip() throws Exception {
+        ChunkedVideoFrame frame = createFrame(1000);
+        List<ChunkedVideoFrame> chunks = new ArrayList<>();
+        new VideoFrameChunker(300).flatMap(frame, new ListCollector<>(chunks));
+        assertEquals(4, chunks.size());
+        ChunkedVideoFrameSerializationSchema serializationSchema = new ChunkedVideoFrameSerializationSchema(false);
+        ChunkedVideoFrameDeserializationSchema deserializationSchema = new ChunkedVideoFrameDeserializationSchema();
+        for (int i = 0; i < chunks.size(); i++) {
+            assertTrue(chunks.get(i).hasDataSlice());
+            ChunkedVideoFrame result = deserializationSchema.deserialize(serializationSchema.serialize(chunks.get(i)));
+            assertEquals(i, result.chunkIndex);
+            assertEquals(3, result.finalChunkIndex);
+            assertEquals(frame.camera, result.camera);
+            assertEquals(frame.frameNumber, result.frameNumber);
+            int offset = i * 300;
+            assertArrayEquals(Arrays.copyOfRange(frame.data, offset, Math.min(offset + 300, frame.data.length)), result.data);
+        }
+    }
+
+    @Test
+    public void testRawVideoFrameRoundTrip() throws Exception {
+        byte[] pixels = new byte[4 * 3 * 3];
+        new Random(0).nextBytes(pixels);
+        RawVideoFrame frame = new RawVideoFrame(createFrame(10), 4, 3, PixelFormat.BGR24, pixels);
+        TypeSerializer<RawVideoFrame> serializer = new RawVideoFrameTypeInfo().createSerializer(new ExecutionConfig());
+        RawVideoFrame result = roundTrip(serializer, frame);
+        assertFramesEqual(frame, result);
+        assertEquals(4, result.width);
+        assertEquals(3, result.height);
+        assertEquals(PixelFormat.BGR24, result.pixelFormat);
+        assertArrayEquals(pixels, result.pixels);
+        assertSame(pixels, serializer.copy(frame).pixels);
+        assertNull(roundTrip(serializer, new RawVideoFrame()).pixels);
+    }
+
+    private static <T> double benchmark(String name, TypeSerializer<T> serializer, T record, int dataSize, int iterations) throws Exception {
+        DataOutputSerializer out = new DataOutputSerializer(dataSize + 1024);
+        DataInputDeserializer in = new DataInputDeserializer();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            out.clear();
+            serializer.serialize(record, out);
+            in.setBuffer(out.getSharedBuffer(), 0, out.length());
+            serializer.deserialize(in);
+        }
+        double nanosPerMB = (System.nanoTime() - startNanos) / (iterations * (double) dataSize / (1024 * 1024));
+        log.info("{}: {} us per MB of frame data", name, String.format("%.1f", nanosPerMB / 1000.0));
+        return nanosPerMB;
+    }
+
+    /**
+     * Compares the cost of serializing and deserializing ChunkedVideoFrame with Kryo, the POJO serializer,
+     * and ChunkedVideoFrameTypeInfo.Serializer.
+     */
+    @Test
+    @Ignore
+    public void benchmarkSerializers() throws Exception {
+        ExecutionConfig config = new ExecutionConfig();
+        for (int dataSize : new int[]{10 * 1024, 100 * 1024, 512 * 1024}) {
+            ChunkedVideoFrame frame = createFrame(dataSize);
+            int iterations = (int) (2000L * 1024 * 1024 / dataSize / 10);
+            for (int pass = 0; pass < 2; pass++) {
+                log.info("dataSize={}, pass={}", dataSize, pass);
+                benchmark("Kryo", new KryoSerializer<>(ChunkedVideoFrame.class, config), frame, dataSize, iterations);
+                benchmark("POJO", TypeExtractor.createTypeInfo(ChunkedVideoFrame.class).createSerializer(config), frame, dataSize, iterations);
+                benchmark("ChunkedVideoFrameTypeInfo", new ChunkedVideoFrameTypeInfo().createSerializer(config), frame, dataSize, iterations);
+            }
+        }
+    }
+}
@@ -19,11 +19,16 @@ import io.pravega.client.admin.StreamManager;
 import io.pravega.client.stream.*;
 import io.pravega.client.stream.impl.ByteBufferSerializer;
 import io.pravega.example.video.ChunkedVideoFrame;
+import io.pravega.example.video.ChunkedVideoFrameBinaryFormat;
+import io.pravega.example.video.ImageFormat;
+import io.pravega.example.video.Qoi;
+import io.pravega.example.video.RawVideoFrame;
 import io.pravega.example.video.VideoFrame;
 import org.bytedeco.javacpp.BytePointer;
 import org.bytedeco.javacv.CanvasFrame;
 import org.bytedeco.javacv.Frame;
 import org.bytedeco.javacv.OpenCVFrameConverter;
+import org.bytedeco.opencv.global.opencv_core;
 import org.bytedeco.opencv.global.opencv_imgcodecs;
 import org.bytedeco.opencv.opencv_core.Mat;
 import org.slf4j.Logger;
@@ -87,14 +92,28 @@ public class VideoPlayer implements Runnable {
                 for (;;) {
                     EventRead<ByteBuffer> event = reader.readNextEvent(timeoutMs);
                     if (event.getEvent() != null) {
-                        ChunkedVideoFrame chunkedVideoFrame = mapper.readValue(event.getEvent().array(), ChunkedVideoFrame.class);
+                        byte[] message = event.getEvent().array();
+                        ChunkedVideoFrame chunkedVideoFrame;
+                        if (ChunkedVideoFrameBinaryFormat.isBinary(message)) {
+                            chunkedVideoFrame = ChunkedVideoFrameBinaryFormat.deserialize(message);
+                        } else {
+                            chunkedVideoFrame = mapper.readValue(message, ChunkedVideoFrame.class);
+                        }
                         log.info("chunkedVideoFrame={}", chunkedVideoFrame);
                         // TODO: Reassemble multiple chunks - see ChunkedVideoFrameReassembler
                         VideoFrame videoFrame = new VideoFrame(chunkedVideoFrame);
                         if (videoFrame.camera == getConfig().getCamera()) {
                             videoFrame.validateHash();
-                            Mat pngMat = new Mat(new BytePointer(videoFrame.data));
-                            Mat mat = opencv_imgcodecs.imdecode(pngMat, opencv_imgcodecs.IMREAD_UNCHANGED);
+                            Mat mat;
+                            if (videoFrame.effectiveImageFormat() == ImageFormat.QOI) {
+                                // OpenCV cannot decode QOI.
+                                RawVideoFrame rawFrame = Qoi.decode(videoFrame.data, videoFrame);
+                                mat = new Mat(rawFrame.height, rawFrame.width, opencv_core.CV_8UC3, new BytePointer(rawFrame.pixels));
+                            } else {
+                                // PNG and JPEG are detected by imdecode.
+                                Mat encodedMat = new Mat(new BytePointer(videoFrame.data));
+                                mat = opencv_imgcodecs.imdecode(encodedMat, opencv_imgcodecs.IMREAD_UNCHANGED);
+                            }
                             Frame frame = converter.convert(mat);
                             cFrame.showImage(frame);
                         }